@@ -23,11 +23,95 @@ export const fetchContainers = async ({ showAll, showStopped, signal }) => {
   return data;
 };
 
-export const fetchContainerVersion = async ({ containerId, signal }) => {
-  const { data } = await api.get(API.CONTAINER_VERSION(containerId), { signal });
+// Version checks requested within this window are sent together
+const VERSION_BATCH_WINDOW = 10;
+const VERSION_BATCH_MAX_SIZE = 100;
+// The server may spend its whole lookup deadline on a batch
+const VERSION_BATCH_TIMEOUT = 30000;
+
+let versionBatch = [];
+let versionBatchTimer = null;
+
+export const fetchContainerVersions = async (containers, { signal } = {}) => {
+  const { data } = await api.post(API.CONTAINER_VERSIONS, containers, {
+    signal,
+    timeout: VERSION_BATCH_TIMEOUT,
+  });
   return data;
 };
 
+const flushVersionBatch = async () => {
+  const batch = versionBatch;
+  versionBatch = [];
+  clearTimeout(versionBatchTimer);
+  versionBatchTimer = null;
+  if (batch.length === 0) {
+    return;
+  }
+
+  // The request is only given up once every container in it was aborted
+  const controller = new AbortController();
+  const onAbort = () => {
+    if (batch.every(({ aborted }) => aborted)) {
+      controller.abort();
+    }
+  };
+  batch.forEach(entry => {
+    entry.onAbort = onAbort;
+  });
+
+  try {
+    const versions = await fetchContainerVersions(
+      batch.map(({ containerId, host, priority }) => ({ id: containerId, host, priority })),
+      { signal: controller.signal }
+    );
+    batch.forEach(({ containerId, resolve, reject }) => {
+      if (versions[containerId]) {
+        resolve(versions[containerId]);
+      } else {
+        reject(new Error(`No version information for ${containerId}`));
+      }
+    });
+  } catch (error) {
+    batch.forEach(({ reject }) => reject(error));
+  }
+};
+
+/**
+ * Resolves the version info of one container. Calls made close together share one
+ * batch request, so a full dashboard needs a handful of requests instead of one per tile.
+ * The priority tells the server which containers to check first. Aborting the signal
+ * rejects the call and takes the container out of a batch that has not been sent yet.
+ */
+export const fetchContainerVersion = ({ containerId, host, priority, signal }) =>
+  new Promise((resolve, reject) => {
+    if (signal?.aborted) {
+      reject(signal.reason);
+      return;
+    }
+    const entry = { containerId, host, priority, resolve, reject, aborted: false };
+    signal?.addEventListener(
+      'abort',
+      () => {
+        entry.aborted = true;
+        reject(signal.reason);
+        const index = versionBatch.indexOf(entry);
+        if (index !== -1) {
+          versionBatch.splice(index, 1);
+        } else {
+          entry.onAbort?.();
+        }
+      },
+      { once: true }
+    );
+    versionBatch.push(entry);
+    if (versionBatch.length >= VERSION_BATCH_MAX_SIZE) {
+      flushVersionBatch();
+    } else if (!versionBatchTimer) {
+      versionBatchTimer = setTimeout(flushVersionBatch, VERSION_BATCH_WINDOW);
+    }
+  });
+
 export const fetchDockerHealth = async ({ signal } = {}) => {
   const { data } = await api.get(API.DOCKER_HEALTH, { signal });
   return data;
@@ -1,9 +1,9 @@
-import { useState, memo } from 'react';
+import { useState, useRef, memo } from 'react';
 import { Settings, Loader2 } from 'lucide-react';
 import { useContainerVersion } from '../hooks/useContainerVersion';
 import { useLocalStorage } from '../hooks/useLocalStorage';
-import { STORAGE_KEYS, ASSETS } from '../constants';
-import { getTargetUrl } from '../utils/containers';
+import { STORAGE_KEYS, ASSETS, VERSION_PRIORITY } from '../constants';
+import { getTargetUrl, isInViewport } from '../utils/containers';
 import ContainerSettings from './ContainerSettings';
 
 const arraysEqual = (a, b) => 
@@ -11,6 +11,7 @@ const arraysEqual = (a, b) =>
 
 function ContainerTile({ container }) {
     const [showConfig, setShowConfig] = useState(false);
+    const tileRef = useRef(null);
     const hasPublicPorts = container.hasPublicPorts;
 
     const [selectedPort, setSelectedPort] = useLocalStorage(STORAGE_KEYS.PORT_PREF(container.name), null);
@@ -18,10 +19,15 @@ function ContainerTile({ container }) {
 
     const { data: versionInfo, isLoading: versionLoading } = useContainerVersion(
         container.id,
-        { enabled: checkUpdates }
+        {
+            host: container.host,
+            enabled: checkUpdates,
+            priority: () => isInViewport(tileRef.current) ? VERSION_PRIORITY.HIGH : VERSION_PRIORITY.LOW,
+        }
     );
 
     const getStatusClass = () => {
+        if (container.stale) return 'status-warning';
         const state = container.state?.toLowerCase();
         if (state === 'running') return 'status-running';
         if (state === 'paused' || state === 'restarting') return 'status-warning';
@@ -50,11 +56,13 @@ function ContainerTile({ container }) {
 
     return (
         <>
-            <div className={`card ${!hasPublicPorts ? 'disabled' : ''}`} onClick={handleTileClick}>
+            <div ref={tileRef} className={`card ${!hasPublicPorts ? 'disabled' : ''}`} onClick={handleTileClick}>
                 <div className="card-actions">
                     <span 
                         className={`status-indicator ${getStatusClass()}`} 
-                        title={container.status || container.state}
+                        title={container.stale
+                            ? `Last known state, ${container.host} is unreachable`
+                            : container.status || container.state}
                     ></span>
                     <button className="config-btn" onClick={handleConfigClick} title="Container Settings">
                         <Settings size={20} />
@@ -7,10 +7,18 @@ export const STORAGE_KEYS = {
 
 export const API = {
   CONTAINERS: '/api/containers',
+  CONTAINERS_STREAM: '/api/containers/stream',
   CONTAINER_VERSION: (id) => `/api/containers/${id}/version`,
+  CONTAINER_VERSIONS: '/api/containers/versions',
   DOCKER_HEALTH: '/actuator/health/docker',
 };
 
+// Hint for the server's lookup queue: tiles on screen are checked before the others
+export const VERSION_PRIORITY = {
+  HIGH: 'high',
+  LOW: 'low',
+};
+
 export const ASSETS = {
   PORTHOLE_ICON: 'porthole.webp',
   FALLBACK_ICON: 'https://cdn.jsdelivr.net/gh/homarr-labs/dashboard-icons/webp/docker.webp',
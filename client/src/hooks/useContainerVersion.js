@@ -1,10 +1,19 @@
 import { useQuery } from '@tanstack/react-query';
 import { fetchContainerVersion } from '../api';
 
-export const useContainerVersion = (containerId, { enabled = true } = {}) => {
+/**
+ * The priority may be a function, called when the version is fetched, so a tile can
+ * tell whether it is on screen once it has been laid out.
+ */
+export const useContainerVersion = (containerId, { host, enabled = true, priority } = {}) => {
   return useQuery({
-    queryKey: ['containerVersion', containerId],
-    queryFn: ({ signal }) => fetchContainerVersion({ containerId, signal }),
+    queryKey: ['containerVersion', containerId, host],
+    queryFn: ({ signal }) => fetchContainerVersion({
+      containerId,
+      host,
+      priority: typeof priority === 'function' ? priority() : priority,
+      signal,
+    }),
     enabled,
     staleTime: 5 * 60 * 1000,
     gcTime: 10 * 60 * 1000,
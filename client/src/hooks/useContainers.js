@@ -1,11 +1,68 @@
-import { useQuery } from '@tanstack/react-query';
+import { useEffect, useRef, useState } from 'react';
+import { useQuery, useQueryClient } from '@tanstack/react-query';
 import { fetchContainers } from '../api';
+import { API } from '../constants';
+import { applyDelta, filterContainers } from '../utils/containers';
+
+const POLL_INTERVAL = 30 * 1000;
+
+/**
+ * Keeps the unfiltered container list current from the server event stream.
+ * Returns null until the first snapshot arrives or while the stream is down.
+ */
+const useContainerStream = () => {
+  const [stream, setStream] = useState(null);
+  const latest = useRef(null);
+
+  useEffect(() => {
+    if (typeof EventSource === 'undefined') {
+      return undefined;
+    }
+
+    const source = new EventSource(API.CONTAINERS_STREAM);
+    const update = (next) => {
+      latest.current = next;
+      setStream(next);
+    };
+
+    source.addEventListener('snapshot', (event) => {
+      update(JSON.parse(event.data));
+    });
+    source.addEventListener('delta', (event) => {
+      const delta = JSON.parse(event.data);
+      const current = latest.current;
+      if (!current || delta.generation <= current.generation) {
+        return;
+      }
+      update({ generation: delta.generation, containers: applyDelta(current.containers, delta) });
+    });
+    // The browser reconnects on its own and a new snapshot follows; poll until then
+    source.onerror = () => update(null);
+
+    return () => source.close();
+  }, []);
+
+  return stream;
+};
 
 export const useContainers = ({ showAll, showStopped }) => {
+  const queryClient = useQueryClient();
+  const stream = useContainerStream();
+  const queryKey = ['containers', { showAll, showStopped }];
+
+  useEffect(() => {
+    if (stream) {
+      queryClient.setQueryData(
+        ['containers', { showAll, showStopped }],
+        filterContainers(stream.containers, { showAll, showStopped })
+      );
+    }
+  }, [queryClient, stream, showAll, showStopped]);
+
   return useQuery({
-    queryKey: ['containers', { showAll, showStopped }],
+    queryKey,
     queryFn: ({ signal }) => fetchContainers({ showAll, showStopped, signal }),
-    staleTime: 30 * 1000,
-    refetchInterval: 30 * 1000,
+    staleTime: stream ? Infinity : POLL_INTERVAL,
+    refetchInterval: stream ? false : POLL_INTERVAL,
   });
 };
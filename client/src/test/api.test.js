@@ -2,8 +2,10 @@ import { describe, it, expect, vi, beforeEach, afterEach } from 'vitest';
 
 // Create mock axios instance before importing api
 const mockGet = vi.fn();
+const mockPost = vi.fn();
 const mockAxiosInstance = {
   get: mockGet,
+  post: mockPost,
   interceptors: {
     response: {
       use: vi.fn(),
@@ -18,7 +20,9 @@ vi.mock('axios', () => ({
 }));
 
 // Import after mocking
-const { fetchContainers, fetchContainerVersion, fetchDockerHealth } = await import('../api');
+const { fetchContainers, fetchContainerVersion, fetchContainerVersions, fetchDockerHealth } = await import(
+  '../api'
+);
 
 describe('api', () => {
   beforeEach(() => {
@@ -74,28 +78,123 @@ describe('api', () => {
   });
 
   describe('fetchContainerVersion', () => {
-    it('fetches version for a container', async () => {
-      const mockData = { hasUpdate: true, currentVersion: '1.0', latestVersion: '2.0' };
-      mockGet.mockResolvedValue({ data: mockData });
+    it('sends versions requested together as one batch', async () => {
+      const web = { currentVersion: '1.0', latestVersion: '2.0', updateAvailable: true };
+      const db = { currentVersion: '3.0', latestVersion: '3.0', updateAvailable: false };
+      mockPost.mockResolvedValue({ data: { web, db } });
+
+      const results = await Promise.all([
+        fetchContainerVersion({ containerId: 'web' }),
+        fetchContainerVersion({ containerId: 'db', host: 'nas' }),
+      ]);
+
+      expect(mockPost).toHaveBeenCalledTimes(1);
+      expect(mockPost).toHaveBeenCalledWith(
+        '/api/containers/versions',
+        [{ id: 'web', host: undefined }, { id: 'db', host: 'nas' }],
+        expect.objectContaining({ signal: expect.any(AbortSignal) })
+      );
+      expect(results).toEqual([web, db]);
+    });
 
-      const result = await fetchContainerVersion({ containerId: 'container-123' });
+    it('sends the priority of each container', async () => {
+      mockPost.mockResolvedValue({ data: { web: {}, db: {} } });
 
-      expect(mockGet).toHaveBeenCalledWith('/api/containers/container-123/version', {
-        signal: undefined,
-      });
-      expect(result).toEqual(mockData);
+      await Promise.all([
+        fetchContainerVersion({ containerId: 'web', priority: 'high' }),
+        fetchContainerVersion({ containerId: 'db', priority: 'low' }),
+      ]);
+
+      expect(mockPost).toHaveBeenCalledWith(
+        '/api/containers/versions',
+        [{ id: 'web', host: undefined, priority: 'high' }, { id: 'db', host: undefined, priority: 'low' }],
+        expect.anything()
+      );
     });
 
-    it('passes abort signal when provided', async () => {
-      const mockData = { hasUpdate: false };
+    it('rejects containers the server has no version for', async () => {
+      mockPost.mockResolvedValue({ data: {} });
+
+      await expect(fetchContainerVersion({ containerId: 'gone' })).rejects.toThrow(
+        'No version information for gone'
+      );
+    });
+
+    it('rejects every container of a failed batch', async () => {
+      mockPost.mockRejectedValue(new Error('Network error'));
+
+      const results = await Promise.allSettled([
+        fetchContainerVersion({ containerId: 'web' }),
+        fetchContainerVersion({ containerId: 'db' }),
+      ]);
+
+      expect(results.map(({ status }) => status)).toEqual(['rejected', 'rejected']);
+    });
+
+    it('leaves an aborted container out of a batch not sent yet', async () => {
+      mockPost.mockResolvedValue({ data: { db: {} } });
       const controller = new AbortController();
-      mockGet.mockResolvedValue({ data: mockData });
 
-      await fetchContainerVersion({ containerId: 'container-123', signal: controller.signal });
+      const web = fetchContainerVersion({ containerId: 'web', signal: controller.signal });
+      const db = fetchContainerVersion({ containerId: 'db' });
+      controller.abort();
+
+      await expect(web).rejects.toHaveProperty('name', 'AbortError');
+      await expect(db).resolves.toEqual({});
+      expect(mockPost).toHaveBeenCalledWith(
+        '/api/containers/versions',
+        [{ id: 'db', host: undefined }],
+        expect.anything()
+      );
+    });
 
-      expect(mockGet).toHaveBeenCalledWith('/api/containers/container-123/version', {
-        signal: controller.signal,
+    it('does not send a batch when every container was aborted', async () => {
+      vi.useFakeTimers();
+      const controller = new AbortController();
+
+      const web = fetchContainerVersion({ containerId: 'web', signal: controller.signal });
+      controller.abort();
+      await vi.runAllTimersAsync();
+      vi.useRealTimers();
+
+      await expect(web).rejects.toHaveProperty('name', 'AbortError');
+      expect(mockPost).not.toHaveBeenCalled();
+    });
+
+    it('aborts a sent batch once every container in it was aborted', async () => {
+      let batchSignal;
+      mockPost.mockImplementation((url, containers, { signal }) => {
+        batchSignal = signal;
+        return new Promise(() => {});
       });
+      const webController = new AbortController();
+      const dbController = new AbortController();
+      const web = fetchContainerVersion({ containerId: 'web', signal: webController.signal });
+      const db = fetchContainerVersion({ containerId: 'db', signal: dbController.signal });
+      await vi.waitFor(() => expect(mockPost).toHaveBeenCalled());
+
+      webController.abort();
+      expect(batchSignal.aborted).toBe(false);
+      dbController.abort();
+
+      expect(batchSignal.aborted).toBe(true);
+      await expect(web).rejects.toHaveProperty('name', 'AbortError');
+      await expect(db).rejects.toHaveProperty('name', 'AbortError');
+    });
+  });
+
+  describe('fetchContainerVersions', () => {
+    it('posts the containers to the batch endpoint', async () => {
+      const controller = new AbortController();
+      mockPost.mockResolvedValue({ data: {} });
+
+      await fetchContainerVersions([{ id: 'web' }], { signal: controller.signal });
+
+      expect(mockPost).toHaveBeenCalledWith(
+        '/api/containers/versions',
+        [{ id: 'web' }],
+        expect.objectContaining({ signal: controller.signal })
+      );
     });
   });
 
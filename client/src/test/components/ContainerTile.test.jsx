@@ -101,6 +101,15 @@ describe('ContainerTile', () => {
       const indicator = document.querySelector('.status-indicator');
       expect(indicator).toHaveClass('status-warning');
     });
+
+    it('should show warning status when the host is unreachable', () => {
+      const container = createMockContainer({ state: 'running', host: 'nas', stale: true });
+      renderWithQuery(<ContainerTile container={container} />);
+
+      const indicator = document.querySelector('.status-indicator');
+      expect(indicator).toHaveClass('status-warning');
+      expect(indicator).toHaveAttribute('title', 'Last known state, nas is unreachable');
+    });
   });
 
   describe('Click behavior', () => {
@@ -22,6 +22,8 @@ describe('constants', () => {
   describe('API', () => {
     it('should have correct static endpoints', () => {
       expect(API.CONTAINERS).toBe('/api/containers');
+      expect(API.CONTAINERS_STREAM).toBe('/api/containers/stream');
+      expect(API.CONTAINER_VERSIONS).toBe('/api/containers/versions');
       expect(API.DOCKER_HEALTH).toBe('/actuator/health/docker');
     });
 
@@ -48,6 +48,7 @@ describe('useContainerVersion', () => {
     expect(api.fetchContainerVersion).toHaveBeenCalledWith(
       expect.objectContaining({
         containerId: 'container-123',
+        signal: expect.any(AbortSignal),
       })
     );
     expect(result.current.data).toEqual(mockVersion);
@@ -78,6 +79,24 @@ describe('useContainerVersion', () => {
     });
   });
 
+  it('should pass the priority the tile has when the version is fetched', async () => {
+    api.fetchContainerVersion.mockResolvedValue({ updateAvailable: false });
+    const priority = vi.fn(() => 'high');
+
+    renderHook(
+      () => useContainerVersion('container-123', { host: 'nas', priority }),
+      { wrapper: createWrapper() }
+    );
+
+    await waitFor(() => {
+      expect(api.fetchContainerVersion).toHaveBeenCalledWith({
+        containerId: 'container-123',
+        host: 'nas',
+        priority: 'high',
+      });
+    });
+  });
+
   it('should handle error state', async () => {
     const error = new Error('Version check failed');
     api.fetchContainerVersion.mockRejectedValue(error);
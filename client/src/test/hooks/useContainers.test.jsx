@@ -1,5 +1,5 @@
-import { describe, it, expect, vi, beforeEach } from 'vitest';
-import { renderHook, waitFor } from '@testing-library/react';
+import { describe, it, expect, vi, beforeEach, afterEach } from 'vitest';
+import { renderHook, waitFor, act } from '@testing-library/react';
 import { QueryClient, QueryClientProvider } from '@tanstack/react-query';
 import { useContainers } from '../../hooks/useContainers';
 import * as api from '../../api';
@@ -102,4 +102,87 @@ describe('useContainers', () => {
       );
     });
   });
+
+  describe('event stream', () => {
+    let source;
+
+    class MockEventSource {
+      constructor(url) {
+        this.url = url;
+        this.listeners = {};
+        this.close = vi.fn();
+        source = this;
+      }
+
+      addEventListener(name, listener) {
+        this.listeners[name] = listener;
+      }
+
+      emit(name, data) {
+        this.listeners[name]({ data: JSON.stringify(data) });
+      }
+    }
+
+    const containers = [
+      { id: '1', name: 'web', state: 'running', hasPublicPorts: true },
+      { id: '2', name: 'db', state: 'running', hasPublicPorts: false },
+    ];
+
+    beforeEach(() => {
+      vi.stubGlobal('EventSource', MockEventSource);
+      api.fetchContainers.mockResolvedValue([]);
+    });
+
+    afterEach(() => {
+      vi.unstubAllGlobals();
+    });
+
+    it('should subscribe to the container stream', () => {
+      renderHook(
+        () => useContainers({ showAll: false, showStopped: false }),
+        { wrapper: createWrapper() }
+      );
+
+      expect(source.url).toBe('/api/containers/stream');
+    });
+
+    it('should filter the snapshot locally', async () => {
+      const { result } = renderHook(
+        () => useContainers({ showAll: false, showStopped: false }),
+        { wrapper: createWrapper() }
+      );
+
+      act(() => source.emit('snapshot', { generation: 1, containers }));
+
+      await waitFor(() => {
+        expect(result.current.data.map(c => c.id)).toEqual(['1']);
+      });
+    });
+
+    it('should apply newer deltas and ignore older ones', async () => {
+      const { result } = renderHook(
+        () => useContainers({ showAll: true, showStopped: false }),
+        { wrapper: createWrapper() }
+      );
+
+      act(() => source.emit('snapshot', { generation: 2, containers }));
+      act(() => source.emit('delta', { generation: 2, added: [], updated: [], removed: ['1'] }));
+      act(() => source.emit('delta', { generation: 3, added: [], updated: [], removed: ['2'] }));
+
+      await waitFor(() => {
+        expect(result.current.data.map(c => c.id)).toEqual(['1']);
+      });
+    });
+
+    it('should close the stream on unmount', () => {
+      const { unmount } = renderHook(
+        () => useContainers({ showAll: false, showStopped: false }),
+        { wrapper: createWrapper() }
+      );
+
+      unmount();
+
+      expect(source.close).toHaveBeenCalled();
+    });
+  });
 });
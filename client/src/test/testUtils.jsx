@@ -57,5 +57,7 @@ export const createMockContainer = (overrides = {}) => ({
   exposedPorts: [8080],
   hasPublicPorts: true,
   iconUrl: 'https://example.com/icon.png',
+  host: 'local',
+  stale: false,
   ...overrides,
 });
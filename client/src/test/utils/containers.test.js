@@ -1,5 +1,5 @@
 import { describe, it, expect, beforeEach } from 'vitest';
-import { groupByProject, getTargetUrl } from '../../utils/containers';
+import { groupByProject, getTargetUrl, isInViewport, filterContainers, applyDelta } from '../../utils/containers';
 
 describe('containers utils', () => {
   describe('groupByProject', () => {
@@ -100,5 +100,76 @@ describe('containers utils', () => {
       expect(result).toBe('http://localhost:9000');
     });
   });
-});
 
+  describe('isInViewport', () => {
+    const elementAt = (top, left = 0) => ({
+      getBoundingClientRect: () => ({ top, left, bottom: top + 100, right: left + 100 }),
+    });
+
+    it('should be true for an element on screen', () => {
+      expect(isInViewport(elementAt(0))).toBe(true);
+    });
+
+    it('should be false for an element below the fold', () => {
+      expect(isInViewport(elementAt(window.innerHeight + 10))).toBe(false);
+    });
+
+    it('should be false for an element scrolled past', () => {
+      expect(isInViewport(elementAt(-200))).toBe(false);
+    });
+
+    it('should be false without an element', () => {
+      expect(isInViewport(null)).toBe(false);
+    });
+  });
+
+  describe('filterContainers', () => {
+    const containers = [
+      { id: '1', state: 'running', hasPublicPorts: true },
+      { id: '2', state: 'running', hasPublicPorts: false },
+      { id: '3', state: 'exited', hasPublicPorts: true },
+      { id: '4', state: 'paused', hasPublicPorts: true },
+    ];
+
+    it('should keep running containers with ports by default', () => {
+      const result = filterContainers(containers, { showAll: false, showStopped: false });
+      expect(result.map(c => c.id)).toEqual(['1', '4']);
+    });
+
+    it('should include containers without ports when showAll is set', () => {
+      const result = filterContainers(containers, { showAll: true, showStopped: false });
+      expect(result.map(c => c.id)).toEqual(['1', '2', '4']);
+    });
+
+    it('should include stopped containers when showStopped is set', () => {
+      const result = filterContainers(containers, { showAll: false, showStopped: true });
+      expect(result.map(c => c.id)).toEqual(['1', '3', '4']);
+    });
+  });
+
+  describe('applyDelta', () => {
+    const containers = [
+      { id: '1', state: 'running' },
+      { id: '2', state: 'running' },
+    ];
+
+    it('should put added containers first', () => {
+      const result = applyDelta(containers, { added: [{ id: '3' }], updated: [], removed: [] });
+      expect(result.map(c => c.id)).toEqual(['3', '1', '2']);
+    });
+
+    it('should replace updated containers in place', () => {
+      const result = applyDelta(containers, {
+        added: [],
+        updated: [{ id: '2', state: 'exited' }],
+        removed: [],
+      });
+      expect(result).toEqual([{ id: '1', state: 'running' }, { id: '2', state: 'exited' }]);
+    });
+
+    it('should drop removed containers', () => {
+      const result = applyDelta(containers, { added: [], updated: [], removed: ['1'] });
+      expect(result.map(c => c.id)).toEqual(['2']);
+    });
+  });
+});
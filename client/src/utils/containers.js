@@ -22,3 +22,37 @@ export const getTargetUrl = (port) => {
   return `http://${hostname}:${port}`;
 };
 
+/**
+ * Tells whether any part of an element is within the viewport.
+ */
+export const isInViewport = (element) => {
+  if (!element) return false;
+  const rect = element.getBoundingClientRect();
+  return rect.bottom > 0 && rect.right > 0
+    && rect.top < window.innerHeight && rect.left < window.innerWidth;
+};
+
+// States Docker reports for containers that are not stopped
+const RUNNING_STATES = ['running', 'paused', 'restarting'];
+
+/**
+ * Applies the same filters the server applies to /api/containers.
+ */
+export const filterContainers = (containers, { showAll, showStopped }) =>
+  containers.filter(container =>
+    (showStopped || RUNNING_STATES.includes(container.state)) &&
+    (showAll || container.hasPublicPorts)
+  );
+
+/**
+ * Applies a stream delta to a container list.
+ * Added containers are the newest, so they go first.
+ */
+export const applyDelta = (containers, { added, updated, removed }) => {
+  const changed = new Map(updated.map(container => [container.id, container]));
+  const dropped = new Set([...removed, ...added.map(container => container.id)]);
+  const kept = containers
+    .filter(container => !dropped.has(container.id))
+    .map(container => changed.get(container.id) || container);
+  return [...added, ...kept];
+};
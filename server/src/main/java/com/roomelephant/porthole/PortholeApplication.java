@@ -3,9 +3,11 @@ package com.roomelephant.porthole;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan("com.roomelephant.porthole.config.properties")
+@EnableScheduling
 public class PortholeApplication {
 
     static void main(String[] args) {
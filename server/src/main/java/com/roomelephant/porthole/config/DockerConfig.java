@@ -20,9 +20,15 @@ public class DockerConfig {
     }
 
     @Bean
-    public DockerClient dockerClient() {
+    public DockerHosts dockerHosts() {
+        return new DockerHosts(dockerProperties.endpoints().stream()
+                .map(endpoint -> new DockerHosts.Host(endpoint.name(), createClient(endpoint.host())))
+                .toList());
+    }
+
+    private DockerClient createClient(String host) {
         DockerClientConfig config = DefaultDockerClientConfig.createDefaultConfigBuilder()
-                .withDockerHost(dockerProperties.host())
+                .withDockerHost(host)
                 .build();
 
         DockerHttpClient httpClient = new ZerodepDockerHttpClient.Builder()
@@ -1,41 +1,164 @@
 package com.roomelephant.porthole.config;
 
-import com.github.dockerjava.api.DockerClient;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.boot.health.contributor.Status;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Reports whether the primary Docker host is reachable.
+ * Docker is pinged in the background and health checks are served from the last result,
+ * so frequent health polling never reaches the Docker socket. A result older than a few probe
+ * intervals means the probe stopped running, and is reported as down.
+ */
 @Component
 @Slf4j
 public class DockerHealthIndicator implements HealthIndicator {
 
-    private final DockerClient dockerClient;
+    private static final String CONNECTION_ERROR = "Error connecting to docker";
+    private static final int MISSED_PROBES = 3;
 
-    public DockerHealthIndicator(DockerClient dockerClient) {
-        this.dockerClient = dockerClient;
+    private final DockerHosts dockerHosts;
+    private final DockerCircuitBreaker circuitBreaker;
+    private final Timer pingLatency;
+    private final Duration maxProbeAge;
+    private final Clock clock;
+
+    private volatile @Nullable Probe lastProbe;
+
+    public DockerHealthIndicator(
+            DockerHosts dockerHosts,
+            DockerCircuitBreaker circuitBreaker,
+            MeterRegistry meterRegistry,
+            DockerProperties dockerProperties) {
+        this(dockerHosts, circuitBreaker, meterRegistry, dockerProperties, Clock.systemUTC());
+    }
+
+    DockerHealthIndicator(
+            DockerHosts dockerHosts,
+            DockerCircuitBreaker circuitBreaker,
+            MeterRegistry meterRegistry,
+            DockerProperties dockerProperties,
+            Clock clock) {
+        this.dockerHosts = dockerHosts;
+        this.circuitBreaker = circuitBreaker;
+        // Percentiles decay over the window, so a slowing daemon shows up before pings fail
+        this.pingLatency = Timer.builder("porthole.docker.ping")
+                .description("Latency of successful Docker health pings")
+                .tag("host", dockerHosts.primary().name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .distributionStatisticExpiry(dockerProperties.healthProbe().latencyWindow())
+                .distributionStatisticBufferLength(5)
+                .register(meterRegistry);
+        this.maxProbeAge = dockerProperties.healthProbe().interval().multipliedBy(MISSED_PROBES);
+        this.clock = clock;
     }
 
     @Override
     public Health health() {
+        Probe probe = lastProbe;
+        if (probe == null) {
+            probe = ping();
+        }
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        Duration last = probe.latency();
+        if (last != null) {
+            latency.put("lastMs", last.toMillis());
+        }
+        for (ValueAtPercentile percentile : pingLatency.takeSnapshot().percentileValues()) {
+            latency.put(
+                    "p" + Math.round(percentile.percentile() * 100) + "Ms",
+                    Math.round(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+
+        boolean outdated = Duration.between(probe.checkedAt(), clock.instant()).compareTo(maxProbeAge) > 0;
+        Health.Builder health =
+                Health.status(outdated ? Status.DOWN : probe.status()).withDetails(probe.details());
+        if (outdated) {
+            health.withDetail("probe", "Not run for more than " + maxProbeAge.toSeconds() + "s");
+        }
+        return health.withDetail("checkedAt", probe.checkedAt().toString())
+                .withDetail("latency", latency)
+                .withDetail("circuitBreaker", circuitBreaker.states())
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${porthole.docker.health-probe.interval}")
+    public void probe() {
+        ping();
+    }
+
+    private Probe ping() {
+        DockerHosts.Host primary = dockerHosts.primary();
+        Instant checkedAt = clock.instant();
+        long start = System.nanoTime();
+        Health health;
+        Duration latency = null;
         try {
-            dockerClient.pingCmd().exec();
-            return Health.up().build();
+            circuitBreaker.call(primary.name(), DockerCircuitBreaker.Operation.PING, () -> primary.client()
+                    .pingCmd()
+                    .exec());
+            latency = Duration.ofNanos(System.nanoTime() - start);
+            pingLatency.record(latency);
+            health = Health.up().build();
+        } catch (CircuitOpenException e) {
+            health = Health.down()
+                    .withDetail(CONNECTION_ERROR, "Circuit breaker is open")
+                    .build();
+        } catch (DockerUnavailableException e) {
+            if (e.getCause() instanceof BulkheadFullException) {
+                log.warn("Docker health check rejected, too many calls in flight");
+                health = Health.down()
+                        .withDetail(CONNECTION_ERROR, "Rejected, too many calls in flight")
+                        .build();
+            } else {
+                log.error("Docker did not answer the health check in time");
+                health = Health.down().withDetail(CONNECTION_ERROR, "Timed out").build();
+            }
         } catch (RuntimeException e) {
             if (isDockerConnectionError(e)) {
                 String errorMessage = e.getCause().getMessage();
                 log.error("Error connecting to docker: {}", errorMessage);
-                return Health.down()
-                        .withDetail("Error connecting to docker", errorMessage)
+                health =
+                        Health.down().withDetail(CONNECTION_ERROR, errorMessage).build();
+            } else {
+                health = Health.down()
+                        .withDetail("Unexpected exception", e.getMessage())
                         .build();
             }
-            return Health.down()
-                    .withDetail("Unexpected exception", e.getMessage())
-                    .build();
         }
+
+        Probe probe = new Probe(health.getStatus(), health.getDetails(), checkedAt, latency);
+        lastProbe = probe;
+        return probe;
     }
 
     private boolean isDockerConnectionError(RuntimeException e) {
         return e.getCause() instanceof java.net.SocketException;
     }
+
+    /** Result of one ping; the latency is only known when Docker answered. */
+    private record Probe(
+            Status status,
+            Map<String, Object> details,
+            Instant checkedAt,
+            @Nullable Duration latency) {}
 }
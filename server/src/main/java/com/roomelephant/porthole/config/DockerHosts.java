@@ -0,0 +1,58 @@
+package com.roomelephant.porthole.config;
+
+import com.github.dockerjava.api.DockerClient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+
+/**
+ * The Docker hosts Porthole reads containers from, in configuration order.
+ * The first host is the primary one and serves requests that do not name a host.
+ */
+@Slf4j
+public class DockerHosts implements Closeable {
+
+    private final List<Host> hosts;
+
+    public DockerHosts(@NonNull List<Host> hosts) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one Docker host must be configured");
+        }
+        var names = new HashSet<String>();
+        for (Host host : hosts) {
+            if (!names.add(host.name())) {
+                throw new IllegalArgumentException("Duplicate Docker host name: " + host.name());
+            }
+        }
+        this.hosts = List.copyOf(hosts);
+    }
+
+    public @NonNull List<Host> all() {
+        return hosts;
+    }
+
+    public @NonNull Host primary() {
+        return hosts.getFirst();
+    }
+
+    public @NonNull Optional<Host> find(@NonNull String name) {
+        return hosts.stream().filter(host -> host.name().equals(name)).findFirst();
+    }
+
+    @Override
+    public void close() {
+        for (Host host : hosts) {
+            try {
+                host.client().close();
+            } catch (IOException e) {
+                log.debug("Could not close Docker client for {}: {}", host.name(), e.getMessage());
+            }
+        }
+    }
+
+    public record Host(String name, DockerClient client) {}
+}
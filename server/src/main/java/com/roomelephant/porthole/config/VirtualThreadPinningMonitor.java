@@ -0,0 +1,82 @@
+package com.roomelephant.porthole.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams JFR's {@code jdk.VirtualThreadPinned} events into the {@code porthole.virtual_threads.pinned}
+ * timer, so it shows whether blocking calls still hold carrier threads. Runtimes without JFR, such as a
+ * native image built without monitoring, simply publish no pinning.
+ */
+@Component
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    // JFR's own default; shorter pins cost less than recording them
+    private static final Duration THRESHOLD = Duration.ofMillis(20);
+
+    private final Timer pinned;
+    private @Nullable RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry) {
+        this.pinned = Timer.builder("porthole.virtual_threads.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier thread")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (stream != null) {
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable(PINNED_EVENT).withThreshold(THRESHOLD).withStackTrace();
+            recording.onEvent(PINNED_EVENT, this::onPinned);
+            recording.startAsync();
+            stream = recording;
+        } catch (RuntimeException e) {
+            log.warn("Virtual thread pinning is not recorded: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    void pinned(Duration duration) {
+        pinned.record(duration);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned(event.getDuration());
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "Virtual thread pinned for {} ms at {}", event.getDuration().toMillis(), topFrame(event));
+        }
+    }
+
+    private static String topFrame(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown frame";
+        }
+        RecordedFrame frame = stackTrace.getFrames().getFirst();
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+}
@@ -1,8 +1,12 @@
 package com.roomelephant.porthole.config.properties;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import java.time.Duration;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
@@ -12,8 +16,106 @@ public record DockerProperties(
         @NotBlank(message = "Docker host must be configured")
         String host,
 
+        @Nullable List<@Valid Endpoint> hosts,
+
         @NotNull(message = "Connection timeout must be configured")
         Duration connectionTimeout,
 
         @NotNull(message = "Response timeout must be configured")
-        Duration responseTimeout) {}
+        Duration responseTimeout,
+
+        @NotNull(message = "Host deadline must be configured")
+        Duration hostDeadline,
+
+        @NotNull(message = "List freshness must be configured")
+        Duration listFreshness,
+
+        @Valid @NotNull(message = "Events configuration is required")
+        Events events,
+
+        @Valid @NotNull(message = "Circuit breaker configuration is required")
+        CircuitBreaker circuitBreaker,
+
+        @Valid @NotNull(message = "Health probe configuration is required")
+        HealthProbe healthProbe,
+
+        @Valid @NotNull(message = "Images configuration is required")
+        Images images,
+
+        @Valid @NotNull(message = "Bulkhead configuration is required")
+        Bulkhead bulkhead,
+
+        @Valid @NotNull(message = "Call executor configuration is required")
+        CallExecutor callExecutor) {
+
+    public static final String DEFAULT_HOST_NAME = "local";
+
+    /**
+     * Returns the configured Docker hosts, the first one being the primary host.
+     * Falls back to {@code host} alone when no named hosts are configured.
+     */
+    public List<Endpoint> endpoints() {
+        if (hosts == null || hosts.isEmpty()) {
+            return List.of(new Endpoint(DEFAULT_HOST_NAME, host));
+        }
+        return hosts;
+    }
+
+    public record Endpoint(
+            @NotBlank(message = "Docker host name must be configured")
+            String name,
+
+            @NotBlank(message = "Docker host must be configured")
+            String host) {}
+
+    public record Events(
+            @NotNull(message = "Events resync interval must be configured")
+            Duration resyncInterval,
+
+            @Positive(message = "Change log size must be positive")
+            int changeLogSize) {}
+
+    public record CircuitBreaker(
+            @Positive(message = "Circuit breaker failure threshold must be positive")
+            int failureThreshold,
+
+            @NotNull(message = "Circuit breaker open duration must be configured")
+            Duration openDuration,
+
+            @NotNull(message = "List timeout must be configured")
+            Duration listTimeout,
+
+            @NotNull(message = "Inspect timeout must be configured")
+            Duration inspectTimeout,
+
+            @NotNull(message = "Ping timeout must be configured")
+            Duration pingTimeout) {}
+
+    public record HealthProbe(
+            @NotNull(message = "Health probe interval must be configured")
+            Duration interval,
+
+            @NotNull(message = "Health probe latency window must be configured")
+            Duration latencyWindow) {}
+
+    public record Images(
+            @Positive(message = "Image cache size must be positive")
+            int cacheSize,
+
+            @NotNull(message = "Image reconcile interval must be configured")
+            Duration reconcileInterval) {}
+
+    public record Bulkhead(
+            @Positive(message = "Docker bulkhead concurrency must be positive")
+            int maxConcurrent,
+
+            @NotNull(message = "Docker bulkhead max wait must be configured")
+            Duration maxWait) {}
+
+    public record CallExecutor(
+            @Positive(message = "Docker call threads must be positive")
+            int threads,
+
+            @Positive(message = "Docker call queue capacity must be positive")
+            int queueCapacity) {}
+}
@@ -1,8 +1,10 @@
 package com.roomelephant.porthole.config.properties;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
@@ -17,7 +19,22 @@ public record RegistryProperties(
         Cache cache,
 
         @Valid @NotNull(message = "URLs configuration is required")
-        Urls urls) {
+        Urls urls,
+
+        @Valid @NotNull(message = "Batch configuration is required")
+        Batch batch,
+
+        @Valid @NotNull(message = "Rate limit configuration is required")
+        RateLimit rateLimit,
+
+        @Valid @NotNull(message = "Tags configuration is required")
+        Tags tags,
+
+        @Valid @NotNull(message = "Persistence configuration is required")
+        Persistence persistence,
+
+        @Valid @NotNull(message = "Bulkhead configuration is required")
+        Bulkhead bulkhead) {
     public record Urls(
             @NotNull(message = "Registry URL must be configured")
             String registry,
@@ -33,12 +50,70 @@ public record RegistryProperties(
             Duration connect,
 
             @NotNull(message = "Read timeout must be configured")
-            Duration read) {}
+            Duration read,
+
+            @NotNull(message = "Version lookup deadline must be configured")
+            Duration deadline) {}
 
     public record Cache(
             @NotNull(message = "Cache TTL must be configured")
             Duration ttl,
 
             @Positive(message = "Version cache size must be positive")
-            int versionMaxSize) {}
+            int versionMaxSize,
+
+            @Positive(message = "Image cache size must be positive")
+            int imageMaxSize,
+
+            @Positive(message = "Token cache size must be positive")
+            int tokenMaxSize,
+
+            @Positive(message = "Digest cache size must be positive")
+            int digestMaxSize,
+
+            @NotNull(message = "Stale-while-revalidate window must be configured")
+            Duration staleWhileRevalidate) {}
+
+    public record Batch(
+            @Positive(message = "Batch size must be positive")
+            int maxSize,
+
+            @Positive(message = "Batch concurrency must be positive")
+            int concurrency) {}
+
+    public record RateLimit(
+            @Positive(message = "Rate limit burst must be positive")
+            int burst,
+
+            @NotNull(message = "Rate limit refill interval must be configured")
+            Duration refillInterval,
+
+            @PositiveOrZero(message = "Rate limit reserve must not be negative")
+            int reserve,
+
+            @NotNull(message = "Rate limit max wait must be configured")
+            Duration maxWait) {}
+
+    public record Tags(
+            @Positive(message = "Tag page size must be positive")
+            int pageSize,
+
+            @Positive(message = "Tag page limit must be positive")
+            int maxPages) {}
+
+    public record Persistence(
+            boolean enabled,
+
+            @NotBlank(message = "Registry cache path must be configured")
+            String path,
+
+            @NotNull(message = "Registry cache compact interval must be configured")
+            Duration compactInterval) {}
+
+    public record Bulkhead(
+            @Positive(message = "Registry bulkhead concurrency must be positive")
+            int maxConcurrent,
+
+            @NotNull(message = "Registry bulkhead max wait must be configured")
+            Duration maxWait) {}
 }
@@ -0,0 +1,37 @@
+package com.roomelephant.porthole.config.properties;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.time.LocalTime;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@ConfigurationProperties(prefix = "porthole.update-check")
+@Validated
+public record UpdateCheckProperties(
+        boolean enabled,
+
+        @NotNull(message = "Update check interval must be configured")
+        Duration interval,
+
+        @Positive(message = "Update check concurrency must be positive")
+        int concurrency,
+
+        @Nullable LocalTime quietStart,
+
+        @Nullable LocalTime quietEnd) {
+
+    /** Whether no background checks should run at the given local time. */
+    public boolean isQuiet(LocalTime time) {
+        if (quietStart == null || quietEnd == null || quietStart.equals(quietEnd)) {
+            return false;
+        }
+        if (quietStart.isBefore(quietEnd)) {
+            return !time.isBefore(quietStart) && time.isBefore(quietEnd);
+        }
+        // The quiet hours span midnight
+        return !time.isBefore(quietStart) || time.isBefore(quietEnd);
+    }
+}
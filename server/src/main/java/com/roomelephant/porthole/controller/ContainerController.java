@@ -1,16 +1,33 @@
 package com.roomelephant.porthole.controller;
 
+import com.roomelephant.porthole.domain.model.ContainerChanges;
 import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.ContainerVersion;
 import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
 import com.roomelephant.porthole.domain.service.ContainerService;
+import com.roomelephant.porthole.domain.service.UpdateCheckService;
 import com.roomelephant.porthole.domain.service.VersionService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
 
 @RestController
 @RequestMapping("/api")
@@ -19,21 +36,96 @@ public class ContainerController {
 
     private final ContainerService containerService;
     private final VersionService versionService;
+    private final UpdateCheckService updateCheckService;
+    private final ContainerStreamBroadcaster containerStreamBroadcaster;
+    private final JsonMapper jsonMapper;
 
-    public ContainerController(ContainerService containerService, VersionService versionService) {
+    public ContainerController(
+            ContainerService containerService,
+            VersionService versionService,
+            UpdateCheckService updateCheckService,
+            ContainerStreamBroadcaster containerStreamBroadcaster,
+            JsonMapper jsonMapper) {
         this.containerService = containerService;
         this.versionService = versionService;
+        this.updateCheckService = updateCheckService;
+        this.containerStreamBroadcaster = containerStreamBroadcaster;
+        this.jsonMapper = jsonMapper;
     }
 
     @GetMapping("/containers")
-    public List<ContainerDTO> getContainers(
+    public ResponseEntity<List<ContainerDTO>> getContainers(
             @RequestParam(defaultValue = "false") boolean includeWithoutPorts,
             @RequestParam(defaultValue = "false") boolean includeStopped) {
-        return containerService.getContainers(includeWithoutPorts, includeStopped);
+        ContainerSnapshot snapshot = containerService.getContainers(includeWithoutPorts, includeStopped);
+
+        // Spring answers 304 without serializing the body when If-None-Match matches the ETag
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (snapshot.generation() != null) {
+            response.eTag(snapshot.generation() + "-" + flag(includeWithoutPorts) + flag(includeStopped));
+        }
+        return response.body(snapshot.containers());
+    }
+
+    @GetMapping(path = "/containers", params = "since")
+    public ResponseEntity<ContainerChanges> getContainerChanges(
+            @RequestParam long since,
+            @RequestParam(defaultValue = "false") boolean includeWithoutPorts,
+            @RequestParam(defaultValue = "false") boolean includeStopped) {
+        ContainerChanges changes = containerService.getChanges(since, includeWithoutPorts, includeStopped);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(changes);
+    }
+
+    @GetMapping(path = "/containers/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamContainers() {
+        return containerStreamBroadcaster.subscribe();
     }
 
     @GetMapping("/containers/{containerId}/version")
-    public VersionDTO getVersion(@PathVariable String containerId) {
-        return versionService.getVersionInfo(containerId);
+    public VersionDTO getVersion(@PathVariable String containerId, @RequestParam(required = false) String host) {
+        return updateCheckService.getVersionInfo(containerId, host);
+    }
+
+    @PostMapping(
+            path = "/containers/versions",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, VersionDTO> getVersions(@RequestBody List<VersionRequest> requests) {
+        versionService.validate(requests);
+        Map<String, VersionDTO> versions = new LinkedHashMap<>();
+        updateCheckService.getVersionInfo(requests, versions::put);
+        return versions;
+    }
+
+    /**
+     * Streams one line per container as soon as its version is known, so slow lookups hold nothing back.
+     * The batch is checked before the stream starts, so a rejected batch still gets a 400.
+     */
+    @PostMapping(
+            path = "/containers/versions",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamVersions(@RequestBody List<VersionRequest> requests) {
+        versionService.validate(requests);
+        StreamingResponseBody body = output -> {
+            try {
+                updateCheckService.getVersionInfo(requests, (id, version) -> {
+                    try {
+                        output.write(jsonMapper.writeValueAsBytes(new ContainerVersion(id, version)));
+                        output.write('\n');
+                        output.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private static char flag(boolean value) {
+        return value ? '1' : '0';
     }
 }
@@ -0,0 +1,263 @@
+package com.roomelephant.porthole.controller;
+
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Fans container index changes out to Server-Sent Events subscribers.
+ * Each subscriber gets a "snapshot" event first and "delta" events afterwards.
+ * Every event is serialized once and the same frame is queued for all connections. Each connection is
+ * written to by its own sender, so a slow client never holds up the others, and a client that falls more
+ * than {@value #MAX_QUEUED_FRAMES} events behind is disconnected; it reconnects and starts from a snapshot.
+ */
+@Component
+@Slf4j
+public class ContainerStreamBroadcaster implements ApplicationListener<ContextClosedEvent> {
+
+    private static final String SNAPSHOT = "snapshot";
+    private static final String DELTA = "delta";
+    private static final int MAX_QUEUED_FRAMES = 64;
+
+    private final ContainerIndex containerIndex;
+    private final JsonMapper jsonMapper;
+    // A single dispatcher keeps events in order for every subscriber
+    private final ExecutorService dispatcher;
+    private final Executor senders;
+    private final int maxQueuedFrames;
+
+    // Only touched from the dispatcher
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private final Set<Subscriber> pending = new HashSet<>();
+    private @Nullable Frame snapshotFrame;
+
+    public ContainerStreamBroadcaster(ContainerIndex containerIndex, JsonMapper jsonMapper) {
+        this(
+                containerIndex,
+                jsonMapper,
+                Executors.newSingleThreadExecutor(
+                        Thread.ofVirtual().name("container-stream").factory()),
+                Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("container-stream-send-", 0).factory()),
+                MAX_QUEUED_FRAMES);
+    }
+
+    ContainerStreamBroadcaster(
+            ContainerIndex containerIndex,
+            JsonMapper jsonMapper,
+            ExecutorService dispatcher,
+            Executor senders,
+            int maxQueuedFrames) {
+        this.containerIndex = containerIndex;
+        this.jsonMapper = jsonMapper;
+        this.dispatcher = dispatcher;
+        this.senders = senders;
+        this.maxQueuedFrames = maxQueuedFrames;
+        containerIndex.addListener(this::onPublish);
+    }
+
+    /**
+     * Opens a stream for a new subscriber.
+     * While the index is out of sync the snapshot is held back until the next publish.
+     */
+    public @NonNull SseEmitter subscribe() {
+        // No timeout: dead connections are detected by the heartbeat
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> dispatch(() -> remove(subscriber)));
+        emitter.onTimeout(() -> dispatch(() -> remove(subscriber)));
+        emitter.onError(_ -> dispatch(() -> remove(subscriber)));
+
+        if (!dispatch(() -> containerIndex
+                .snapshot()
+                .ifPresentOrElse(snapshot -> start(subscriber, snapshot), () -> pending.add(subscriber)))) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedRate = 30, timeUnit = TimeUnit.SECONDS)
+    public void heartbeat() {
+        dispatch(() -> {
+            Frame comment = new Frame(SseEmitter.event().comment("heartbeat").build());
+            sendAll(subscribers, comment);
+            sendAll(pending, comment);
+        });
+    }
+
+    @Override
+    public void onApplicationEvent(@NonNull ContextClosedEvent event) {
+        // Open streams would otherwise hold up graceful shutdown until the grace period ends
+        dispatch(() -> {
+            subscribers.forEach(Subscriber::complete);
+            pending.forEach(Subscriber::complete);
+            subscribers.clear();
+            pending.clear();
+        });
+        dispatcher.shutdown();
+    }
+
+    private void onPublish(@NonNull ContainerSnapshot snapshot, @NonNull ContainerDelta delta) {
+        dispatch(() -> {
+            if (!delta.isEmpty() && !subscribers.isEmpty()) {
+                sendAll(subscribers, frame(DELTA, delta.generation(), delta));
+            }
+            // Waiting subscribers get the snapshot that already includes this delta
+            if (!pending.isEmpty()) {
+                List<Subscriber> waiting = new ArrayList<>(pending);
+                pending.clear();
+                waiting.forEach(subscriber -> start(subscriber, snapshot));
+            }
+        });
+    }
+
+    private void start(Subscriber subscriber, ContainerSnapshot snapshot) {
+        Frame frame = snapshotFrame;
+        if (frame == null || frame.generation() != snapshot.generation()) {
+            frame = frame(SNAPSHOT, snapshot.generation(), snapshot);
+            snapshotFrame = frame;
+        }
+        if (subscriber.offer(frame)) {
+            subscribers.add(subscriber);
+        }
+    }
+
+    private Frame frame(String name, long generation, Object payload) {
+        byte[] data = jsonMapper.writeValueAsBytes(payload);
+        return new Frame(
+                generation,
+                SseEmitter.event()
+                        .id(Long.toString(generation))
+                        .name(name)
+                        .data(data, MediaType.APPLICATION_JSON)
+                        .build());
+    }
+
+    private void sendAll(Set<Subscriber> subscribers, Frame frame) {
+        subscribers.removeIf(subscriber -> !subscriber.offer(frame));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        pending.remove(subscriber);
+    }
+
+    private boolean dispatch(Runnable task) {
+        try {
+            dispatcher.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** One connection and the frames queued for it, written in order by at most one sender at a time. */
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        // Guarded by this subscriber
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private boolean sending;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /** Queues a frame, returning false once the connection is closed or has fallen too far behind. */
+        boolean offer(Frame frame) {
+            boolean behind = false;
+            boolean startSender = false;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (queue.size() >= maxQueuedFrames) {
+                    behind = true;
+                    closed = true;
+                    queue.clear();
+                } else {
+                    queue.add(frame);
+                    startSender = !sending;
+                    sending = true;
+                }
+            }
+            if (behind) {
+                log.debug("Dropping container stream subscriber {} events behind", maxQueuedFrames);
+                emitter.complete();
+                return false;
+            }
+            if (startSender) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException _) {
+                    complete();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void complete() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            emitter.complete();
+        }
+
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = closed ? null : queue.poll();
+                    if (frame == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(frame.data());
+                } catch (IOException | IllegalStateException e) {
+                    // The container reports the broken connection through the error callback
+                    log.debug("Dropping container stream subscriber: {}", e.getMessage());
+                    synchronized (this) {
+                        closed = true;
+                        queue.clear();
+                        sending = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private record Frame(long generation, Set<DataWithMediaType> data) {
+
+        Frame(Set<DataWithMediaType> data) {
+            this(0L, data);
+        }
+    }
+}
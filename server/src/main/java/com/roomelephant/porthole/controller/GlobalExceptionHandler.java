@@ -1,14 +1,18 @@
 package com.roomelephant.porthole.controller;
 
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
 import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.NotFoundException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
 import java.net.URI;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @RestControllerAdvice
 @Slf4j
@@ -23,6 +27,19 @@ public class GlobalExceptionHandler {
         return problem;
     }
 
+    @ExceptionHandler(CircuitOpenException.class)
+    public ResponseEntity<ProblemDetail> handleCircuitOpen(CircuitOpenException ex) {
+        log.debug("Docker call skipped: {}", ex.getMessage());
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_GATEWAY, "Docker is not reachable");
+        problem.setTitle("Bad Gateway");
+        problem.setType(URI.create("about:blank"));
+        // Round up so clients do not retry before the breaker lets a trial call through
+        long retryAfter = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(problem);
+    }
+
     @ExceptionHandler(NotFoundException.class)
     public ProblemDetail handleNotFound(NotFoundException ex) {
         log.debug("Container not found: {}", ex.getContainerId());
@@ -52,6 +69,16 @@ public class GlobalExceptionHandler {
         return problem;
     }
 
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ProblemDetail handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        log.warn("Bad request parameter {}: {}", ex.getName(), ex.getValue());
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(
+                HttpStatus.BAD_REQUEST, "Invalid value for parameter '" + ex.getName() + "'");
+        problem.setTitle("Bad Request");
+        problem.setType(URI.create("about:blank"));
+        return problem;
+    }
+
     @ExceptionHandler(Exception.class)
     public ProblemDetail handleGenericException(Exception ex) {
         log.error("Unexpected error: {}", ex.getMessage(), ex);
@@ -0,0 +1,109 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.jspecify.annotations.NonNull;
+
+/**
+ * Caps the calls in flight to one dependency, so a slow dependency holds at most that many threads.
+ * Callers beyond the cap wait in arrival order up to the configured time and are then turned away.
+ * Active, waiting and rejected calls, the saturation and the time spent waiting are published as
+ * {@code porthole.bulkhead.*} meters tagged with the dependency.
+ */
+public class Bulkhead {
+
+    private static final String DEPENDENCY = "dependency";
+
+    private final String dependency;
+    private final int maxConcurrent;
+    private final Duration maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter rejected;
+    private final Timer waitTime;
+
+    public Bulkhead(
+            @NonNull String dependency, int maxConcurrent, @NonNull Duration maxWait, MeterRegistry meterRegistry) {
+        this.dependency = dependency;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrent, true);
+
+        Gauge.builder("porthole.bulkhead.active", this, Bulkhead::active)
+                .description("Calls in flight to the dependency")
+                .tag(DEPENDENCY, dependency)
+                .register(meterRegistry);
+        Gauge.builder("porthole.bulkhead.waiting", waiting, AtomicInteger::get)
+                .description("Calls waiting for a free slot")
+                .tag(DEPENDENCY, dependency)
+                .register(meterRegistry);
+        Gauge.builder("porthole.bulkhead.saturation", this, Bulkhead::saturation)
+                .description("Share of the dependency's slots in use, from 0 to 1")
+                .tag(DEPENDENCY, dependency)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("porthole.bulkhead.rejected")
+                .description("Calls turned away after waiting the maximum time for a slot")
+                .tag(DEPENDENCY, dependency)
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("porthole.bulkhead.wait")
+                .description("Time calls waited for a slot")
+                .tag(DEPENDENCY, dependency)
+                .register(meterRegistry);
+    }
+
+    /** Runs the call in a slot of its own. */
+    public <T> T call(@NonNull Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Takes a slot, waiting up to the configured time. Callers that hand the call to another thread
+     * release the slot there, once the call really finished.
+     *
+     * @throws BulkheadFullException when no slot came free in time
+     */
+    public void acquire() {
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
+        } finally {
+            waiting.decrementAndGet();
+            waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new BulkheadFullException(dependency, maxWait);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    double saturation() {
+        return (double) active() / maxConcurrent;
+    }
+}
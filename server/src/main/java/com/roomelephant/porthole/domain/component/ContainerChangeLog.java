@@ -0,0 +1,96 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the most recent container index deltas so callers can catch up from a generation.
+ * Generations advance by one per delta, so the retained deltas always form a contiguous range.
+ */
+@Component
+public class ContainerChangeLog {
+
+    private final int capacity;
+    private final Deque<ContainerDelta> deltas = new ArrayDeque<>();
+    private @Nullable Long latest;
+
+    public ContainerChangeLog(ContainerIndex containerIndex, DockerProperties dockerProperties) {
+        this.capacity = dockerProperties.events().changeLogSize();
+        containerIndex.addListener(this::record);
+    }
+
+    /**
+     * Merges every change made after the given generation into one delta.
+     * Returns empty when the generation is unknown or older than the retained changes.
+     */
+    public synchronized @NonNull Optional<ContainerDelta> since(long generation) {
+        if (latest == null || generation > latest) {
+            return Optional.empty();
+        }
+        if (generation == latest) {
+            return Optional.of(new ContainerDelta(latest, List.of(), List.of(), List.of()));
+        }
+        if (deltas.isEmpty() || generation < deltas.getFirst().generation() - 1) {
+            return Optional.empty();
+        }
+
+        // Latest state per changed container; null once removed
+        Map<String, @Nullable ContainerDTO> changed = new LinkedHashMap<>();
+        // Containers that did not exist yet at the requested generation
+        Set<String> created = new HashSet<>();
+        for (ContainerDelta delta : deltas) {
+            if (delta.generation() <= generation) {
+                continue;
+            }
+            for (ContainerDTO dto : delta.added()) {
+                if (!changed.containsKey(dto.id())) {
+                    created.add(dto.id());
+                }
+                changed.put(dto.id(), dto);
+            }
+            delta.updated().forEach(dto -> changed.put(dto.id(), dto));
+            delta.removed().forEach(id -> changed.put(id, null));
+        }
+
+        List<ContainerDTO> added = new ArrayList<>();
+        List<ContainerDTO> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        changed.forEach((id, dto) -> {
+            if (dto == null) {
+                if (!created.contains(id)) {
+                    removed.add(id);
+                }
+            } else if (created.contains(id)) {
+                added.add(dto);
+            } else {
+                updated.add(dto);
+            }
+        });
+        return Optional.of(new ContainerDelta(latest, added, updated, removed));
+    }
+
+    private synchronized void record(@NonNull ContainerSnapshot snapshot, @NonNull ContainerDelta delta) {
+        latest = snapshot.generation();
+        if (delta.isEmpty()) {
+            return;
+        }
+        deltas.addLast(delta);
+        if (deltas.size() > capacity) {
+            deltas.removeFirst();
+        }
+    }
+}
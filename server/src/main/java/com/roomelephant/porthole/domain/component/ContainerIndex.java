@@ -0,0 +1,580 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.domain.mapper.ContainerMapper;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.ImageEvent;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory view of every container on the configured Docker hosts.
+ * Each host is loaded with a full list, then kept current from its Docker events stream.
+ * When a stream drops the host is marked out of sync and rebuilt on the next resync tick;
+ * until then its last known containers are published as stale.
+ * Image events arrive on the same stream and are handed to image listeners.
+ */
+@Service
+@Slf4j
+public class ContainerIndex {
+
+    private static final String[] CONTAINER_ACTIONS = {
+        "create", "start", "stop", "die", "destroy", "rename", "pause", "unpause", "health_status"
+    };
+    private static final String[] IMAGE_ACTIONS = {"pull", "tag", "untag", "delete"};
+    private static final String[] EVENT_ACTIONS = Stream.concat(
+                    Arrays.stream(CONTAINER_ACTIONS), Arrays.stream(IMAGE_ACTIONS))
+            .toArray(String[]::new);
+    private static final String DESTROY = "destroy";
+    private static final String IMAGE_ID_PREFIX = "sha256:";
+    private static final Comparator<Indexed> NEWEST_FIRST = Comparator.comparingLong(Indexed::created)
+            .reversed()
+            .thenComparing(i -> i.container().id());
+
+    private final ContainerMapper containerMapper;
+    private final DockerCircuitBreaker circuitBreaker;
+    private final List<HostIndex> hosts;
+    private final long hostDeadlineNanos;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ImageListener> imageListeners = new CopyOnWriteArrayList<>();
+    // Resyncs run in parallel so one slow host does not hold up the others
+    private final ExecutorService resyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Deque<Publication> pending = new ArrayDeque<>();
+    // Taken before the index lock, never while holding it
+    private final Object deliveryLock = new Object();
+    // Seeded with the start time so generations from a previous run are never reused
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    private volatile @Nullable ContainerSnapshot snapshot;
+    private @Nullable ContainerSnapshot published;
+
+    public ContainerIndex(
+            DockerHosts dockerHosts,
+            ContainerMapper containerMapper,
+            DockerCircuitBreaker circuitBreaker,
+            DockerProperties dockerProperties) {
+        this.containerMapper = containerMapper;
+        this.circuitBreaker = circuitBreaker;
+        this.hosts = dockerHosts.all().stream().map(HostIndex::new).toList();
+        this.hostDeadlineNanos = dockerProperties.hostDeadline().toNanos();
+    }
+
+    /**
+     * Returns every known container, newest first, or empty while no host is in sync.
+     * The generation only changes when the containers do.
+     */
+    public @NonNull Optional<ContainerSnapshot> snapshot() {
+        return Optional.ofNullable(snapshot);
+    }
+
+    /** Returns the last containers seen on a host, also while it is out of sync. */
+    public synchronized @NonNull List<ContainerDTO> lastKnown(@NonNull String host) {
+        return hosts.stream()
+                .filter(index -> index.host.name().equals(host))
+                .flatMap(index -> index.entries.values().stream())
+                .sorted(NEWEST_FIRST)
+                .map(Indexed::container)
+                .toList();
+    }
+
+    /**
+     * Registers a listener called after every publish, including resyncs that changed nothing.
+     * Listeners are called in publish order outside the index lock, one publication at a time.
+     */
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener called for every image pull, tag, untag and delete on a host in sync.
+     * Events missed while a host is out of sync are not replayed. Listeners must not block.
+     */
+    public void addImageListener(@NonNull ImageListener listener) {
+        imageListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${porthole.docker.events.resync-interval}")
+    public void ensureSynced() {
+        Map<HostIndex, CompletableFuture<Loaded>> started = new LinkedHashMap<>();
+        synchronized (this) {
+            for (HostIndex index : hosts) {
+                if (!index.synced && index.loading == null) {
+                    index.closeSubscription();
+                    index.loading = CompletableFuture.supplyAsync(index::load, resyncExecutor);
+                    started.put(index, index.loading);
+                }
+            }
+        }
+        if (started.isEmpty()) {
+            return;
+        }
+
+        // Waited for outside the lock, so readers and events of other hosts are not held up meanwhile
+        Map<HostIndex, Loaded> loaded = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + hostDeadlineNanos;
+        started.forEach((index, load) -> {
+            try {
+                loaded.put(index, load.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException _) {
+                log.warn("Could not sync containers of {} within the deadline", index.host.name());
+                // Let the host join once it answers instead of restarting the load every tick
+                load.whenComplete((late, error) -> loadedLate(index, load, late));
+            } catch (ExecutionException e) {
+                log.warn(
+                        "Could not sync containers of {}: {}",
+                        index.host.name(),
+                        e.getCause().getMessage());
+                synchronized (this) {
+                    if (index.loading == load) {
+                        index.loading = null;
+                    }
+                }
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+                load.whenComplete((late, error) -> loadedLate(index, load, late));
+            }
+        });
+        List<Replay> replays = new ArrayList<>();
+        synchronized (this) {
+            loaded.forEach((index, result) -> {
+                Replay replay = syncedIfCurrent(index, started.get(index), result);
+                if (replay != null) {
+                    replays.add(replay);
+                }
+            });
+            publish();
+        }
+        deliver();
+        replays.forEach(Replay::run);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        snapshot = null;
+        for (HostIndex index : hosts) {
+            index.outOfSync();
+            index.closeSubscription();
+            index.loading = null;
+        }
+    }
+
+    private void loadedLate(
+            @NonNull HostIndex index, @NonNull CompletableFuture<Loaded> load, @Nullable Loaded loaded) {
+        Replay replay;
+        synchronized (this) {
+            if (loaded == null) {
+                if (index.loading == load) {
+                    index.loading = null;
+                }
+                return;
+            }
+            replay = syncedIfCurrent(index, load, loaded);
+            if (replay == null) {
+                return;
+            }
+            publish();
+        }
+        deliver();
+        replay.run();
+    }
+
+    /**
+     * Takes a finished load unless a newer one replaced it or its event stream already closed, and returns
+     * the events that arrived while it was loading. Called with the index locked.
+     */
+    private @Nullable Replay syncedIfCurrent(
+            @NonNull HostIndex index, @NonNull CompletableFuture<Loaded> load, @NonNull Loaded loaded) {
+        if (index.loading != load) {
+            loaded.close();
+            return null;
+        }
+        EventCallback subscription = loaded.subscription();
+        if (subscription.closedEarly) {
+            log.warn("Docker event stream of {} closed while loading, resyncing", index.host.name());
+            index.loading = null;
+            loaded.close();
+            return null;
+        }
+        index.synced(loaded);
+        return new Replay(subscription, subscription.takeEarly());
+    }
+
+    private void apply(@NonNull EventCallback source, @NonNull Event event) {
+        HostIndex index = source.index;
+        synchronized (this) {
+            if (source.early != null) {
+                // Its list is not applied yet; the event is replayed on top of it
+                source.early.add(event);
+                return;
+            }
+        }
+        if (!isCurrent(source)) {
+            return;
+        }
+        if (event.getType() == EventType.IMAGE) {
+            publishImage(index, event);
+            return;
+        }
+        String containerId = event.getActor() != null ? event.getActor().getId() : event.getId();
+        if (containerId == null) {
+            return;
+        }
+
+        if (DESTROY.equals(event.getAction())) {
+            synchronized (this) {
+                if (!isCurrent(source)) {
+                    return;
+                }
+                index.entries.remove(containerId);
+                publish();
+            }
+            deliver();
+            return;
+        }
+
+        // Fetched outside the lock, so a slow Docker call holds up neither readers nor other hosts.
+        // Events of one host arrive one at a time, so its refreshes still apply in order.
+        List<Container> found;
+        try {
+            found = circuitBreaker.call(index.host.name(), DockerCircuitBreaker.Operation.LIST, () -> index.host
+                    .client()
+                    .listContainersCmd()
+                    .withShowAll(true)
+                    .withIdFilter(List.of(containerId))
+                    .exec());
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (!isCurrent(source)) {
+                    return;
+                }
+                log.warn(
+                        "Could not refresh container {} on {}, resyncing: {}",
+                        containerId,
+                        index.host.name(),
+                        e.getMessage());
+                index.outOfSync();
+                publish();
+            }
+            deliver();
+            return;
+        }
+        synchronized (this) {
+            if (!isCurrent(source)) {
+                return;
+            }
+            if (found.isEmpty()) {
+                index.entries.remove(containerId);
+            } else {
+                index.put(found.getFirst());
+            }
+            publish();
+        }
+        deliver();
+    }
+
+    private synchronized boolean isCurrent(@NonNull EventCallback source) {
+        return source == source.index.subscription && source.index.synced;
+    }
+
+    private void lost(@NonNull EventCallback source, @Nullable Throwable cause) {
+        HostIndex index = source.index;
+        synchronized (this) {
+            if (source.early != null) {
+                // Still loading; the load is dropped once it finishes
+                source.closedEarly = true;
+                return;
+            }
+            if (source != index.subscription) {
+                return;
+            }
+            log.warn(
+                    "Docker event stream of {} closed, resyncing: {}",
+                    index.host.name(),
+                    cause != null ? cause.getMessage() : "completed");
+            index.outOfSync();
+            index.subscription = null;
+            publish();
+        }
+        deliver();
+    }
+
+    private void publishImage(@NonNull HostIndex index, @NonNull Event event) {
+        String actorId = event.getActor() != null ? event.getActor().getId() : event.getId();
+        Map<String, String> attributes =
+                event.getActor() != null ? event.getActor().getAttributes() : null;
+        String name = attributes != null ? attributes.get("name") : null;
+        // Pulls name the image by reference, the other actions by id with the reference as name
+        ImageEvent imageEvent = new ImageEvent(
+                index.host.name(),
+                event.getAction(),
+                firstMatching(true, actorId, name),
+                firstMatching(false, actorId, name));
+        if (imageEvent.imageId() == null && imageEvent.reference() == null) {
+            return;
+        }
+        for (ImageListener listener : imageListeners) {
+            try {
+                listener.onImageEvent(imageEvent);
+            } catch (RuntimeException e) {
+                log.warn("Image event listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static @Nullable String firstMatching(boolean imageId, @Nullable String... candidates) {
+        for (String candidate : candidates) {
+            if (candidate != null && candidate.startsWith(IMAGE_ID_PREFIX) == imageId) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** Publishes the current containers and queues them for the listeners. Called with the index locked. */
+    private void publish() {
+        if (hosts.stream().noneMatch(index -> index.synced)) {
+            snapshot = null;
+            return;
+        }
+
+        List<ContainerDTO> containers = hosts.stream()
+                .flatMap(index ->
+                        index.entries.values().stream().map(indexed -> index.synced ? indexed : indexed.stale()))
+                .sorted(NEWEST_FIRST)
+                .map(Indexed::container)
+                .toList();
+        ContainerSnapshot previous = published;
+        if (previous == null || !previous.containers().equals(containers)) {
+            published = new ContainerSnapshot(generation.incrementAndGet(), containers);
+        }
+        snapshot = published;
+
+        pending.add(new Publication(published, diff(previous, published)));
+    }
+
+    /**
+     * Hands queued publications to the listeners in publish order, outside the index lock.
+     * Must not be called with the index locked.
+     */
+    private void deliver() {
+        synchronized (deliveryLock) {
+            while (true) {
+                Publication next;
+                synchronized (this) {
+                    next = pending.poll();
+                }
+                if (next == null) {
+                    return;
+                }
+                for (Listener listener : listeners) {
+                    try {
+                        listener.onPublish(next.snapshot(), next.delta());
+                    } catch (RuntimeException e) {
+                        log.warn("Container index listener failed: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private static ContainerDelta diff(@Nullable ContainerSnapshot previous, ContainerSnapshot current) {
+        Map<String, ContainerDTO> before = new HashMap<>();
+        if (previous != null) {
+            previous.containers().forEach(dto -> before.put(dto.id(), dto));
+        }
+
+        List<ContainerDTO> added = new ArrayList<>();
+        List<ContainerDTO> updated = new ArrayList<>();
+        for (ContainerDTO dto : current.containers()) {
+            ContainerDTO old = before.remove(dto.id());
+            if (old == null) {
+                added.add(dto);
+            } else if (!Objects.equals(old, dto)) {
+                updated.add(dto);
+            }
+        }
+        return new ContainerDelta(current.generation(), added, updated, List.copyOf(before.keySet()));
+    }
+
+    /** Receives the published snapshot together with what changed since the previous one. */
+    @FunctionalInterface
+    public interface Listener {
+        void onPublish(@NonNull ContainerSnapshot snapshot, @NonNull ContainerDelta delta);
+    }
+
+    /** Receives the image events of the hosts in sync. */
+    @FunctionalInterface
+    public interface ImageListener {
+        void onImageEvent(@NonNull ImageEvent event);
+    }
+
+    private record Publication(ContainerSnapshot snapshot, ContainerDelta delta) {}
+
+    /** Events a subscription received while its host was loading, applied once the list is in. */
+    private final class Replay {
+
+        private final EventCallback source;
+        private final List<Event> events;
+
+        Replay(EventCallback source, List<Event> events) {
+            this.source = source;
+            this.events = events;
+        }
+
+        /** Must not be called with the index locked. Refreshes read the current state, so order does not matter. */
+        void run() {
+            events.forEach(event -> apply(source, event));
+        }
+    }
+
+    private record Indexed(ContainerDTO container, long created) {
+
+        Indexed stale() {
+            return new Indexed(container.withStale(true), created);
+        }
+    }
+
+    private record Loaded(EventCallback subscription, List<Container> containers) {
+
+        void close() {
+            subscription.closeQuietly();
+        }
+    }
+
+    /** Index state of one Docker host. Guarded by the enclosing index. */
+    private final class HostIndex {
+
+        private final DockerHosts.Host host;
+        private final Map<String, Indexed> entries = new HashMap<>();
+        private boolean synced;
+        private @Nullable CompletableFuture<Loaded> loading;
+        private @Nullable EventCallback subscription;
+
+        HostIndex(DockerHosts.Host host) {
+            this.host = host;
+        }
+
+        /** Runs outside the index lock. */
+        Loaded load() {
+            // Subscribe before listing; events arriving meanwhile are held and replayed once the list is applied
+            EventCallback callback = host.client()
+                    .eventsCmd()
+                    .withEventTypeFilter(EventType.CONTAINER, EventType.IMAGE)
+                    .withEventFilter(EVENT_ACTIONS)
+                    .exec(new EventCallback(this));
+            try {
+                return new Loaded(
+                        callback,
+                        circuitBreaker.call(host.name(), DockerCircuitBreaker.Operation.LIST, () -> host.client()
+                                .listContainersCmd()
+                                .withShowAll(true)
+                                .exec()));
+            } catch (RuntimeException e) {
+                callback.closeQuietly();
+                throw e;
+            }
+        }
+
+        void synced(Loaded loaded) {
+            loading = null;
+            subscription = loaded.subscription();
+            entries.clear();
+            loaded.containers().forEach(this::put);
+            synced = true;
+            log.debug("Container index synced {} containers of {}", entries.size(), host.name());
+        }
+
+        void put(Container container) {
+            long created = container.getCreated() != null ? container.getCreated() : 0L;
+            entries.put(container.getId(), new Indexed(containerMapper.toDTO(host.name(), container), created));
+        }
+
+        void outOfSync() {
+            synced = false;
+        }
+
+        void closeSubscription() {
+            EventCallback current = subscription;
+            subscription = null;
+            if (current != null) {
+                current.closeQuietly();
+            }
+        }
+    }
+
+    private final class EventCallback extends ResultCallback.Adapter<Event> {
+
+        private final HostIndex index;
+        // Guarded by the enclosing index. Holds events until the host's list is applied, null afterwards.
+        private @Nullable List<Event> early = new ArrayList<>();
+        private boolean closedEarly;
+
+        EventCallback(HostIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onNext(Event event) {
+            apply(this, event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            lost(this, throwable);
+            super.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            lost(this, null);
+            super.onComplete();
+        }
+
+        /** Called with the index locked. */
+        List<Event> takeEarly() {
+            List<Event> events = early != null ? early : List.of();
+            early = null;
+            return events;
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                log.debug("Could not close Docker event stream of {}: {}", index.host.name(), e.getMessage());
+            }
+        }
+    }
+}
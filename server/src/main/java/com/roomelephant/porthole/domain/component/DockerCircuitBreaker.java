@@ -0,0 +1,300 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.github.dockerjava.api.exception.DockerException;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Guards calls to each Docker host with a timeout per operation and a circuit breaker.
+ * After enough consecutive connection failures or timeouts the host's breaker opens and calls
+ * fail at once; after the open duration a single trial call decides whether it closes again.
+ * Errors reported by the Docker daemon itself, such as an unknown container, count as successes.
+ * A bulkhead per host caps the calls in flight, so a slow host cannot take every thread with it.
+ * The calls themselves run on a bounded pool of platform threads per host: docker-java blocks in native
+ * socket reads, which would pin the carrier thread of a virtual thread for as long as Docker takes to
+ * answer. The operation timeout starts once a call runs; a call that waits too long for a thread of its
+ * host fails without counting against the breaker.
+ */
+@Component
+@Slf4j
+public class DockerCircuitBreaker {
+
+    private final Map<String, Breaker> breakers = new LinkedHashMap<>();
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+    private final Map<Operation, Long> timeoutNanos = new EnumMap<>(Operation.class);
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+    private final Map<String, ThreadPoolExecutor> callPools = new LinkedHashMap<>();
+    private final Map<String, ExecutorService> callExecutors = new LinkedHashMap<>();
+
+    public DockerCircuitBreaker(
+            DockerHosts dockerHosts, DockerProperties dockerProperties, MeterRegistry meterRegistry) {
+        this(dockerHosts, dockerProperties, meterRegistry, System::nanoTime);
+    }
+
+    DockerCircuitBreaker(
+            DockerHosts dockerHosts,
+            DockerProperties dockerProperties,
+            MeterRegistry meterRegistry,
+            LongSupplier clock) {
+        DockerProperties.CircuitBreaker properties = dockerProperties.circuitBreaker();
+        this.failureThreshold = properties.failureThreshold();
+        this.openNanos = properties.openDuration().toNanos();
+        this.clock = clock;
+        timeoutNanos.put(Operation.LIST, properties.listTimeout().toNanos());
+        timeoutNanos.put(Operation.INSPECT, properties.inspectTimeout().toNanos());
+        timeoutNanos.put(Operation.PING, properties.pingTimeout().toNanos());
+        DockerProperties.Bulkhead bulkhead = dockerProperties.bulkhead();
+        DockerProperties.CallExecutor executor = dockerProperties.callExecutor();
+        dockerHosts.all().forEach(host -> {
+            String dependency = "docker/" + host.name();
+            breakers.put(host.name(), new Breaker(host.name()));
+            bulkheads.put(
+                    host.name(), new Bulkhead(dependency, bulkhead.maxConcurrent(), bulkhead.maxWait(), meterRegistry));
+            // A pool per host, so a wedged host cannot take the threads of the others
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    executor.threads(),
+                    executor.threads(),
+                    0,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(executor.queueCapacity()),
+                    Thread.ofPlatform()
+                            .name("docker-call-" + host.name() + "-", 0)
+                            .daemon()
+                            .factory());
+            callPools.put(host.name(), pool);
+            // Publishes queued and active calls and the time calls waited in the queue as porthole.executor.*
+            callExecutors.put(host.name(), ExecutorServiceMetrics.monitor(meterRegistry, pool, dependency, "porthole"));
+        });
+    }
+
+    /**
+     * Runs a Docker call against the named host.
+     *
+     * @throws CircuitOpenException when the host's breaker is open
+     * @throws DockerUnavailableException when the call does not start or finish within the operation
+     *     timeout, when the host's bulkhead has no free slot within its wait time, or when the host's call
+     *     queue is full
+     */
+    public <T> T call(@NonNull String host, @NonNull Operation operation, @NonNull Supplier<T> call) {
+        Breaker breaker = breakers.get(host);
+        if (breaker == null) {
+            throw new IllegalArgumentException("Unknown Docker host: " + host);
+        }
+        // An open breaker fails at once instead of waiting for slots held by calls to a hung host
+        breaker.acquire();
+        Bulkhead bulkhead = bulkheads.get(host);
+        try {
+            bulkhead.acquire();
+        } catch (RuntimeException e) {
+            breaker.abandoned();
+            if (e instanceof BulkheadFullException) {
+                log.warn("Docker {} call to {} rejected: {}", operation, host, e.getMessage());
+                throw new DockerUnavailableException(e);
+            }
+            throw e;
+        }
+
+        Task<T> task = new Task<>(call, bulkhead);
+        Future<T> future;
+        try {
+            future = callExecutors.get(host).submit(task);
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            breaker.abandoned();
+            log.warn("Docker {} call to {} rejected, the call queue is full", operation, host);
+            throw new DockerUnavailableException(e);
+        }
+        long timeout = timeoutNanos.get(operation);
+        try {
+            if (!task.started.await(timeout, TimeUnit.NANOSECONDS) && task.abandon()) {
+                // Waiting for a thread says nothing about the host, so the breaker is not told
+                future.cancel(false);
+                callPools.get(host).purge();
+                breaker.abandoned();
+                log.warn("Docker {} call to {} waited too long for a thread", operation, host);
+                throw new DockerUnavailableException(
+                        new TimeoutException("No thread for " + host + " within " + Duration.ofNanos(timeout)));
+            }
+            long remaining = task.startedAt + timeout - System.nanoTime();
+            T result = future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            breaker.succeeded();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            breaker.failed();
+            log.warn("Docker {} call to {} timed out", operation, host);
+            throw new DockerUnavailableException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DockerException) {
+                breaker.succeeded();
+            } else {
+                breaker.failed();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new UnexpectedException(e);
+        } catch (InterruptedException e) {
+            task.abandon();
+            future.cancel(true);
+            breaker.abandoned();
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        callExecutors.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    /** Returns the breaker state of every host, in configuration order. */
+    public @NonNull Map<String, State> states() {
+        Map<String, State> states = new LinkedHashMap<>();
+        breakers.forEach((host, breaker) -> states.put(host, breaker.state()));
+        return states;
+    }
+
+    public enum Operation {
+        LIST,
+        INSPECT,
+        PING
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /** A call that only runs if its caller still waits for it, and frees its bulkhead slot when it ends. */
+    private static final class Task<T> implements Callable<T> {
+
+        private final Supplier<T> call;
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startedAt;
+
+        Task(Supplier<T> call, Bulkhead bulkhead) {
+            this.call = call;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public @Nullable T call() {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            startedAt = System.nanoTime();
+            started.countDown();
+            // The slot is freed when the call really ends, so calls left running after a timeout still count
+            try {
+                return call.get();
+            } finally {
+                bulkhead.release();
+            }
+        }
+
+        /** Keeps the call from starting, freeing its slot; false when it already started. */
+        boolean abandon() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            bulkhead.release();
+            return true;
+        }
+    }
+
+    private final class Breaker {
+
+        private final String host;
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        Breaker(String host) {
+            this.host = host;
+        }
+
+        synchronized void acquire() {
+            if (state == State.OPEN) {
+                long remaining = openNanos - (clock.getAsLong() - openedAt);
+                if (remaining > 0) {
+                    throw new CircuitOpenException(host, Duration.ofNanos(remaining));
+                }
+                state = State.HALF_OPEN;
+                log.info("Circuit breaker for {} is half-open, trying one call", host);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) {
+                    throw new CircuitOpenException(host, Duration.ZERO);
+                }
+                trialInFlight = true;
+            }
+        }
+
+        synchronized void succeeded() {
+            if (state != State.CLOSED) {
+                log.info("Circuit breaker for {} closed", host);
+            }
+            state = State.CLOSED;
+            failures = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void failed() {
+            failures++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || failures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    log.warn("Circuit breaker for {} opened after {} failed calls", host, failures);
+                }
+                state = State.OPEN;
+                openedAt = clock.getAsLong();
+            }
+        }
+
+        synchronized void abandoned() {
+            trialInFlight = false;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.dockerjava.api.model.Image;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the repo digests of inspected images by host and image id. An image id is the hash of the
+ * image's content, so entries need no expiry. They are dropped when the image is tagged, untagged or
+ * deleted, as its repo digests may then differ, when it no longer shows up in its host's image list,
+ * or when the cache is full.
+ */
+@Component
+@Slf4j
+public class ImageInspectCache {
+
+    private final DockerHosts dockerHosts;
+    private final DockerCircuitBreaker circuitBreaker;
+    private final Cache<ImageKey, List<String>> repoDigests;
+
+    public ImageInspectCache(
+            DockerHosts dockerHosts, DockerCircuitBreaker circuitBreaker, DockerProperties dockerProperties) {
+        this.dockerHosts = dockerHosts;
+        this.circuitBreaker = circuitBreaker;
+        this.repoDigests = Caffeine.newBuilder()
+                .maximumSize(dockerProperties.images().cacheSize())
+                .build();
+    }
+
+    /**
+     * Returns the repo digests of an image, inspecting it only when it was not seen before.
+     * Images that were never pushed to or pulled from a registry have none.
+     */
+    public @NonNull List<String> repoDigests(DockerHosts.Host dockerHost, @NonNull String imageId) {
+        ImageKey key = new ImageKey(dockerHost.name(), imageId);
+        List<String> cached = repoDigests.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        // Inspected outside the cache so a slow daemon does not hold the cache's locks
+        var image = circuitBreaker.call(
+                dockerHost.name(),
+                DockerCircuitBreaker.Operation.INSPECT,
+                () -> dockerHost.client().inspectImageCmd(imageId).exec());
+        List<String> digests = image.getRepoDigests() != null ? List.copyOf(image.getRepoDigests()) : List.of();
+        repoDigests.put(key, digests);
+        return digests;
+    }
+
+    /** Drops the entry of an image that was tagged, untagged or removed, as its repo digests may differ. */
+    public void invalidate(@NonNull String host, @NonNull String imageId) {
+        repoDigests.invalidate(new ImageKey(host, imageId));
+    }
+
+    /** Drops the entries of images that were removed from their host. */
+    @Scheduled(fixedDelayString = "${porthole.docker.images.reconcile-interval}")
+    public void reconcile() {
+        for (DockerHosts.Host dockerHost : dockerHosts.all()) {
+            if (repoDigests.asMap().keySet().stream()
+                    .noneMatch(key -> key.host().equals(dockerHost.name()))) {
+                continue;
+            }
+            Set<String> present;
+            try {
+                present = circuitBreaker
+                        .call(dockerHost.name(), DockerCircuitBreaker.Operation.LIST, () -> dockerHost
+                                .client()
+                                .listImagesCmd()
+                                .withShowAll(true)
+                                .exec())
+                        .stream()
+                        .map(Image::getId)
+                        .collect(Collectors.toSet());
+            } catch (RuntimeException e) {
+                log.debug(
+                        "Could not list images of {}, keeping cached inspects: {}", dockerHost.name(), e.getMessage());
+                continue;
+            }
+            repoDigests
+                    .asMap()
+                    .keySet()
+                    .removeIf(key -> key.host().equals(dockerHost.name()) && !present.contains(key.imageId()));
+        }
+    }
+
+    private record ImageKey(String host, String imageId) {}
+}
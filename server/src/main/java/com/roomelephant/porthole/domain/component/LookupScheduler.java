@@ -0,0 +1,135 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out the slots for the Docker and registry calls of version lookups, shared by every request and
+ * the background update check. Once all slots are taken, the next free one goes to the most urgent
+ * waiting lookup, and to the longest waiting one among equally urgent lookups. A lookup stops waiting at
+ * its deadline, and gives up its place when its thread is interrupted.
+ */
+@Component
+public class LookupScheduler {
+
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+            Comparator.comparing((Ticket ticket) -> ticket.priority).thenComparingLong(ticket -> ticket.sequence));
+    private int available;
+    private long sequence;
+
+    public LookupScheduler(RegistryProperties registryProperties) {
+        this(registryProperties.batch().concurrency());
+    }
+
+    LookupScheduler(int concurrency) {
+        this.available = concurrency;
+    }
+
+    /** Returns a place for a lookup, whose priority can still be raised while it waits. */
+    public @NonNull Ticket ticket(@NonNull LookupPriority priority) {
+        return new Ticket(priority);
+    }
+
+    /** Runs the call once it got a slot, like {@link #run(Ticket, long, Supplier)}. */
+    public <T> T run(@NonNull LookupPriority priority, long deadline, @NonNull Supplier<T> call) {
+        return run(ticket(priority), deadline, call);
+    }
+
+    /**
+     * Runs the call once it got a slot, waiting behind more urgent and earlier lookups.
+     *
+     * @param deadline the {@link System#nanoTime()} after which the lookup stops waiting for a slot
+     * @throws DockerUnavailableException when no slot came free before the deadline
+     */
+    public <T> T run(@NonNull Ticket ticket, long deadline, @NonNull Supplier<T> call) {
+        acquire(ticket, deadline);
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    /** Moves a waiting lookup ahead when a more urgent caller now waits for it too. */
+    public synchronized void raise(@NonNull Ticket ticket, @NonNull LookupPriority priority) {
+        if (priority.compareTo(ticket.priority) >= 0) {
+            return;
+        }
+        // The queue only orders entries as they are added
+        boolean queued = waiting.remove(ticket);
+        ticket.priority = priority;
+        if (queued) {
+            waiting.add(ticket);
+        }
+    }
+
+    /** Returns the most urgent priority anyone waiting for the lookup has asked for. */
+    public synchronized @NonNull LookupPriority priority(@NonNull Ticket ticket) {
+        return ticket.priority;
+    }
+
+    /** Returns how many lookups are waiting for a slot. */
+    synchronized int waiting() {
+        return waiting.size();
+    }
+
+    private synchronized void acquire(Ticket ticket, long deadline) {
+        if (available > 0 && waiting.isEmpty()) {
+            available--;
+            return;
+        }
+        ticket.sequence = sequence++;
+        waiting.add(ticket);
+        try {
+            while (!ticket.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    waiting.remove(ticket);
+                    throw new DockerUnavailableException(
+                            new TimeoutException("No lookup slot came free within the deadline"));
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            // A lookup cancelled at its deadline must not keep its place or the slot handed to it
+            if (ticket.granted) {
+                release();
+            } else {
+                waiting.remove(ticket);
+            }
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
+        }
+    }
+
+    private synchronized void release() {
+        Ticket next = waiting.poll();
+        if (next == null) {
+            available++;
+            return;
+        }
+        next.granted = true;
+        notifyAll();
+    }
+
+    /** A lookup's place in the queue. Guarded by the scheduler that handed it out. */
+    public static final class Ticket {
+
+        private LookupPriority priority;
+        private long sequence;
+        private boolean granted;
+
+        private Ticket(LookupPriority priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.model.exception.RegistryRateLimitedException;
+import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Budgets every request Porthole sends to the registry.
+ * A local token bucket smooths bursts, and the {@code RateLimit-Remaining} header of registry responses
+ * caps what is left of the registry's own window. Requests a user waits for may queue briefly for a
+ * token and may spend the reserve; background refreshes are deferred as soon as the budget is tight.
+ * After a 429 no request is sent until the registry's {@code Retry-After} has passed.
+ */
+@Component
+@Slf4j
+public class RegistryRateLimiter {
+
+    static final String RATE_LIMIT_LIMIT = "RateLimit-Limit";
+    static final String RATE_LIMIT_REMAINING = "RateLimit-Remaining";
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(60);
+
+    private final int burst;
+    private final long refillNanos;
+    private final int reserve;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final Map<Priority, Counter> deferred = new EnumMap<>(Priority.class);
+
+    private double tokens;
+    private long refilledAt;
+    // What the registry reported; unknown (-1) until a response carries the headers
+    private int limit = -1;
+    private int remaining = -1;
+    private long windowEndsAt;
+    private long pausedUntil;
+
+    public RegistryRateLimiter(RegistryProperties registryProperties, MeterRegistry meterRegistry) {
+        this(registryProperties, meterRegistry, System::nanoTime);
+    }
+
+    RegistryRateLimiter(RegistryProperties registryProperties, MeterRegistry meterRegistry, LongSupplier clock) {
+        RegistryProperties.RateLimit properties = registryProperties.rateLimit();
+        this.burst = properties.burst();
+        this.refillNanos = properties.refillInterval().toNanos();
+        this.reserve = properties.reserve();
+        this.maxWaitNanos = properties.maxWait().toNanos();
+        this.clock = clock;
+        this.tokens = burst;
+        this.refilledAt = clock.getAsLong();
+
+        Gauge.builder("porthole.registry.rate_limit.remaining", this, RegistryRateLimiter::remainingBudget)
+                .description("Requests left in the registry's rate limit window, NaN while unknown")
+                .register(meterRegistry);
+        Gauge.builder("porthole.registry.rate_limit.limit", this, RegistryRateLimiter::limit)
+                .description("Size of the registry's rate limit window, NaN while unknown")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            deferred.put(
+                    priority,
+                    Counter.builder("porthole.registry.requests.deferred")
+                            .description("Registry requests not sent because the rate limit budget was exhausted")
+                            .tag("priority", priority.name().toLowerCase())
+                            .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Takes one request from the budget, waiting up to the configured time for interactive requests.
+     *
+     * @throws RegistryRateLimitedException when the request cannot be afforded in time
+     */
+    public void acquire(@NonNull Priority priority) {
+        long deadline = clock.getAsLong() + (priority == Priority.INTERACTIVE ? maxWaitNanos : 0);
+        while (true) {
+            long wait = tryAcquire(priority, deadline);
+            if (wait == 0) {
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UnexpectedException(e);
+            }
+        }
+    }
+
+    /** Reads the registry's view of the budget from a response. */
+    public synchronized void update(@Nullable HttpHeaders headers) {
+        if (headers == null) {
+            return;
+        }
+        RateLimit reportedRemaining = RateLimit.parse(headers.getFirst(RATE_LIMIT_REMAINING));
+        if (reportedRemaining == null) {
+            return;
+        }
+        RateLimit reportedLimit = RateLimit.parse(headers.getFirst(RATE_LIMIT_LIMIT));
+        limit = reportedLimit != null ? reportedLimit.value() : limit;
+        remaining = reportedRemaining.value();
+        windowEndsAt = clock.getAsLong() + reportedRemaining.window().toNanos();
+    }
+
+    /** Stops all requests after the registry answered 429 Too Many Requests. */
+    public synchronized void throttled(@Nullable HttpHeaders headers) {
+        Duration retryAfter = DEFAULT_RETRY_AFTER;
+        String header = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (header != null) {
+            try {
+                retryAfter = Duration.ofSeconds(Long.parseLong(header.trim()));
+            } catch (NumberFormatException _) {
+                log.debug("Ignoring unparsable Retry-After header: {}", header);
+            }
+        }
+        pausedUntil = Math.max(pausedUntil, clock.getAsLong() + retryAfter.toNanos());
+        remaining = 0;
+        windowEndsAt = pausedUntil;
+        log.warn("Registry rate limit reached, pausing requests for {}", retryAfter);
+    }
+
+    /** Returns the nanoseconds to wait before trying again, or 0 once a request was taken. */
+    private synchronized long tryAcquire(Priority priority, long deadline) {
+        long now = clock.getAsLong();
+        refill(now);
+
+        long wait;
+        if (now < pausedUntil) {
+            wait = pausedUntil - now;
+        } else if (remaining >= 0 && now < windowEndsAt && remaining <= floor(priority)) {
+            wait = windowEndsAt - now;
+        } else if (tokens >= 1) {
+            tokens--;
+            if (remaining > 0 && now < windowEndsAt) {
+                remaining--;
+            }
+            return 0;
+        } else {
+            wait = (long) Math.ceil((1 - tokens) * refillNanos);
+        }
+
+        if (now + wait > deadline) {
+            deferred.get(priority).increment();
+            throw new RegistryRateLimitedException(Duration.ofNanos(wait));
+        }
+        return wait;
+    }
+
+    private int floor(Priority priority) {
+        return priority == Priority.BACKGROUND ? reserve : 0;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (double) (now - refilledAt) / refillNanos);
+            refilledAt = now;
+        }
+    }
+
+    private synchronized double remainingBudget() {
+        if (remaining < 0 || clock.getAsLong() >= windowEndsAt) {
+            return Double.NaN;
+        }
+        return remaining;
+    }
+
+    private synchronized double limit() {
+        return limit < 0 ? Double.NaN : limit;
+    }
+
+    /** Who is waiting for a registry request. */
+    public enum Priority {
+        /** A user is waiting for the answer. */
+        INTERACTIVE,
+        /** A cached answer is being refreshed ahead of time. */
+        BACKGROUND
+    }
+
+    /** A rate limit header value such as {@code 76;w=21600}: a count within a window in seconds. */
+    private record RateLimit(int value, Duration window) {
+
+        static @Nullable RateLimit parse(@Nullable String header) {
+            if (header == null || header.isBlank()) {
+                return null;
+            }
+            String[] parts = header.split(";");
+            try {
+                int value = Integer.parseInt(parts[0].trim());
+                Duration window = DEFAULT_RETRY_AFTER;
+                for (int i = 1; i < parts.length; i++) {
+                    String part = parts[i].trim();
+                    if (part.startsWith("w=")) {
+                        window = Duration.ofSeconds(Long.parseLong(part.substring(2)));
+                    }
+                }
+                return new RateLimit(value, window);
+            } catch (NumberFormatException _) {
+                log.debug("Ignoring unparsable rate limit header: {}", header);
+                return null;
+            }
+        }
+    }
+}
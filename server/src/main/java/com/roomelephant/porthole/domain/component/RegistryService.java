@@ -1,20 +1,43 @@
 package com.roomelephant.porthole.domain.component;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.RegistryRateLimiter.Priority;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.RegistryRateLimitedException;
 import com.roomelephant.porthole.domain.util.ImageUtils;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestClient;
 
 @Service
@@ -23,123 +46,642 @@ public class RegistryService {
 
     private static final String BEARER = "Bearer ";
     private static final String TOKEN = "token";
+    private static final String EXPIRES_IN = "expires_in";
+    private static final String ISSUED_AT = "issued_at";
+    // Lifetime the token spec assumes when the auth server does not send one
+    private static final Duration DEFAULT_TOKEN_LIFETIME = Duration.ofSeconds(60);
+    private static final Duration NO_TOKEN_RETRY = Duration.ofSeconds(30);
+    // Refresh delays vary by up to this fraction either way
+    private static final double JITTER = 0.1;
     private static final String ACCEPT_HEADER = "application/vnd.docker.distribution.manifest.v2+json";
     private static final String DOCKER_CONTENT_DIGEST = "Docker-Content-Digest";
     private static final String RESULTS = "results";
     private static final String NAME = "name";
+    private static final String NEXT = "next";
+    private static final String LAST_UPDATED = "last_updated";
+    // Answered when the first tag page was not modified since it was last read
+    private static final TagPage NOT_MODIFIED = new TagPage(null, null, false, null, null);
 
     private final RestClient restClient;
     private final ObjectMapper objectMapper;
     private final RegistryProperties registryProperties;
-    private final Cache<String, String> versionCache;
-    private final Cache<String, Optional<String>> tokenCache;
+    private final LoadingCache<String, Timed<LatestTag>> versionCache;
+    private final LoadingCache<String, Timed<String>> tokenCache;
+    private final LoadingCache<DigestKey, Timed<String>> digestCache;
+    private final PrioritizedLoader<String, LatestTag> versionLoader = new PrioritizedLoader<>(this::loadLatestVersion);
+    private final PrioritizedLoader<DigestKey, String> digestLoader = new PrioritizedLoader<>(this::loadDigest);
+    private final TokenLoader tokenLoader = new TokenLoader();
+    private final RegistryRateLimiter rateLimiter;
+    private final Bulkhead bulkhead;
+    private final RegistryStore store;
+    private final Ticker ticker;
+    private final Clock clock;
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public RegistryService(RestClient restClient, RegistryProperties registryProperties) {
+    public RegistryService(
+            RestClient restClient,
+            RegistryProperties registryProperties,
+            RegistryRateLimiter rateLimiter,
+            RegistryStore store,
+            MeterRegistry meterRegistry) {
+        this(
+                restClient,
+                registryProperties,
+                rateLimiter,
+                store,
+                meterRegistry,
+                Ticker.systemTicker(),
+                Clock.systemUTC());
+    }
+
+    RegistryService(
+            RestClient restClient,
+            RegistryProperties registryProperties,
+            RegistryRateLimiter rateLimiter,
+            RegistryStore store,
+            MeterRegistry meterRegistry,
+            Ticker ticker,
+            Clock clock) {
         this.restClient = restClient;
+        this.rateLimiter = rateLimiter;
+        this.bulkhead = new Bulkhead(
+                "registry",
+                registryProperties.bulkhead().maxConcurrent(),
+                registryProperties.bulkhead().maxWait(),
+                meterRegistry);
+        this.store = store;
+        this.ticker = ticker;
+        this.clock = clock;
         this.registryProperties = registryProperties;
         this.objectMapper = new ObjectMapper();
+        // Refreshed in the background so an expiring entry never makes a dashboard load wait on Hub
         this.versionCache = Caffeine.newBuilder()
-                .expireAfterWrite(registryProperties.cache().ttl())
                 .maximumSize(registryProperties.cache().versionMaxSize())
-                .build();
+                .expireAfter(new TimedExpiry<String, LatestTag>())
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .build(versionLoader);
+        // Tokens are scoped to one repository and live as long as the auth server says
         this.tokenCache = Caffeine.newBuilder()
-                .expireAfterWrite(registryProperties.cache().ttl())
-                .maximumSize(1)
-                .build();
+                .maximumSize(registryProperties.cache().tokenMaxSize())
+                .expireAfter(new TimedExpiry<String, String>())
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .build(tokenLoader);
+        // Digests past their refresh time are still served while a background refresh runs
+        this.digestCache = Caffeine.newBuilder()
+                .maximumSize(registryProperties.cache().digestMaxSize())
+                .expireAfter(new TimedExpiry<DigestKey, String>())
+                .executor(refreshExecutor)
+                .ticker(ticker)
+                .build(digestLoader);
     }
 
-    public @Nullable String getDigest(@NonNull String imageName, String tag) {
+    public @Nullable String getDigest(@NonNull String imageName, String tag, @NonNull LookupPriority priority) {
         try {
             String repository = ImageUtils.resolveRepository(imageName);
-            String token = getAuthToken(repository);
-
-            if (token == null) return null;
-
-            return fetchDigest(tag, repository, token);
+            Priority registryPriority = registryPriority(priority);
+            return read(
+                    digestCache,
+                    new DigestKey(repository, tag),
+                    missing -> digestLoader.load(missing, registryPriority));
+        } catch (RegistryRateLimitedException | BulkheadFullException e) {
+            log.debug("Deferred digest check for {}:{} - {}", imageName, tag, e.getMessage());
+            return null;
         } catch (Exception e) {
             log.debug("Could not fetch digest for {}:{} - {}", imageName, tag, e.getMessage());
             return null;
         }
     }
 
-    public @Nullable String getLatestVersion(@NonNull String imageName) {
+    public @Nullable String getLatestVersion(@NonNull String imageName, @NonNull LookupPriority priority) {
         try {
-            return versionCache.get(imageName, this::fetchLatestVersion);
+            Priority registryPriority = registryPriority(priority);
+            LatestTag latest = read(versionCache, imageName, missing -> versionLoader.load(missing, registryPriority));
+            return latest != null ? latest.version() : null;
+        } catch (RegistryRateLimitedException | BulkheadFullException e) {
+            log.debug("Deferred tag check for {} - {}", imageName, e.getMessage());
+            return null;
         } catch (Exception e) {
             log.error("Could not fetch tags for {}", imageName, e);
             return null;
         }
     }
 
-    private @Nullable String fetchLatestVersion(String imageName) {
-        String repository = ImageUtils.resolveRepository(imageName);
-        return fetchLatestFromHub(repository);
+    /**
+     * Drops every cached and stored answer about a repository, so the next check asks the registry.
+     * Called when an image of the repository was pulled, as the registry has likely moved on.
+     */
+    public void invalidate(@NonNull String repository) {
+        Predicate<String> imageOfRepository =
+                imageName -> ImageUtils.resolveRepository(imageName).equals(repository);
+        versionCache.asMap().keySet().removeIf(imageOfRepository);
+        digestCache.asMap().keySet().removeIf(key -> key.repository().equals(repository));
+        store.remove(RegistryStore.Kind.VERSION, imageOfRepository);
+        store.remove(RegistryStore.Kind.DIGEST, id -> id.startsWith(repository + ":"));
+        log.debug("Invalidated registry answers for {}", repository);
     }
 
-    private @Nullable String fetchDigest(String tag, String repository, String token) {
+    private Timed<LatestTag> loadLatestVersion(
+            String imageName, @Nullable Timed<LatestTag> previous, Priority priority) {
+        if (previous == null) {
+            RegistryStore.Entry stored = store.get(RegistryStore.Kind.VERSION, imageName);
+            if (stored != null) {
+                Instant tagsUpdatedAt =
+                        stored.tagsUpdatedAt() != null ? Instant.ofEpochMilli(stored.tagsUpdatedAt()) : null;
+                Timed<LatestTag> restored = restored(stored, new LatestTag(stored.value(), tagsUpdatedAt));
+                if (restored != null) {
+                    return restored;
+                }
+            }
+        }
+        Timed<LatestTag> latest = fetchLatestFromHub(ImageUtils.resolveRepository(imageName), previous, priority);
+        LatestTag tag = latest.value();
+        Instant tagsUpdatedAt = tag != null ? tag.updatedAt() : null;
+        persist(
+                RegistryStore.Kind.VERSION,
+                imageName,
+                tag != null ? tag.version() : null,
+                tagsUpdatedAt != null ? tagsUpdatedAt.toEpochMilli() : null,
+                latest.validators());
+        return latest;
+    }
+
+    private ResponseEntity<Void> fetchDigest(
+            String tag, String repository, String token, @Nullable Validators validators, Priority priority) {
         String url = registryProperties.urls().registry() + repository + "/manifests/" + tag;
 
-        var response = restClient
+        var response = limited(priority, () -> restClient
                 .head()
                 .uri(url)
                 .header(HttpHeaders.AUTHORIZATION, BEARER + token)
                 .header(HttpHeaders.ACCEPT, ACCEPT_HEADER)
+                .headers(headers -> Validators.applyTo(validators, headers))
                 .retrieve()
-                .toBodilessEntity();
+                .toBodilessEntity());
+        // Only manifest responses carry the registry's rate limit headers
+        rateLimiter.update(response.getHeaders());
+        return response;
+    }
+
+    private Timed<String> loadDigest(DigestKey key, @Nullable Timed<String> previous, Priority priority) {
+        if (previous == null) {
+            RegistryStore.Entry stored = store.get(RegistryStore.Kind.DIGEST, key.id());
+            if (stored != null) {
+                Timed<String> restored = restored(stored, stored.value());
+                if (restored != null) {
+                    return restored;
+                }
+            }
+        }
+        Timed<String> digest = fetchDigestOf(key, previous, priority);
+        persist(RegistryStore.Kind.DIGEST, key.id(), digest.value(), null, digest.validators());
+        return digest;
+    }
+
+    private Timed<String> fetchDigestOf(DigestKey key, @Nullable Timed<String> previous, Priority priority) {
+        String token = getAuthToken(key.repository(), priority);
+        if (token == null) {
+            // Thrown rather than cached, so the next check asks again
+            throw new IllegalStateException("No registry token for " + key.repository());
+        }
+        Validators validators = previous != null ? previous.validators() : null;
+        var response = fetchDigest(key.tag(), key.repository(), token, validators, priority);
+        if (previous != null && isNotModified(response.getStatusCode())) {
+            log.debug("Digest of {}:{} not modified", key.repository(), key.tag());
+            return refreshable(previous.value(), previous.validators());
+        }
+        return refreshable(
+                response.getHeaders().getFirst(DOCKER_CONTENT_DIGEST), Validators.from(response.getHeaders()));
+    }
 
-        return response.getHeaders().getFirst(DOCKER_CONTENT_DIGEST);
+    /**
+     * Sends a registry request within the bulkhead's slots and the rate limit budget, pausing all
+     * requests after a 429. The slot is taken first, so a request turned away by a full bulkhead
+     * spends no budget.
+     */
+    private <T> T limited(Priority priority, Supplier<T> request) {
+        try {
+            return bulkhead.call(() -> {
+                rateLimiter.acquire(priority);
+                return request.get();
+            });
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            rateLimiter.throttled(e.getResponseHeaders());
+            throw e;
+        }
     }
 
-    private @Nullable String getAuthToken(String repository) {
-        return tokenCache.get(repository, this::fetchAuthToken).orElse(null);
+    /**
+     * Wraps a registry answer that is refreshed after the jittered ttl and served stale for at most
+     * the stale-while-revalidate window after that.
+     */
+    private <V> Timed<V> refreshable(@Nullable V value, @Nullable Validators validators) {
+        long refreshAt = ticker.read() + jittered(registryProperties.cache().ttl());
+        return new Timed<>(
+                value,
+                refreshAt,
+                refreshAt + registryProperties.cache().staleWhileRevalidate().toNanos(),
+                validators);
     }
 
-    private Optional<String> fetchAuthToken(String repository) {
+    /**
+     * Schedules a stored answer as if it had been cached in memory since it was stored. One due for refresh is
+     * served while a background refresh revalidates it. It expires when the store stops serving it, unjittered,
+     * and null is returned when that has already passed, so the answer is fetched instead.
+     */
+    private <V> @Nullable Timed<V> restored(RegistryStore.Entry stored, @Nullable V value) {
+        RegistryProperties.Cache cache = registryProperties.cache();
+        long now = ticker.read();
+        long age = Duration.between(Instant.ofEpochMilli(stored.storedAt()), clock.instant())
+                .toNanos();
+        long expiresAt = now + cache.ttl().plus(cache.staleWhileRevalidate()).toNanos() - age;
+        if (expiresAt <= now) {
+            return null;
+        }
+        long refreshAt = Math.min(now + jittered(cache.ttl()) - age, expiresAt);
+        Validators validators = stored.etag() != null || stored.lastModified() != null
+                ? new Validators(stored.etag(), stored.lastModified())
+                : null;
+        return new Timed<>(value, refreshAt, expiresAt, validators);
+    }
+
+    private void persist(
+            RegistryStore.Kind kind,
+            String key,
+            @Nullable String value,
+            @Nullable Long tagsUpdatedAt,
+            @Nullable Validators validators) {
+        store.put(new RegistryStore.Entry(
+                kind,
+                key,
+                value,
+                tagsUpdatedAt,
+                validators != null ? validators.etag() : null,
+                validators != null ? validators.lastModified() : null,
+                clock.millis()));
+    }
+
+    /** Fetched at the priority of the registry request it is needed for. */
+    private @Nullable String getAuthToken(String repository, Priority priority) {
+        return read(tokenCache, repository, missing -> tokenLoader.load(missing, priority));
+    }
+
+    /**
+     * Returns the cached value, loading a missing one on behalf of the caller and starting a background
+     * refresh once it is due. Refreshes of the same key are coalesced by the cache, and the current value
+     * keeps being served until one completes.
+     */
+    private <K, V> @Nullable V read(LoadingCache<K, Timed<V>> cache, K key, Function<K, Timed<V>> load) {
+        Timed<V> timed = cache.get(key, load);
+        if (ticker.read() >= timed.refreshAt()) {
+            cache.refresh(key);
+        }
+        return timed.value();
+    }
+
+    /** Only a scheduled check nobody waits for is sent as background work. */
+    private static Priority registryPriority(LookupPriority priority) {
+        return priority == LookupPriority.BACKGROUND ? Priority.BACKGROUND : Priority.INTERACTIVE;
+    }
+
+    private Timed<String> fetchAuthToken(String repository, Priority priority) {
         String url = registryProperties.urls().auth() + repository + ":pull";
         try {
-            String responseBody = restClient.get().uri(url).retrieve().body(String.class);
-            if (responseBody == null) {
-                return Optional.empty();
+            String responseBody =
+                    limited(priority, () -> restClient.get().uri(url).retrieve().body(String.class));
+            if (responseBody != null) {
+                JsonNode response = objectMapper.readTree(responseBody);
+                if (response.has(TOKEN)) {
+                    return toToken(response.get(TOKEN).asText(), response, ticker.read(), clock.instant());
+                }
             }
-            JsonNode response = objectMapper.readTree(responseBody);
-            boolean hasToken = response.has(TOKEN);
-            return hasToken ? Optional.of(response.get(TOKEN).asText()) : Optional.empty();
+        } catch (RegistryRateLimitedException | BulkheadFullException e) {
+            // Deferred requests are retried on the next check rather than cached as missing
+            throw e;
         } catch (Exception e) {
             log.error("Could not fetch auth token for {} at URL {}", repository, url, e);
-            return Optional.empty();
         }
+        long retryAt = ticker.read() + NO_TOKEN_RETRY.toNanos();
+        return new Timed<>(null, retryAt, retryAt, null);
     }
 
-    private @Nullable String fetchLatestFromHub(String repository) {
-        String url = registryProperties.urls().repositories() + repository + "/tags?page_size=100";
-        try {
-            String responseBody = restClient.get().uri(url).retrieve().body(String.class);
+    /**
+     * Walks the tag listing newest first. Tags are rarely pushed out of version order, so the walk stops at the
+     * first page with a semver tag, and on a refresh at the first tag already seen last time.
+     * Failures other than an unknown repository are thrown, so they are never cached.
+     */
+    private Timed<LatestTag> fetchLatestFromHub(
+            String repository, @Nullable Timed<LatestTag> previous, Priority priority) {
+        RegistryProperties.Tags tags = registryProperties.tags();
+        String url = registryProperties.urls().repositories() + repository + "/tags?page_size=" + tags.pageSize()
+                + "&ordering=last_updated";
+        LatestTag known = previous != null ? previous.value() : null;
+        Instant seenUpTo = known != null ? known.updatedAt() : null;
+        String latest = known != null ? known.version() : null;
+        Instant updatedAt = seenUpTo;
+        Validators validators = null;
+        for (int pages = 0; url != null && pages < tags.maxPages(); pages++) {
+            // Only the first page is revalidated: nothing can have been pushed if it did not change
+            TagPage page = fetchTagPage(
+                    url, seenUpTo, pages == 0 && previous != null ? previous.validators() : null, priority);
+            if (page == NOT_MODIFIED) {
+                log.debug("Tags of {} not modified", repository);
+                return refreshable(known, previous.validators());
+            }
+            if (page == null) {
+                break;
+            }
+            if (pages == 0) {
+                validators = page.validators();
+            }
+            latest = newerVersion(latest, page.latest());
+            updatedAt = later(updatedAt, page.updatedAt());
+            if (page.reachedSeen() || page.latest() != null) {
+                break;
+            }
+            url = nextPage(page.next());
+        }
+        return refreshable(new LatestTag(latest, updatedAt), validators);
+    }
 
-            if (responseBody == null) return null;
-            JsonNode response = objectMapper.readTree(responseBody);
-            if (!response.has(RESULTS)) {
-                return null;
+    /** Returns null for an unknown repository, and {@link #NOT_MODIFIED} when the validators still match. */
+    private @Nullable TagPage fetchTagPage(
+            String url, @Nullable Instant seenUpTo, @Nullable Validators validators, Priority priority) {
+        // Parsed straight from the response stream instead of buffering the listing
+        return limited(priority, () -> restClient
+                .get()
+                .uri(url)
+                .headers(headers -> Validators.applyTo(validators, headers))
+                .exchange((request, response) -> {
+                    HttpStatusCode status = response.getStatusCode();
+                    if (status.value() == HttpStatus.NOT_FOUND.value()) {
+                        return null;
+                    }
+                    if (validators != null && isNotModified(status)) {
+                        return NOT_MODIFIED;
+                    }
+                    if (status.is4xxClientError()) {
+                        throw HttpClientErrorException.create(
+                                status, response.getStatusText(), response.getHeaders(), null, null);
+                    }
+                    if (status.isError()) {
+                        throw HttpServerErrorException.create(
+                                status, response.getStatusText(), response.getHeaders(), null, null);
+                    }
+                    return readTagPage(response.getBody(), seenUpTo, Validators.from(response.getHeaders()));
+                }));
+    }
+
+    private static boolean isNotModified(HttpStatusCode status) {
+        return status.value() == HttpStatus.NOT_MODIFIED.value();
+    }
+
+    /** Only follows links back to the configured repositories URL. */
+    private @Nullable String nextPage(@Nullable String next) {
+        if (next == null || !next.startsWith(registryProperties.urls().repositories())) {
+            if (next != null) {
+                log.debug("Not following tag page link outside the repositories URL: {}", next);
             }
+            return null;
+        }
+        return next;
+    }
 
-            List<String> tags = new ArrayList<>();
-            for (JsonNode result : response.get(RESULTS)) {
-                String name = result.get(NAME).asText();
-                if (ImageUtils.isSemver(name)) {
-                    tags.add(name);
+    /**
+     * Reads one page of a tag listing in one pass, keeping only the highest semver tag and the latest update
+     * time seen so far.
+     */
+    private TagPage readTagPage(InputStream body, @Nullable Instant seenUpTo, @Nullable Validators validators)
+            throws IOException {
+        String latest = null;
+        Instant updatedAt = null;
+        boolean reachedSeen = false;
+        String next = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new TagPage(null, null, false, null, validators);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (NEXT.equals(field) && value == JsonToken.VALUE_STRING) {
+                    next = parser.getText();
+                    continue;
+                }
+                if (value != JsonToken.START_ARRAY || !RESULTS.equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                for (JsonToken token = parser.nextToken();
+                        token != null && token != JsonToken.END_ARRAY;
+                        token = parser.nextToken()) {
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    Tag tag = readTag(parser);
+                    if (tag.name() != null && ImageUtils.isSemver(tag.name())) {
+                        latest = newerVersion(latest, tag.name());
+                    }
+                    updatedAt = later(updatedAt, tag.updatedAt());
+                    if (seenUpTo != null
+                            && tag.updatedAt() != null
+                            && !tag.updatedAt().isAfter(seenUpTo)) {
+                        reachedSeen = true;
+                    }
                 }
             }
+        }
+        return new TagPage(latest, updatedAt, reachedSeen, next, validators);
+    }
 
-            tags.sort(ImageUtils::compareSemVer);
-            if (tags.isEmpty()) {
-                return null;
+    /** Reads the name and update time of one tag, leaving the parser at the end of its object. */
+    private static Tag readTag(JsonParser parser) throws IOException {
+        String name = null;
+        Instant updatedAt = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (NAME.equals(field) && value == JsonToken.VALUE_STRING) {
+                name = parser.getText();
+            } else if (LAST_UPDATED.equals(field) && value == JsonToken.VALUE_STRING) {
+                updatedAt = parseInstant(parser.getText());
+            } else {
+                parser.skipChildren();
             }
+        }
+        return new Tag(name, updatedAt);
+    }
 
-            return tags.getLast();
-        } catch (HttpClientErrorException.NotFound e) {
-            return null;
-        } catch (Exception e) {
-            log.error("Error in fetchLatestFromHub", e);
+    private static @Nullable Instant parseInstant(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException _) {
+            log.debug("Ignoring unparsable tag update time: {}", value);
             return null;
         }
     }
+
+    private static @Nullable String newerVersion(@Nullable String current, @Nullable String candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || ImageUtils.compareSemVer(candidate, current) > 0 ? candidate : current;
+    }
+
+    private static @Nullable Instant later(@Nullable Instant current, @Nullable Instant candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+
+    /**
+     * Works out when a token expires from {@code expires_in}, counted from {@code issued_at} when the
+     * server sent one, and schedules its renewal once three quarters of that time have passed.
+     */
+    private static Timed<String> toToken(String value, JsonNode response, long receivedAt, Instant now) {
+        Duration lifetime = response.has(EXPIRES_IN)
+                ? Duration.ofSeconds(response.get(EXPIRES_IN).asLong())
+                : DEFAULT_TOKEN_LIFETIME;
+        Duration remaining = lifetime;
+        if (response.has(ISSUED_AT)) {
+            try {
+                Duration age =
+                        Duration.between(Instant.parse(response.get(ISSUED_AT).asText()), now);
+                if (age.isPositive()) {
+                    remaining = lifetime.minus(age);
+                }
+            } catch (Exception e) {
+                log.debug("Could not parse token issue time: {}", e.getMessage());
+            }
+        }
+        long remainingNanos = Math.max(0, remaining.toNanos());
+        return new Timed<>(value, receivedAt + remainingNanos * 3 / 4, receivedAt + remainingNanos, null);
+    }
+
+    /** Spreads a refresh delay so entries written together are not refreshed together. */
+    private static long jittered(Duration delay) {
+        double factor = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return (long) (delay.toNanos() * factor);
+    }
+
+    private record DigestKey(String repository, String tag) {
+
+        String id() {
+            return repository + ":" + tag;
+        }
+    }
+
+    /** The highest semver tag of a repository, and the latest update time among the tags read for it. */
+    private record LatestTag(
+            @Nullable String version, @Nullable Instant updatedAt) {}
+
+    private record TagPage(
+            @Nullable String latest,
+            @Nullable Instant updatedAt,
+            boolean reachedSeen,
+            @Nullable String next,
+            @Nullable Validators validators) {}
+
+    private record Tag(@Nullable String name, @Nullable Instant updatedAt) {}
+
+    /**
+     * A cached registry answer, the ticker times at which to refresh it and at which it expires, and the
+     * validators to revalidate it with.
+     */
+    private record Timed<V>(
+            @Nullable V value,
+            long refreshAt,
+            long expiresAt,
+            @Nullable Validators validators) {}
+
+    /** The {@code ETag} and {@code Last-Modified} of a registry response, sent back to revalidate it. */
+    private record Validators(
+            @Nullable String etag, @Nullable String lastModified) {
+
+        static @Nullable Validators from(HttpHeaders headers) {
+            String etag = headers.getETag();
+            String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+            return etag != null || lastModified != null ? new Validators(etag, lastModified) : null;
+        }
+
+        static void applyTo(@Nullable Validators validators, HttpHeaders headers) {
+            if (validators == null) {
+                return;
+            }
+            if (validators.etag() != null) {
+                headers.setIfNoneMatch(validators.etag());
+            }
+            if (validators.lastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, validators.lastModified());
+            }
+        }
+    }
+
+    private final class TokenLoader implements CacheLoader<String, Timed<String>> {
+
+        Timed<String> load(String repository, Priority priority) {
+            return fetchAuthToken(repository, priority);
+        }
+
+        /** Only reached when a renewal finds its token already evicted, so nobody waits for it. */
+        @Override
+        public Timed<String> load(String repository) {
+            return load(repository, Priority.BACKGROUND);
+        }
+
+        @Override
+        public Timed<String> reload(String repository, Timed<String> oldToken) {
+            // A failed renewal keeps the current token until it expires
+            Timed<String> token = fetchAuthToken(repository, Priority.BACKGROUND);
+            return token.value() != null ? token : oldToken;
+        }
+    }
+
+    /**
+     * Loads at the priority of the caller waiting for the value, and reloads as a background refresh that
+     * may revalidate or build on the previous value.
+     */
+    private record PrioritizedLoader<K, V>(Fetch<K, V> fetch) implements CacheLoader<K, Timed<V>> {
+
+        Timed<V> load(K key, Priority priority) {
+            return fetch.apply(key, null, priority);
+        }
+
+        /** Only reached when a refresh finds its entry already evicted, so nobody waits for it. */
+        @Override
+        public Timed<V> load(K key) {
+            return load(key, Priority.BACKGROUND);
+        }
+
+        @Override
+        public Timed<V> reload(K key, Timed<V> oldValue) {
+            return fetch.apply(key, oldValue, Priority.BACKGROUND);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Fetch<K, V> {
+        Timed<V> apply(K key, @Nullable Timed<V> previous, Priority priority);
+    }
+
+    private static final class TimedExpiry<K, V> implements Expiry<K, Timed<V>> {
+
+        @Override
+        public long expireAfterCreate(K key, Timed<V> timed, long currentTime) {
+            return Math.max(0, timed.expiresAt() - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, Timed<V> timed, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, timed, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, Timed<V> timed, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
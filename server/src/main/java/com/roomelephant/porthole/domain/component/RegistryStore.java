@@ -0,0 +1,251 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps registry answers on disk so a restart does not have to ask the registry again for every image.
+ * Answers are appended to a JSON lines file as they arrive, the last line for a key winning, and removals
+ * as lines marked {@code "removed": true}. The file is read on first use and rewritten from time to time
+ * without superseded, removed and expired lines.
+ */
+@Component
+@Slf4j
+public class RegistryStore {
+
+    private final boolean enabled;
+    private final Path path;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private @Nullable Map<String, Entry> entries;
+    private @Nullable BufferedWriter writer;
+    // Lines in the file that a compaction would drop
+    private int superseded;
+
+    public RegistryStore(RegistryProperties registryProperties) {
+        this(registryProperties, Clock.systemUTC());
+    }
+
+    RegistryStore(RegistryProperties registryProperties, Clock clock) {
+        RegistryProperties.Persistence persistence = registryProperties.persistence();
+        this.enabled = persistence.enabled();
+        this.path = Path.of(persistence.path());
+        this.maxAge =
+                registryProperties.cache().ttl().plus(registryProperties.cache().staleWhileRevalidate());
+        this.clock = clock;
+    }
+
+    /** Returns the last stored answer for a key, unless it is too old to be served. */
+    public synchronized @Nullable Entry get(@NonNull Kind kind, @NonNull String key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries().get(id(kind, key));
+        return entry != null && !isExpired(entry) ? entry : null;
+    }
+
+    /** Appends an answer to the file. Failing to write only costs the answer after a restart. */
+    public synchronized void put(@NonNull Entry entry) {
+        if (!enabled) {
+            return;
+        }
+        if (entries().put(id(entry.kind(), entry.key()), entry) != null) {
+            superseded++;
+        }
+        append(List.of(entry));
+    }
+
+    /**
+     * Forgets the answers of a kind whose key matches, so they are fetched again rather than restored.
+     * A removal line for each is appended, so a restart before the next compaction does not bring them back.
+     */
+    public synchronized void remove(@NonNull Kind kind, @NonNull Predicate<String> key) {
+        if (!enabled) {
+            return;
+        }
+        List<JsonNode> removals = new ArrayList<>();
+        entries().values().removeIf(entry -> {
+            if (entry.kind() != kind || !key.test(entry.key())) {
+                return false;
+            }
+            removals.add(objectMapper
+                    .createObjectNode()
+                    .put("kind", kind.name())
+                    .put("key", entry.key())
+                    .put("removed", true));
+            return true;
+        });
+        // Both the answer's line and its removal line go on the next compaction
+        superseded += 2 * removals.size();
+        append(removals);
+    }
+
+    /** Rewrites the file with only the current, unexpired answers. */
+    @Scheduled(fixedDelayString = "${registry.persistence.compact-interval}")
+    public synchronized void compact() {
+        if (!enabled || entries == null) {
+            return;
+        }
+        int expired = entries.size();
+        entries.values().removeIf(this::isExpired);
+        expired -= entries.size();
+        if (superseded == 0 && expired == 0) {
+            return;
+        }
+        closeWriter();
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (Entry entry : entries.values()) {
+                out.write(objectMapper.writeValueAsString(entry));
+                out.newLine();
+            }
+        } catch (IOException e) {
+            log.warn("Could not compact registry cache {}: {}", path, e.getMessage());
+            return;
+        }
+        try {
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Compacted registry cache to {} entries, dropped {} lines", entries.size(), superseded + expired);
+            superseded = 0;
+        } catch (IOException e) {
+            log.warn("Could not replace registry cache {}: {}", path, e.getMessage());
+        }
+    }
+
+    /** Appends lines to the file, opening it on the first write. */
+    private void append(List<?> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+                writer = Files.newBufferedWriter(
+                        path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (Object line : lines) {
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Could not write registry cache to {}: {}", path, e.getMessage());
+            closeWriter();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeWriter();
+    }
+
+    /** Reads the file the first time an answer is needed, so startup does not wait for it. */
+    private Map<String, Entry> entries() {
+        if (entries != null) {
+            return entries;
+        }
+        entries = new HashMap<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Could not read registry cache {}: {}", path, e.getMessage());
+            return entries;
+        }
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                JsonNode node = objectMapper.readTree(line);
+                if (node.path("removed").asBoolean()) {
+                    entries.remove(id(
+                            Kind.valueOf(node.path("kind").asText()),
+                            node.path("key").asText()));
+                    superseded += 2;
+                    continue;
+                }
+                Entry entry = objectMapper.treeToValue(node, Entry.class);
+                if (entries.put(id(entry.kind(), entry.key()), entry) != null) {
+                    superseded++;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // A line cut short by a crash; the ones before it are still good
+                log.debug("Skipping unreadable registry cache line: {}", e.getMessage());
+                superseded++;
+            }
+        }
+        log.debug("Loaded {} registry answers from {}", entries.size(), path);
+        return entries;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return Duration.between(Instant.ofEpochMilli(entry.storedAt()), clock.instant())
+                        .compareTo(maxAge)
+                >= 0;
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Could not close registry cache {}: {}", path, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private static String id(Kind kind, String key) {
+        return kind + ":" + key;
+    }
+
+    /** What a stored answer is. */
+    public enum Kind {
+        /** The latest version of an image, keyed by image name. */
+        VERSION,
+        /** A manifest digest, keyed by repository and tag. */
+        DIGEST
+    }
+
+    /**
+     * One stored registry answer, with the validators to revalidate it and when it was stored, in epoch
+     * milliseconds. {@code tagsUpdatedAt} is the newest tag update seen for a version.
+     */
+    public record Entry(
+            Kind kind,
+            String key,
+            @Nullable String value,
+            @Nullable Long tagsUpdatedAt,
+            @Nullable String etag,
+            @Nullable String lastModified,
+            long storedAt) {}
+}
@@ -0,0 +1,38 @@
+package com.roomelephant.porthole.domain.component;
+
+import com.roomelephant.porthole.domain.model.VersionDTO;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/** Keeps the last known version of each container, by host and container id. */
+@Component
+public class VersionStore {
+
+    private final Map<ContainerKey, VersionDTO> versions = new ConcurrentHashMap<>();
+
+    public @Nullable VersionDTO get(@NonNull String host, @NonNull String containerId) {
+        return versions.get(new ContainerKey(host, containerId));
+    }
+
+    public void put(@NonNull String host, @NonNull String containerId, @NonNull VersionDTO version) {
+        versions.put(new ContainerKey(host, containerId), version);
+    }
+
+    /** Drops the versions of removed containers, on whichever host they ran. */
+    public void remove(@NonNull Collection<String> containerIds) {
+        Set<String> removed = Set.copyOf(containerIds);
+        versions.keySet().removeIf(key -> removed.contains(key.containerId()));
+    }
+
+    /** Drops the versions of containers that no longer exist. */
+    public void retain(@NonNull Collection<ContainerKey> containers) {
+        versions.keySet().retainAll(Set.copyOf(containers));
+    }
+
+    public record ContainerKey(String host, String containerId) {}
+}
@@ -27,7 +27,7 @@ public class ContainerMapper {
         this.iconComponent = iconComponent;
     }
 
-    public @NonNull ContainerDTO toDTO(@NonNull Container container) {
+    public @NonNull ContainerDTO toDTO(@NonNull String host, @NonNull Container container) {
         String name = getName(container.getNames());
         String imageFull = container.getImage();
         Set<Integer> ports = getPorts(container.getPorts());
@@ -39,7 +39,7 @@ public class ContainerMapper {
         String iconUrl = resolveIconUrl(imageFull);
 
         return new ContainerDTO(
-                container.getId(), name, displayName, imageFull, ports, iconUrl, project, state, status);
+                container.getId(), name, displayName, imageFull, ports, iconUrl, project, state, status, host, false);
     }
 
     private @NonNull String getName(String[] names) {
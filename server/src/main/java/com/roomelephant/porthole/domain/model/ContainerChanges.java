@@ -0,0 +1,16 @@
+package com.roomelephant.porthole.domain.model;
+
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Containers changed since a requested generation.
+ * When {@code full} is set the cursor could not be served and {@code added} holds every container,
+ * so the caller must replace what it has. The generation is null when Docker was read directly.
+ */
+public record ContainerChanges(
+        @Nullable Long generation,
+        boolean full,
+        List<ContainerDTO> added,
+        List<ContainerDTO> updated,
+        List<String> removed) {}
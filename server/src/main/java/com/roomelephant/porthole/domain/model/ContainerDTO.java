@@ -3,6 +3,10 @@ package com.roomelephant.porthole.domain.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Set;
 
+/**
+ * A container as shown on the dashboard.
+ * {@code stale} is set when the container's host could not be reached and this is its last known state.
+ */
 public record ContainerDTO(
         String id,
         String name,
@@ -12,9 +16,16 @@ public record ContainerDTO(
         String iconUrl,
         String project,
         String state,
-        String status) {
+        String status,
+        String host,
+        boolean stale) {
     @JsonProperty("hasPublicPorts")
     public boolean hasPublicPorts() {
         return exposedPorts != null && !exposedPorts.isEmpty();
     }
+
+    public ContainerDTO withStale(boolean stale) {
+        return new ContainerDTO(
+                id, name, displayName, image, exposedPorts, iconUrl, project, state, status, host, stale);
+    }
 }
@@ -0,0 +1,17 @@
+package com.roomelephant.porthole.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.List;
+
+/**
+ * Changes between two index generations.
+ * Added and updated containers are sent whole, removed ones by id.
+ */
+public record ContainerDelta(
+        long generation, List<ContainerDTO> added, List<ContainerDTO> updated, List<String> removed) {
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+}
@@ -0,0 +1,10 @@
+package com.roomelephant.porthole.domain.model;
+
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Containers as seen at a given index generation.
+ * The generation is null when the list was read from Docker directly instead of the index.
+ */
+public record ContainerSnapshot(@Nullable Long generation, List<ContainerDTO> containers) {}
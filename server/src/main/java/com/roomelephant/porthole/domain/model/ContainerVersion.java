@@ -0,0 +1,4 @@
+package com.roomelephant.porthole.domain.model;
+
+/** One line of the streamed batch version response. */
+public record ContainerVersion(String id, VersionDTO version) {}
@@ -0,0 +1,13 @@
+package com.roomelephant.porthole.domain.model;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A Docker image event on one host. Depending on the action Docker names the image by id, by reference,
+ * or both; whichever it left out is null.
+ */
+public record ImageEvent(
+        String host,
+        String action,
+        @Nullable String imageId,
+        @Nullable String reference) {}
@@ -0,0 +1,16 @@
+package com.roomelephant.porthole.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** How soon a version lookup should get to Docker and the registry, most urgent first. */
+public enum LookupPriority {
+    /** The container's tile is on screen. */
+    @JsonProperty("high")
+    HIGH,
+    /** The container's tile is off screen. */
+    @JsonProperty("low")
+    LOW,
+    /** Nobody is waiting for the answer, as in the scheduled update check. */
+    @JsonProperty("background")
+    BACKGROUND
+}
@@ -0,0 +1,7 @@
+package com.roomelephant.porthole.domain.model;
+
+/**
+ * The version of a container, and whether the check settled it. A check is incomplete when the image
+ * could not be inspected or the registry did not answer, and is worth repeating.
+ */
+public record VersionCheck(VersionDTO version, boolean complete) {}
@@ -0,0 +1,10 @@
+package com.roomelephant.porthole.domain.model;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A container to check for updates, on the named host or the primary host when none is given.
+ * Without a priority the check is treated as {@link LookupPriority#HIGH}.
+ */
+public record VersionRequest(
+        String id, @Nullable String host, @Nullable LookupPriority priority) {}
@@ -0,0 +1,15 @@
+package com.roomelephant.porthole.domain.model.exception;
+
+import java.time.Duration;
+import lombok.Getter;
+
+/** Thrown instead of calling a dependency that had no free slot within the bulkhead's wait time. */
+public class BulkheadFullException extends RuntimeException {
+    @Getter
+    private final String dependency;
+
+    public BulkheadFullException(String dependency, Duration maxWait) {
+        super("No free slot for " + dependency + " within " + maxWait);
+        this.dependency = dependency;
+    }
+}
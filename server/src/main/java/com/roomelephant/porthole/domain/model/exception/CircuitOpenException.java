@@ -0,0 +1,19 @@
+package com.roomelephant.porthole.domain.model.exception;
+
+import java.time.Duration;
+import lombok.Getter;
+
+/** Thrown instead of calling a Docker host whose circuit breaker is open. */
+public class CircuitOpenException extends DockerUnavailableException {
+    @Getter
+    private final String host;
+
+    @Getter
+    private final Duration retryAfter;
+
+    public CircuitOpenException(String host, Duration retryAfter) {
+        super("Circuit breaker for Docker host " + host + " is open");
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+}
@@ -4,4 +4,8 @@ public class DockerUnavailableException extends RuntimeException {
     public DockerUnavailableException(Exception e) {
         super(e);
     }
+
+    protected DockerUnavailableException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,15 @@
+package com.roomelephant.porthole.domain.model.exception;
+
+import java.time.Duration;
+import lombok.Getter;
+
+/** Thrown instead of sending a registry request the rate limit budget cannot afford. */
+public class RegistryRateLimitedException extends RuntimeException {
+    @Getter
+    private final Duration retryAfter;
+
+    public RegistryRateLimitedException(Duration retryAfter) {
+        super("Registry rate limit budget exhausted, retry after " + retryAfter);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,86 @@
+package com.roomelephant.porthole.domain.service;
+
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.component.ImageInspectCache;
+import com.roomelephant.porthole.domain.component.RegistryService;
+import com.roomelephant.porthole.domain.component.VersionStore;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.ImageEvent;
+import com.roomelephant.porthole.domain.util.ImageUtils;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Service;
+
+/**
+ * Drops cached version answers as soon as Docker events show they changed, instead of waiting for them
+ * to expire. A pulled image invalidates what the registry said about its repository, a tagged, untagged
+ * or deleted image its inspect result and image checks, and a removed container its stored version.
+ */
+@Slf4j
+@Service
+public class CacheInvalidationService {
+
+    private static final String PULL = "pull";
+
+    private final RegistryService registryService;
+    private final VersionService versionService;
+    private final ImageInspectCache imageInspectCache;
+    private final VersionStore versionStore;
+
+    public CacheInvalidationService(
+            ContainerIndex containerIndex,
+            RegistryService registryService,
+            VersionService versionService,
+            ImageInspectCache imageInspectCache,
+            VersionStore versionStore) {
+        this(
+                containerIndex,
+                registryService,
+                versionService,
+                imageInspectCache,
+                versionStore,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    CacheInvalidationService(
+            ContainerIndex containerIndex,
+            RegistryService registryService,
+            VersionService versionService,
+            ImageInspectCache imageInspectCache,
+            VersionStore versionStore,
+            Executor executor) {
+        this.registryService = registryService;
+        this.versionService = versionService;
+        this.imageInspectCache = imageInspectCache;
+        this.versionStore = versionStore;
+        containerIndex.addListener(this::onPublish);
+        // Handed off because the registry store may have to read its file, and listeners must not block
+        containerIndex.addImageListener(event -> executor.execute(() -> onImageEvent(event)));
+    }
+
+    void onImageEvent(@NonNull ImageEvent event) {
+        if (event.imageId() != null) {
+            imageInspectCache.invalidate(event.host(), event.imageId());
+            versionService.invalidateImage(event.imageId());
+        }
+        if (PULL.equals(event.action()) && event.reference() != null) {
+            String repository = ImageUtils.resolveRepository(event.reference());
+            registryService.invalidate(repository);
+            versionService.invalidateRepository(repository);
+        }
+        log.debug(
+                "Invalidated caches after image {} of {} on {}",
+                event.action(),
+                event.reference() != null ? event.reference() : event.imageId(),
+                event.host());
+    }
+
+    private void onPublish(@NonNull ContainerSnapshot snapshot, @NonNull ContainerDelta delta) {
+        if (!delta.removed().isEmpty()) {
+            versionStore.remove(delta.removed());
+        }
+    }
+}
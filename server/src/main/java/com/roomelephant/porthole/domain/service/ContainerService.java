@@ -1,13 +1,31 @@
 package com.roomelephant.porthole.domain.service;
 
-import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.model.Container;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.domain.component.ContainerChangeLog;
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
 import com.roomelephant.porthole.domain.mapper.ContainerMapper;
+import com.roomelephant.porthole.domain.model.ContainerChanges;
 import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
 import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
 import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
 import org.springframework.stereotype.Service;
@@ -16,33 +34,212 @@ import org.springframework.stereotype.Service;
 @Service
 public class ContainerService {
 
-    private final DockerClient dockerClient;
+    // States Docker reports for containers listed without the "all" flag
+    private static final Set<String> RUNNING_STATES = Set.of("running", "paused", "restarting");
+
+    private final DockerHosts dockerHosts;
     private final ContainerMapper containerMapper;
+    private final ContainerIndex containerIndex;
+    private final ContainerChangeLog containerChangeLog;
+    private final DockerCircuitBreaker circuitBreaker;
+    private final long listFreshnessNanos;
+    private final long hostDeadlineNanos;
+    private final AtomicReference<Fetch> lastFetch = new AtomicReference<>();
+    private final ExecutorService hostExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public ContainerService(DockerClient dockerClient, ContainerMapper containerMapper) {
-        this.dockerClient = dockerClient;
+    public ContainerService(
+            DockerHosts dockerHosts,
+            ContainerMapper containerMapper,
+            ContainerIndex containerIndex,
+            ContainerChangeLog containerChangeLog,
+            DockerCircuitBreaker circuitBreaker,
+            DockerProperties dockerProperties) {
+        this.dockerHosts = dockerHosts;
         this.containerMapper = containerMapper;
+        this.containerIndex = containerIndex;
+        this.containerChangeLog = containerChangeLog;
+        this.circuitBreaker = circuitBreaker;
+        this.listFreshnessNanos = dockerProperties.listFreshness().toNanos();
+        this.hostDeadlineNanos = dockerProperties.hostDeadline().toNanos();
+    }
+
+    public @NonNull ContainerSnapshot getContainers(boolean includeWithoutPorts, boolean includeStopped) {
+        ContainerSnapshot snapshot =
+                containerIndex.snapshot().orElseGet(() -> new ContainerSnapshot(null, listContainers()));
+
+        List<ContainerDTO> containers = snapshot.containers().stream()
+                .filter(filter(includeWithoutPorts, includeStopped))
+                .toList();
+        return new ContainerSnapshot(snapshot.generation(), containers);
+    }
+
+    /**
+     * Returns what changed since the given generation, or every container when the change log
+     * no longer covers it. Containers that stopped matching the filters are reported as removed.
+     */
+    public @NonNull ContainerChanges getChanges(long since, boolean includeWithoutPorts, boolean includeStopped) {
+        if (containerIndex.snapshot().isPresent()) {
+            ContainerDelta delta = containerChangeLog.since(since).orElse(null);
+            if (delta != null) {
+                return filterChanges(delta, filter(includeWithoutPorts, includeStopped));
+            }
+        }
+
+        ContainerSnapshot snapshot = getContainers(includeWithoutPorts, includeStopped);
+        return new ContainerChanges(snapshot.generation(), true, snapshot.containers(), List.of(), List.of());
+    }
+
+    private static @NonNull ContainerChanges filterChanges(ContainerDelta delta, Predicate<ContainerDTO> filter) {
+        List<String> removed = new ArrayList<>(delta.removed());
+        List<ContainerDTO> updated = new ArrayList<>();
+        for (ContainerDTO dto : delta.updated()) {
+            if (filter.test(dto)) {
+                updated.add(dto);
+            } else {
+                removed.add(dto.id());
+            }
+        }
+        List<ContainerDTO> added = delta.added().stream().filter(filter).toList();
+        return new ContainerChanges(delta.generation(), false, added, updated, removed);
+    }
+
+    private static Predicate<ContainerDTO> filter(boolean includeWithoutPorts, boolean includeStopped) {
+        return dto -> (includeStopped || RUNNING_STATES.contains(dto.state()))
+                && (includeWithoutPorts || dto.hasPublicPorts());
+    }
+
+    /**
+     * Lists every container, sharing one in-flight Docker call between concurrent callers.
+     * A successful result is reused for the configured freshness window.
+     */
+    private @NonNull List<ContainerDTO> listContainers() {
+        while (true) {
+            Fetch current = lastFetch.get();
+            if (current != null && current.isUsable(listFreshnessNanos)) {
+                return current.join();
+            }
+
+            Fetch fetch = new Fetch();
+            if (lastFetch.compareAndSet(current, fetch)) {
+                return fetch.run(this::fetchContainers);
+            }
+        }
     }
 
-    public @NonNull List<ContainerDTO> getContainers(boolean includeWithoutPorts, boolean includeStopped) {
-        List<Container> containers;
+    /**
+     * Lists every host in parallel. A host that fails or misses the deadline contributes its last
+     * known containers marked stale; the call only fails when no host answers.
+     */
+    private @NonNull List<ContainerDTO> fetchContainers() {
+        List<DockerHosts.Host> hosts = dockerHosts.all();
+        List<CompletableFuture<List<ContainerDTO>>> lists = hosts.stream()
+                .map(host -> CompletableFuture.supplyAsync(() -> fetchContainers(host), hostExecutor))
+                .toList();
+
+        // A single host has nothing to fall back on, so it gets the full response timeout
+        long deadline = hosts.size() > 1 ? System.nanoTime() + hostDeadlineNanos : Long.MAX_VALUE;
+        List<ContainerDTO> containers = new ArrayList<>();
+        RuntimeException failure = null;
+        boolean answered = false;
+        for (int i = 0; i < hosts.size(); i++) {
+            DockerHosts.Host host = hosts.get(i);
+            try {
+                containers.addAll(await(lists.get(i), deadline));
+                answered = true;
+                continue;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause
+                            ? cause
+                            : new IllegalStateException(e.getCause());
+                }
+                log.warn(
+                        "Could not list containers of {}: {}",
+                        host.name(),
+                        e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                failure = failure != null ? failure : new DockerUnavailableException(e);
+                log.warn("Could not list containers of {} within the deadline", host.name());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UnexpectedException(e);
+            }
+            containerIndex.lastKnown(host.name()).forEach(dto -> containers.add(dto.withStale(true)));
+        }
+
+        if (!answered && failure != null) {
+            throw failure;
+        }
+        return containers;
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long deadline)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        if (deadline == Long.MAX_VALUE) {
+            return future.get();
+        }
+        return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private @NonNull List<ContainerDTO> fetchContainers(DockerHosts.Host host) {
         try {
-            containers =
-                    dockerClient.listContainersCmd().withShowAll(includeStopped).exec();
+            return circuitBreaker
+                    .call(host.name(), DockerCircuitBreaker.Operation.LIST, () -> host.client()
+                            .listContainersCmd()
+                            .withShowAll(true)
+                            .exec())
+                    .stream()
+                    .map(container -> containerMapper.toDTO(host.name(), container))
+                    .toList();
+        } catch (DockerUnavailableException e) {
+            throw e;
         } catch (RuntimeException e) {
             if (isDockerConnectionError(e)) {
                 throw new DockerUnavailableException(e);
             }
             throw new UnexpectedException(e);
         }
-
-        return containers.stream()
-                .map(containerMapper::toDTO)
-                .filter(dto -> includeWithoutPorts || dto.hasPublicPorts())
-                .toList();
     }
 
     private boolean isDockerConnectionError(RuntimeException e) {
         return e.getCause() instanceof SocketException;
     }
+
+    private static final class Fetch {
+
+        private final CompletableFuture<List<ContainerDTO>> result = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        boolean isUsable(long freshnessNanos) {
+            if (!result.isDone()) {
+                return true;
+            }
+            return !result.isCompletedExceptionally() && System.nanoTime() - completedAt < freshnessNanos;
+        }
+
+        @NonNull
+        List<ContainerDTO> run(Supplier<List<ContainerDTO>> loader) {
+            try {
+                List<ContainerDTO> containers = loader.get();
+                completedAt = System.nanoTime();
+                result.complete(containers);
+                return containers;
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        @NonNull
+        List<ContainerDTO> join() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+    }
 }
@@ -0,0 +1,203 @@
+package com.roomelephant.porthole.domain.service;
+
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.UpdateCheckProperties;
+import com.roomelephant.porthole.domain.component.VersionStore;
+import com.roomelephant.porthole.domain.component.VersionStore.ContainerKey;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.VersionCheck;
+import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks every container for updates in the background and keeps the results, so a tile asking for
+ * its version is answered from the store instead of waiting on Docker and the registry.
+ */
+@Slf4j
+@Service
+public class UpdateCheckService {
+
+    private final ContainerService containerService;
+    private final VersionService versionService;
+    private final VersionStore versionStore;
+    private final DockerHosts dockerHosts;
+    private final UpdateCheckProperties properties;
+    private final Clock clock;
+    private final ExecutorService checkExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public UpdateCheckService(
+            ContainerService containerService,
+            VersionService versionService,
+            VersionStore versionStore,
+            DockerHosts dockerHosts,
+            UpdateCheckProperties properties) {
+        this(containerService, versionService, versionStore, dockerHosts, properties, Clock.systemDefaultZone());
+    }
+
+    UpdateCheckService(
+            ContainerService containerService,
+            VersionService versionService,
+            VersionStore versionStore,
+            DockerHosts dockerHosts,
+            UpdateCheckProperties properties,
+            Clock clock) {
+        this.containerService = containerService;
+        this.versionService = versionService;
+        this.versionStore = versionStore;
+        this.dockerHosts = dockerHosts;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the stored version of a container, checking it right away when it was not checked yet.
+     * With background checks disabled every call checks the container.
+     */
+    public @NonNull VersionDTO getVersionInfo(@NonNull String containerId, @Nullable String host) {
+        if (!properties.enabled()) {
+            return versionService.getVersionInfo(containerId, host);
+        }
+        String hostName = hostName(host);
+        VersionDTO stored = versionStore.get(hostName, containerId);
+        if (stored != null) {
+            return stored;
+        }
+        VersionCheck check = versionService.check(containerId, host, LookupPriority.HIGH);
+        store(hostName, containerId, check);
+        return check.version();
+    }
+
+    /**
+     * Passes the stored version of each container to {@code results} right away, and checks the containers
+     * not checked yet in one batch. With background checks disabled every container is checked. The batch
+     * is expected to have passed {@link VersionService#validate(List)}.
+     *
+     * @throws DockerUnavailableException when nothing was stored and Docker could not be reached
+     */
+    public void getVersionInfo(
+            @NonNull List<VersionRequest> requests, @NonNull BiConsumer<String, VersionDTO> results) {
+        if (!properties.enabled()) {
+            versionService.getVersionInfo(requests, results);
+            return;
+        }
+
+        List<VersionRequest> distinct = VersionService.distinct(requests);
+        List<VersionRequest> unchecked = new ArrayList<>();
+        distinct.forEach(request -> {
+            VersionDTO stored = versionStore.get(hostName(request.host()), request.id());
+            if (stored != null) {
+                results.accept(request.id(), stored);
+            } else {
+                unchecked.add(request);
+            }
+        });
+        if (unchecked.isEmpty()) {
+            return;
+        }
+
+        try {
+            versionService.check(unchecked, (request, check) -> {
+                store(hostName(request.host()), request.id(), check);
+                results.accept(request.id(), check.version());
+            });
+        } catch (DockerUnavailableException e) {
+            if (unchecked.size() == distinct.size()) {
+                throw e;
+            }
+            log.debug("Answered the stored versions only: {}", e.getMessage());
+        }
+    }
+
+    /** Starts a walk over every container unless one is still running or it is quiet hours. */
+    @Scheduled(fixedDelayString = "${porthole.update-check.interval}")
+    public void scheduleCheck() {
+        if (!properties.enabled() || properties.isQuiet(LocalTime.now(clock))) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.debug("Previous update check still running, skipping this one");
+            return;
+        }
+        // Walked off the scheduler thread so other scheduled tasks are not held up
+        checkExecutor.execute(() -> {
+            try {
+                checkAll();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /** Checks every container, at most the configured number at a time, and stores the results. */
+    void checkAll() {
+        List<ContainerDTO> containers;
+        try {
+            containers = containerService.getContainers(true, true).containers();
+        } catch (RuntimeException e) {
+            log.warn("Could not list containers for the update check: {}", e.getMessage());
+            return;
+        }
+
+        Semaphore permits = new Semaphore(properties.concurrency());
+        List<CompletableFuture<Void>> checks = containers.stream()
+                .map(container -> CompletableFuture.runAsync(() -> check(container, permits), checkExecutor))
+                .toList();
+        CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).join();
+
+        versionStore.retain(containers.stream()
+                .map(container -> new ContainerKey(container.host(), container.id()))
+                .toList());
+        log.debug("Checked {} containers for updates", containers.size());
+    }
+
+    private void check(ContainerDTO container, Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException _) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            store(
+                    container.host(),
+                    container.id(),
+                    versionService.check(container.id(), container.host(), LookupPriority.BACKGROUND));
+        } catch (RuntimeException e) {
+            // The previous result, if any, is kept until the next walk
+            log.debug("Could not check container {} for updates: {}", container.id(), e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Keeps only settled checks, so a registry hiccup does not replace a good result with an unknown one. */
+    private void store(String host, String containerId, VersionCheck check) {
+        if (check.complete()) {
+            versionStore.put(host, containerId, check.version());
+        } else {
+            log.debug("Check of container {} did not settle, not storing it", containerId);
+        }
+    }
+
+    private String hostName(@Nullable String host) {
+        return host != null ? host : dockerHosts.primary().name();
+    }
+}
@@ -1,17 +1,36 @@
 package com.roomelephant.porthole.domain.service;
 
-import com.github.dockerjava.api.DockerClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.model.ContainerConfig;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
+import com.roomelephant.porthole.domain.component.ImageInspectCache;
+import com.roomelephant.porthole.domain.component.LookupScheduler;
 import com.roomelephant.porthole.domain.component.RegistryService;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.VersionCheck;
 import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
 import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.NotFoundException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
 import com.roomelephant.porthole.domain.util.ImageUtils;
 import java.net.SocketException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 import lombok.extern.slf4j.Slf4j;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
@@ -24,20 +43,188 @@ public class VersionService {
     private static final String LABEL_OCI_IMAGE_VERSION = "org.opencontainers.image.version";
     private static final String LABEL_IMAGE_VERSION = "version";
 
-    private final DockerClient dockerClient;
+    private final DockerHosts dockerHosts;
     private final RegistryService registryService;
+    private final DockerCircuitBreaker circuitBreaker;
+    private final ImageInspectCache imageInspectCache;
+    private final long deadlineNanos;
+    private final LookupScheduler lookupScheduler;
+    private final int batchMaxSize;
+    // Registry lookups of one request run side by side on virtual threads
+    private final ExecutorService lookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    // Keyed by image id, so a re-pulled image never reuses the result of the one it replaced
+    private final Cache<ImageKey, ImageVersion> imageVersions;
+    private final Map<ImageKey, ImageCheck> imageChecks = new ConcurrentHashMap<>();
 
-    public VersionService(DockerClient dockerClient, RegistryService registryService) {
-        this.dockerClient = dockerClient;
+    public VersionService(
+            DockerHosts dockerHosts,
+            RegistryService registryService,
+            DockerCircuitBreaker circuitBreaker,
+            ImageInspectCache imageInspectCache,
+            LookupScheduler lookupScheduler,
+            RegistryProperties registryProperties) {
+        this.dockerHosts = dockerHosts;
         this.registryService = registryService;
+        this.circuitBreaker = circuitBreaker;
+        this.imageInspectCache = imageInspectCache;
+        this.lookupScheduler = lookupScheduler;
+        this.deadlineNanos = registryProperties.timeout().deadline().toNanos();
+        this.batchMaxSize = registryProperties.batch().maxSize();
+        this.imageVersions = Caffeine.newBuilder()
+                .expireAfterWrite(registryProperties.cache().ttl())
+                .maximumSize(registryProperties.cache().imageMaxSize())
+                .build();
     }
 
     public @NonNull VersionDTO getVersionInfo(@NonNull String containerId) {
+        return getVersionInfo(containerId, null);
+    }
+
+    /** Looks the container up on the named host, or on the primary host when none is given. */
+    public @NonNull VersionDTO getVersionInfo(@NonNull String containerId, @Nullable String host) {
+        return getVersionInfo(containerId, host, LookupPriority.HIGH);
+    }
+
+    /** Looks the container up, getting to Docker and the registry after any more urgent lookups. */
+    public @NonNull VersionDTO getVersionInfo(
+            @NonNull String containerId, @Nullable String host, @NonNull LookupPriority priority) {
+        return check(containerId, host, priority).version();
+    }
+
+    /** Looks the container up and tells whether the check settled, so unsettled ones are not kept. */
+    public @NonNull VersionCheck check(
+            @NonNull String containerId, @Nullable String host, @NonNull LookupPriority priority) {
+        long deadline = System.nanoTime() + deadlineNanos;
+        Inspected inspected = lookupScheduler.run(priority, deadline, () -> inspect(containerId, host));
+        return inspected.toCheck(checkImage(inspected, deadline, priority));
+    }
+
+    /**
+     * Looks many containers up at once and passes each version to {@code results} as soon as it is known.
+     * Containers running the same image share one image check, and the Docker and registry calls wait for
+     * the lookup scheduler in the order of each request's priority. Containers that cannot be found or
+     * inspected are left out.
+     *
+     * @throws DockerUnavailableException when Docker could not be reached for any of the containers
+     */
+    public void getVersionInfo(
+            @NonNull List<VersionRequest> requests, @NonNull BiConsumer<String, VersionDTO> results) {
+        check(requests, (request, check) -> results.accept(request.id(), check.version()));
+    }
+
+    /**
+     * Checks many containers at once like {@link #getVersionInfo(List, BiConsumer)}, passing each request
+     * along with its check. The batch is expected to have passed {@link #validate(List)}.
+     *
+     * @throws DockerUnavailableException when Docker could not be reached for any of the containers
+     */
+    public void check(
+            @NonNull List<VersionRequest> requests, @NonNull BiConsumer<VersionRequest, VersionCheck> results) {
+        long deadline = System.nanoTime() + deadlineNanos;
+        Batch batch = new Batch(results);
+
+        // Plain futures, so cancelling one interrupts its lookup wherever it waits
+        List<Future<?>> tasks = distinct(requests).stream()
+                .<Future<?>>map(request -> lookupExecutor.submit(() -> {
+                    LookupPriority priority = priority(request);
+                    Inspected inspected =
+                            lookupScheduler.run(priority, deadline, () -> inspect(request.id(), request.host()));
+                    batch.accept(request, inspected.toCheck(checkImage(inspected, deadline, priority)));
+                }))
+                .toList();
+
+        try {
+            for (Future<?> task : tasks) {
+                try {
+                    task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException _) {
+                    // Reported below along with the other failures
+                }
+            }
+        } catch (TimeoutException _) {
+            log.warn("Could not check every container version within the deadline");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
+        } finally {
+            batch.close();
+            tasks.forEach(task -> task.cancel(true));
+        }
+
+        DockerUnavailableException unavailable = null;
+        for (Future<?> task : tasks) {
+            if (task.state() != Future.State.FAILED) {
+                continue;
+            }
+            Throwable error = task.exceptionNow();
+            if (error instanceof DockerUnavailableException e) {
+                unavailable = e;
+            } else if (!(error instanceof NotFoundException)) {
+                log.warn("Could not check container version: {}", error.getMessage());
+            }
+        }
+        if (batch.isEmpty() && unavailable != null) {
+            throw unavailable;
+        }
+    }
+
+    /**
+     * Rejects a batch that is too large or names a container without an id.
+     *
+     * @throws IllegalArgumentException when the batch cannot be checked
+     */
+    public void validate(@NonNull List<VersionRequest> requests) {
+        if (requests.size() > batchMaxSize) {
+            throw new IllegalArgumentException("At most " + batchMaxSize + " containers can be checked at once");
+        }
+        if (requests.stream()
+                .anyMatch(request -> request.id() == null || request.id().isBlank())) {
+            throw new IllegalArgumentException("Container id must not be blank");
+        }
+    }
+
+    /** Keeps one request per container, at the most urgent priority any of its requests asked for. */
+    static @NonNull List<VersionRequest> distinct(@NonNull List<VersionRequest> requests) {
+        Map<ContainerKey, VersionRequest> byContainer = new LinkedHashMap<>();
+        for (VersionRequest request : requests) {
+            byContainer.merge(
+                    new ContainerKey(request.id(), request.host()),
+                    request,
+                    (kept, other) -> priority(other).compareTo(priority(kept)) < 0 ? other : kept);
+        }
+        return List.copyOf(byContainer.values());
+    }
+
+    private static @NonNull LookupPriority priority(@NonNull VersionRequest request) {
+        return request.priority() != null ? request.priority() : LookupPriority.HIGH;
+    }
+
+    /** Drops the image checks of a repository, so the next check asks the registry again. */
+    public void invalidateRepository(@NonNull String repository) {
+        imageVersions.asMap().keySet().removeIf(key -> ImageUtils.resolveRepository(key.image())
+                .equals(repository));
+    }
+
+    /** Drops the image checks of an image id whose repo digests may have changed. */
+    public void invalidateImage(@NonNull String imageId) {
+        imageVersions.asMap().keySet().removeIf(key -> key.imageId().equals(imageId));
+    }
+
+    private @NonNull Inspected inspect(@NonNull String containerId, @Nullable String host) {
+        DockerHosts.Host dockerHost = host == null
+                ? dockerHosts.primary()
+                : dockerHosts.find(host).orElseThrow(() -> new NotFoundException(containerId));
+
         InspectContainerResponse container;
         try {
-            container = dockerClient.inspectContainerCmd(containerId).exec();
+            container = circuitBreaker.call(
+                    dockerHost.name(),
+                    DockerCircuitBreaker.Operation.INSPECT,
+                    () -> dockerHost.client().inspectContainerCmd(containerId).exec());
         } catch (com.github.dockerjava.api.exception.NotFoundException _) {
             throw new NotFoundException(containerId);
+        } catch (DockerUnavailableException e) {
+            throw e;
         } catch (RuntimeException e) {
             if (isDockerConnectionError(e)) {
                 throw new DockerUnavailableException(e);
@@ -47,30 +234,108 @@ public class VersionService {
 
         var config = container.getConfig();
         if (config == null || config.getImage() == null) {
-            return new VersionDTO(null, null, false);
+            return new Inspected(null, null, null, dockerHost);
         }
 
         String imageFull = config.getImage();
-
         String currentVersion = getVersionFromContainer(config, imageFull);
+        return new Inspected(currentVersion, imageFull, container.getImageId(), dockerHost);
+    }
 
-        List<String> repoDigests = getRepoDigests(container.getImageId());
-        boolean isLocalImage = repoDigests == null || repoDigests.isEmpty();
+    /**
+     * Returns the update check of the container's image, shared by every container running it.
+     * A check already under way for the same image is joined rather than started again, moving it ahead
+     * when the joining caller is more urgent, and only checks the registry fully answered are kept. A
+     * check that does not finish by the caller's deadline counts as unknown.
+     */
+    private @Nullable ImageVersion checkImage(
+            @NonNull Inspected inspected, long deadline, @NonNull LookupPriority priority) {
+        if (inspected.image() == null || inspected.imageId() == null) {
+            return null;
+        }
+        ImageKey key = new ImageKey(inspected.imageId(), inspected.image());
+        ImageVersion cached = imageVersions.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        ImageCheck check = imageChecks.computeIfAbsent(key, _ -> {
+            LookupScheduler.Ticket ticket = lookupScheduler.ticket(priority);
+            return new ImageCheck(
+                    ticket,
+                    CompletableFuture.supplyAsync(
+                            () -> lookupScheduler.run(
+                                    ticket, deadline, () -> runImageCheck(inspected.host(), key, deadline, ticket)),
+                            lookupExecutor));
+        });
+        lookupScheduler.raise(check.ticket(), priority);
+        check.result().whenComplete((imageVersion, _) -> {
+            if (imageVersion != null && imageVersion.isComplete()) {
+                imageVersions.put(key, imageVersion);
+            }
+            imageChecks.remove(key, check);
+        });
 
-        if (isLocalImage) {
-            return new VersionDTO(currentVersion, null, false);
+        try {
+            return check.result().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException _) {
+            log.warn("Could not check image {} within the deadline", inspected.image());
+            return null;
+        } catch (ExecutionException e) {
+            log.warn(
+                    "Could not check image {}: {}",
+                    inspected.image(),
+                    e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
         }
+    }
 
-        String latestVersion = registryService.getLatestVersion(imageFull);
-        boolean updateAvailable = checkForUpdate(imageFull, currentVersion, latestVersion, repoDigests);
+    private @NonNull ImageVersion runImageCheck(
+            DockerHosts.Host dockerHost, @NonNull ImageKey key, long deadline, LookupScheduler.Ticket ticket) {
+        List<String> repoDigests = getRepoDigests(dockerHost, key.imageId());
+        if (repoDigests == null || repoDigests.isEmpty()) {
+            return new ImageVersion(repoDigests, null);
+        }
+        // Read once the check got its slot, so a caller who joined meanwhile is taken into account
+        return new ImageVersion(repoDigests, lookUp(key.image(), deadline, lookupScheduler.priority(ticket)));
+    }
 
-        return new VersionDTO(currentVersion, latestVersion, updateAvailable);
+    private @NonNull Remote lookUp(@NonNull String imageFull, long deadline, @NonNull LookupPriority priority) {
+        // The latest tag and the current tag's digest do not depend on each other
+        String tag = ImageUtils.extractTag(imageFull);
+        Future<String> latest = lookupExecutor.submit(() -> registryService.getLatestVersion(imageFull, priority));
+        Future<String> digest = lookupExecutor.submit(() -> registryService.getDigest(imageFull, tag, priority));
+        try {
+            return new Remote(
+                    await(latest, deadline, "latest version", imageFull), await(digest, deadline, "digest", imageFull));
+        } finally {
+            latest.cancel(true);
+            digest.cancel(true);
+        }
     }
 
-    private @Nullable List<String> getRepoDigests(@NonNull String imageId) {
+    /** Waits for a registry lookup until the request deadline, treating a late or failed lookup as unknown. */
+    private static @Nullable String await(Future<String> lookup, long deadline, String what, String imageFull) {
         try {
-            var inspectImage = dockerClient.inspectImageCmd(imageId).exec();
-            return inspectImage.getRepoDigests();
+            return lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException _) {
+            log.warn("Could not fetch {} for {} within the deadline", what, imageFull);
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Error fetching {} for {}", what, imageFull, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnexpectedException(e);
+        }
+    }
+
+    private @Nullable List<String> getRepoDigests(DockerHosts.Host dockerHost, @NonNull String imageId) {
+        try {
+            return imageInspectCache.repoDigests(dockerHost, imageId);
         } catch (Exception e) {
             log.error("Failed to inspect image: " + imageId, e);
             return null;
@@ -130,23 +395,17 @@ public class VersionService {
         return null;
     }
 
-    private boolean checkForUpdate(
-            @NonNull String imageFull,
+    private static boolean checkForUpdate(
+            @NonNull String tag,
             @Nullable String currentVersion,
             @Nullable String latestVersion,
+            @Nullable String remoteDigest,
             @NonNull List<String> repoDigests) {
-        String tag = ImageUtils.extractTag(imageFull);
-
-        try {
-            String remoteDigest = registryService.getDigest(imageFull, tag);
-            if (remoteDigest != null) {
-                boolean match = repoDigests.stream().anyMatch(rd -> rd.contains(remoteDigest));
-                if (!match) {
-                    return true;
-                }
+        if (remoteDigest != null) {
+            boolean match = repoDigests.stream().anyMatch(rd -> rd.contains(remoteDigest));
+            if (!match) {
+                return true;
             }
-        } catch (Exception e) {
-            log.error("Error checking for update: " + imageFull, e);
         }
 
         if (ImageUtils.isSemver(tag) && currentVersion != null && latestVersion != null) {
@@ -159,4 +418,75 @@ public class VersionService {
     private boolean isDockerConnectionError(RuntimeException e) {
         return e.getCause() instanceof SocketException;
     }
+
+    /** What the container tells about the running version. The image is null when unknown. */
+    private record Inspected(
+            @Nullable String currentVersion,
+            @Nullable String image,
+            @Nullable String imageId,
+            DockerHosts.Host host) {
+
+        /** Only containers without an image, or whose image check is complete, are settled. */
+        VersionCheck toCheck(@Nullable ImageVersion imageVersion) {
+            boolean complete = imageVersion != null ? imageVersion.isComplete() : image == null || imageId == null;
+            if (image == null || imageVersion == null || imageVersion.remote() == null) {
+                return new VersionCheck(new VersionDTO(currentVersion, null, false), complete);
+            }
+            Remote remote = imageVersion.remote();
+            String tag = ImageUtils.extractTag(image);
+            boolean updateAvailable = checkForUpdate(
+                    tag, currentVersion, remote.latestVersion(), remote.digest(), imageVersion.repoDigests());
+            return new VersionCheck(new VersionDTO(currentVersion, remote.latestVersion(), updateAvailable), complete);
+        }
+    }
+
+    private record ImageKey(String imageId, String image) {}
+
+    private record ContainerKey(String id, @Nullable String host) {}
+
+    /** An image check under way, with its place in the lookup queue. */
+    private record ImageCheck(LookupScheduler.Ticket ticket, CompletableFuture<ImageVersion> result) {}
+
+    /**
+     * Update check of one image. Repo digests are null when the image could not be inspected, and the
+     * registry is only asked about images pulled from one.
+     */
+    private record ImageVersion(
+            @Nullable List<String> repoDigests, @Nullable Remote remote) {
+
+        /** Local images are settled; pulled ones only once the registry named the tag's digest. */
+        boolean isComplete() {
+            return repoDigests != null && (remote == null || remote.digest() != null);
+        }
+    }
+
+    private record Remote(
+            @Nullable String latestVersion, @Nullable String digest) {}
+
+    /** Forwards results of one batch one at a time, and none once the batch has returned. */
+    private static final class Batch {
+
+        private final BiConsumer<VersionRequest, VersionCheck> results;
+        private int delivered;
+        private boolean closed;
+
+        Batch(BiConsumer<VersionRequest, VersionCheck> results) {
+            this.results = results;
+        }
+
+        synchronized void accept(VersionRequest request, VersionCheck check) {
+            if (!closed) {
+                results.accept(request, check);
+                delivered++;
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+
+        synchronized boolean isEmpty() {
+            return delivered == 0;
+        }
+    }
 }
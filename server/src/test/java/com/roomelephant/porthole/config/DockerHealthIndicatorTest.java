@@ -1,14 +1,34 @@
 package com.roomelephant.porthole.config;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.PingCmd;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.net.SocketException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -27,11 +47,22 @@ class DockerHealthIndicatorTest {
     @Mock
     private PingCmd pingCmd;
 
+    private MeterRegistry meterRegistry;
     private DockerHealthIndicator healthIndicator;
 
     @BeforeEach
     void setUp() {
-        healthIndicator = new DockerHealthIndicator(dockerClient);
+        DockerProperties dockerProperties = DockerPropertiesFixture.builder()
+                .circuitBreaker(new DockerProperties.CircuitBreaker(
+                        1, Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(1)))
+                .build();
+        DockerHosts dockerHosts = new DockerHosts(List.of(new DockerHosts.Host("local", dockerClient)));
+        meterRegistry = new SimpleMeterRegistry();
+        healthIndicator = new DockerHealthIndicator(
+                dockerHosts,
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry()),
+                meterRegistry,
+                dockerProperties);
     }
 
     @Test
@@ -43,6 +74,113 @@ class DockerHealthIndicatorTest {
         Health health = healthIndicator.health();
 
         assertEquals("UP", health.getStatus().toString());
+        assertEquals(
+                Map.of("local", DockerCircuitBreaker.State.CLOSED),
+                health.getDetails().get("circuitBreaker"));
+    }
+
+    @Test
+    @DisplayName("should report DOWN once the last probe result is older than a few probe intervals")
+    void shouldReportDownOnceLastProbeResultIsOutdated() {
+        Clock clock = mock(Clock.class);
+        Instant probedAt = Instant.parse("2025-01-01T00:00:00Z");
+        when(clock.instant()).thenReturn(probedAt, probedAt.plusSeconds(30), probedAt.plusSeconds(31));
+        DockerProperties dockerProperties = DockerPropertiesFixture.defaults();
+        DockerHosts dockerHosts = new DockerHosts(List.of(new DockerHosts.Host("local", dockerClient)));
+        DockerHealthIndicator indicator = new DockerHealthIndicator(
+                dockerHosts,
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(),
+                dockerProperties,
+                clock);
+        when(dockerClient.pingCmd()).thenReturn(pingCmd);
+        indicator.probe();
+
+        Health current = indicator.health();
+        Health outdated = indicator.health();
+
+        assertEquals("UP", current.getStatus().toString());
+        assertEquals("DOWN", outdated.getStatus().toString());
+        assertEquals("Not run for more than 30s", outdated.getDetails().get("probe"));
+    }
+
+    @Test
+    @DisplayName("should serve the last probe result without pinging Docker again")
+    void shouldServeLastProbeResultWithoutPingingDockerAgain() {
+        when(dockerClient.pingCmd()).thenReturn(pingCmd);
+        healthIndicator.probe();
+
+        healthIndicator.health();
+        Health health = healthIndicator.health();
+
+        assertEquals("UP", health.getStatus().toString());
+        assertTrue(health.getDetails().containsKey("checkedAt"));
+        verify(pingCmd, times(1)).exec();
+    }
+
+    @Test
+    @DisplayName("should record the latency of successful pings")
+    void shouldRecordLatencyOfSuccessfulPings() {
+        when(dockerClient.pingCmd()).thenReturn(pingCmd);
+
+        healthIndicator.probe();
+        healthIndicator.probe();
+
+        Timer timer =
+                meterRegistry.get("porthole.docker.ping").tag("host", "local").timer();
+        assertEquals(2, timer.count());
+        Map<?, ?> latency = (Map<?, ?>) healthIndicator.health().getDetails().get("latency");
+        assertEquals(Set.of("lastMs", "p50Ms", "p95Ms", "p99Ms"), latency.keySet());
+    }
+
+    @Test
+    @DisplayName("should not record latency when the ping fails")
+    void shouldNotRecordLatencyWhenPingFails() {
+        when(dockerClient.pingCmd()).thenReturn(pingCmd);
+        doThrow(new RuntimeException("Connection refused")).when(pingCmd).exec();
+
+        healthIndicator.probe();
+
+        assertEquals(0, meterRegistry.get("porthole.docker.ping").timer().count());
+        Map<?, ?> latency = (Map<?, ?>) healthIndicator.health().getDetails().get("latency");
+        assertFalse(latency.containsKey("lastMs"));
+    }
+
+    @Test
+    @DisplayName("should report DOWN without pinging Docker while the circuit breaker is open")
+    void shouldReportDownWithoutPingingDockerWhileCircuitBreakerIsOpen() {
+        when(dockerClient.pingCmd()).thenReturn(pingCmd);
+        doThrow(new RuntimeException(new SocketException("Connection refused")))
+                .when(pingCmd)
+                .exec();
+        healthIndicator.probe();
+        healthIndicator.probe();
+
+        Health health = healthIndicator.health();
+
+        assertEquals("DOWN", health.getStatus().toString());
+        assertEquals("Circuit breaker is open", health.getDetails().get("Error connecting to docker"));
+        assertEquals(
+                Map.of("local", DockerCircuitBreaker.State.OPEN),
+                health.getDetails().get("circuitBreaker"));
+        verify(pingCmd, times(1)).exec();
+    }
+
+    @Test
+    @DisplayName("should report a ping rejected by the bulkhead as a rejection")
+    void shouldReportPingRejectedByBulkheadAsRejection() {
+        DockerCircuitBreaker circuitBreaker = mock(DockerCircuitBreaker.class);
+        when(circuitBreaker.call(eq("local"), eq(DockerCircuitBreaker.Operation.PING), any()))
+                .thenThrow(new DockerUnavailableException(
+                        new BulkheadFullException("docker/local", Duration.ofSeconds(2))));
+        DockerHosts dockerHosts = new DockerHosts(List.of(new DockerHosts.Host("local", dockerClient)));
+        DockerHealthIndicator indicator = new DockerHealthIndicator(
+                dockerHosts, circuitBreaker, new SimpleMeterRegistry(), DockerPropertiesFixture.defaults());
+
+        Health health = indicator.health();
+
+        assertEquals("DOWN", health.getStatus().toString());
+        assertEquals("Rejected, too many calls in flight", health.getDetails().get("Error connecting to docker"));
     }
 
     @Test
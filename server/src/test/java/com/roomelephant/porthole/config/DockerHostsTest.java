@@ -0,0 +1,73 @@
+package com.roomelephant.porthole.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.github.dockerjava.api.DockerClient;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DockerHosts")
+class DockerHostsTest {
+
+    @Mock
+    private DockerClient localClient;
+
+    @Mock
+    private DockerClient remoteClient;
+
+    @Test
+    @DisplayName("should use the first host as primary")
+    void shouldUseFirstHostAsPrimary() {
+        DockerHosts.Host local = new DockerHosts.Host("local", localClient);
+        DockerHosts hosts = new DockerHosts(List.of(local, new DockerHosts.Host("nas", remoteClient)));
+
+        assertEquals(local, hosts.primary());
+    }
+
+    @Test
+    @DisplayName("should find a host by name")
+    void shouldFindHostByName() {
+        DockerHosts.Host remote = new DockerHosts.Host("nas", remoteClient);
+        DockerHosts hosts = new DockerHosts(List.of(new DockerHosts.Host("local", localClient), remote));
+
+        assertEquals(Optional.of(remote), hosts.find("nas"));
+        assertTrue(hosts.find("unknown").isEmpty());
+    }
+
+    @Test
+    @DisplayName("should reject an empty host list")
+    void shouldRejectEmptyHostList() {
+        List<DockerHosts.Host> none = List.of();
+
+        assertThrows(IllegalArgumentException.class, () -> new DockerHosts(none));
+    }
+
+    @Test
+    @DisplayName("should reject duplicate host names")
+    void shouldRejectDuplicateHostNames() {
+        List<DockerHosts.Host> duplicates =
+                List.of(new DockerHosts.Host("local", localClient), new DockerHosts.Host("local", remoteClient));
+
+        assertThrows(IllegalArgumentException.class, () -> new DockerHosts(duplicates));
+    }
+
+    @Test
+    @DisplayName("should close every client even when one fails")
+    void shouldCloseEveryClientEvenWhenOneFails() throws IOException {
+        doThrow(new IOException("closed")).when(localClient).close();
+        DockerHosts hosts = new DockerHosts(
+                List.of(new DockerHosts.Host("local", localClient), new DockerHosts.Host("nas", remoteClient)));
+
+        hosts.close();
+
+        verify(remoteClient).close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.roomelephant.porthole.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("VirtualThreadPinningMonitor")
+class VirtualThreadPinningMonitorTest {
+
+    private MeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new VirtualThreadPinningMonitor(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.close();
+    }
+
+    @Test
+    @DisplayName("should publish no pinning before any is recorded")
+    void shouldPublishNoPinningBeforeAnyIsRecorded() {
+        monitor.start();
+
+        assertEquals(0, pinnedTimer().count());
+    }
+
+    @Test
+    @DisplayName("should count pinned virtual threads and how long they were pinned")
+    void shouldCountPinnedVirtualThreads() {
+        monitor.pinned(Duration.ofMillis(30));
+        monitor.pinned(Duration.ofMillis(50));
+
+        assertEquals(2, pinnedTimer().count());
+        assertEquals(80, pinnedTimer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    @DisplayName("should allow starting and closing more than once")
+    void shouldAllowStartingAndClosingMoreThanOnce() {
+        monitor.start();
+        monitor.start();
+        monitor.close();
+
+        assertDoesNotThrow(monitor::close);
+    }
+
+    private Timer pinnedTimer() {
+        return meterRegistry.get("porthole.virtual_threads.pinned").timer();
+    }
+}
@@ -0,0 +1,87 @@
+package com.roomelephant.porthole.config.properties;
+
+import java.time.Duration;
+
+/**
+ * Builds {@link DockerProperties} for tests, starting from the defaults of {@code application.yml}.
+ * Tests only set what they depend on, so new settings do not touch unrelated tests.
+ */
+public final class DockerPropertiesFixture {
+
+    private Duration hostDeadline = Duration.ofSeconds(2);
+    private Duration listFreshness = Duration.ofSeconds(1);
+    private DockerProperties.Events events = new DockerProperties.Events(Duration.ofSeconds(5), 256);
+    private DockerProperties.CircuitBreaker circuitBreaker = new DockerProperties.CircuitBreaker(
+            3, Duration.ofSeconds(30), Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofSeconds(3));
+    private DockerProperties.HealthProbe healthProbe =
+            new DockerProperties.HealthProbe(Duration.ofSeconds(10), Duration.ofMinutes(5));
+    private DockerProperties.Images images = new DockerProperties.Images(1000, Duration.ofMinutes(5));
+    private DockerProperties.Bulkhead bulkhead = new DockerProperties.Bulkhead(16, Duration.ofSeconds(2));
+    private DockerProperties.CallExecutor callExecutor = new DockerProperties.CallExecutor(16, 100);
+
+    private DockerPropertiesFixture() {}
+
+    public static DockerPropertiesFixture builder() {
+        return new DockerPropertiesFixture();
+    }
+
+    public static DockerProperties defaults() {
+        return builder().build();
+    }
+
+    public DockerPropertiesFixture hostDeadline(Duration hostDeadline) {
+        this.hostDeadline = hostDeadline;
+        return this;
+    }
+
+    public DockerPropertiesFixture listFreshness(Duration listFreshness) {
+        this.listFreshness = listFreshness;
+        return this;
+    }
+
+    public DockerPropertiesFixture events(DockerProperties.Events events) {
+        this.events = events;
+        return this;
+    }
+
+    public DockerPropertiesFixture circuitBreaker(DockerProperties.CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public DockerPropertiesFixture healthProbe(DockerProperties.HealthProbe healthProbe) {
+        this.healthProbe = healthProbe;
+        return this;
+    }
+
+    public DockerPropertiesFixture images(DockerProperties.Images images) {
+        this.images = images;
+        return this;
+    }
+
+    public DockerPropertiesFixture bulkhead(DockerProperties.Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    public DockerPropertiesFixture callExecutor(DockerProperties.CallExecutor callExecutor) {
+        this.callExecutor = callExecutor;
+        return this;
+    }
+
+    public DockerProperties build() {
+        return new DockerProperties(
+                "unix:///var/run/docker.sock",
+                null,
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(60),
+                hostDeadline,
+                listFreshness,
+                events,
+                circuitBreaker,
+                healthProbe,
+                images,
+                bulkhead,
+                callExecutor);
+    }
+}
@@ -1,23 +1,34 @@
 package com.roomelephant.porthole.controller;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.roomelephant.porthole.domain.model.ContainerChanges;
 import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.LookupPriority;
 import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
 import com.roomelephant.porthole.domain.service.ContainerService;
+import com.roomelephant.porthole.domain.service.UpdateCheckService;
 import com.roomelephant.porthole.domain.service.VersionService;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @WebMvcTest(ContainerController.class)
 @DisplayName("ContainerController")
@@ -32,6 +43,12 @@ class ContainerControllerTest {
     @MockitoBean
     private VersionService versionService;
 
+    @MockitoBean
+    private UpdateCheckService updateCheckService;
+
+    @MockitoBean
+    private ContainerStreamBroadcaster containerStreamBroadcaster;
+
     @Nested
     @DisplayName("GET /api/containers")
     class GetContainers {
@@ -43,7 +60,7 @@ class ContainerControllerTest {
             ContainerDTO dto2 = createContainerDTO("container2");
             List<ContainerDTO> containerDTOs = List.of(dto1, dto2);
 
-            when(containerService.getContainers(false, false)).thenReturn(containerDTOs);
+            when(containerService.getContainers(false, false)).thenReturn(snapshot(containerDTOs));
 
             mockMvc.perform(get("/api/containers"))
                     .andExpect(status().isOk())
@@ -60,7 +77,7 @@ class ContainerControllerTest {
             ContainerDTO dtoWithPort = createContainerDTO("c1");
             ContainerDTO dtoNoPort = createContainerDTO("c2", Collections.emptySet());
 
-            when(containerService.getContainers(true, false)).thenReturn(List.of(dtoWithPort, dtoNoPort));
+            when(containerService.getContainers(true, false)).thenReturn(snapshot(List.of(dtoWithPort, dtoNoPort)));
 
             mockMvc.perform(get("/api/containers").param("includeWithoutPorts", "true"))
                     .andExpect(status().isOk())
@@ -72,7 +89,7 @@ class ContainerControllerTest {
         @Test
         @DisplayName("should pass includeStopped parameter")
         void shouldPassIncludeStoppedParameter() throws Exception {
-            when(containerService.getContainers(false, true)).thenReturn(Collections.emptyList());
+            when(containerService.getContainers(false, true)).thenReturn(snapshot(Collections.emptyList()));
 
             mockMvc.perform(get("/api/containers").param("includeStopped", "true"))
                     .andExpect(status().isOk());
@@ -83,7 +100,7 @@ class ContainerControllerTest {
         @Test
         @DisplayName("should pass both parameters")
         void shouldPassBothParameters() throws Exception {
-            when(containerService.getContainers(true, true)).thenReturn(Collections.emptyList());
+            when(containerService.getContainers(true, true)).thenReturn(snapshot(Collections.emptyList()));
 
             mockMvc.perform(get("/api/containers")
                             .param("includeWithoutPorts", "true")
@@ -93,10 +110,57 @@ class ContainerControllerTest {
             verify(containerService).getContainers(true, true);
         }
 
+        @Test
+        @DisplayName("should send a strong ETag when served from the index")
+        void shouldSendStrongETagWhenServedFromIndex() throws Exception {
+            when(containerService.getContainers(false, true))
+                    .thenReturn(new ContainerSnapshot(42L, List.of(createContainerDTO("c1"))));
+
+            mockMvc.perform(get("/api/containers").param("includeStopped", "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"42-01\""))
+                    .andExpect(header().string("Cache-Control", "no-cache"))
+                    .andExpect(jsonPath("$.length()").value(1));
+        }
+
+        @Test
+        @DisplayName("should answer 304 without a body when If-None-Match matches")
+        void shouldAnswerNotModifiedWhenIfNoneMatchMatches() throws Exception {
+            when(containerService.getContainers(false, false))
+                    .thenReturn(new ContainerSnapshot(42L, List.of(createContainerDTO("c1"))));
+
+            mockMvc.perform(get("/api/containers").header("If-None-Match", "\"42-00\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", "\"42-00\""))
+                    .andExpect(content().string(""));
+        }
+
+        @Test
+        @DisplayName("should return the list when If-None-Match is outdated")
+        void shouldReturnListWhenIfNoneMatchIsOutdated() throws Exception {
+            when(containerService.getContainers(false, false))
+                    .thenReturn(new ContainerSnapshot(43L, List.of(createContainerDTO("c1"))));
+
+            mockMvc.perform(get("/api/containers").header("If-None-Match", "\"42-00\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", "\"43-00\""))
+                    .andExpect(jsonPath("$.length()").value(1));
+        }
+
+        @Test
+        @DisplayName("should not send an ETag when read from Docker directly")
+        void shouldNotSendETagWhenReadFromDockerDirectly() throws Exception {
+            when(containerService.getContainers(false, false)).thenReturn(snapshot(Collections.emptyList()));
+
+            mockMvc.perform(get("/api/containers").header("If-None-Match", "\"42-00\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("ETag"));
+        }
+
         @Test
         @DisplayName("should return empty array when no containers")
         void shouldReturnEmptyArrayWhenNoContainers() throws Exception {
-            when(containerService.getContainers(false, false)).thenReturn(Collections.emptyList());
+            when(containerService.getContainers(false, false)).thenReturn(snapshot(Collections.emptyList()));
 
             mockMvc.perform(get("/api/containers"))
                     .andExpect(status().isOk())
@@ -104,6 +168,53 @@ class ContainerControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /api/containers?since")
+    class GetContainerChanges {
+
+        @Test
+        @DisplayName("should return the changes since the given generation")
+        void shouldReturnChangesSinceGeneration() throws Exception {
+            when(containerService.getChanges(41L, false, true))
+                    .thenReturn(new ContainerChanges(
+                            42L, false, List.of(createContainerDTO("c1")), List.of(), List.of("c2-id")));
+
+            mockMvc.perform(get("/api/containers").param("since", "41").param("includeStopped", "true"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Cache-Control", "no-cache"))
+                    .andExpect(jsonPath("$.generation").value(42))
+                    .andExpect(jsonPath("$.full").value(false))
+                    .andExpect(jsonPath("$.added[0].name").value("c1"))
+                    .andExpect(jsonPath("$.removed[0]").value("c2-id"));
+
+            verify(containerService, never()).getContainers(anyBoolean(), anyBoolean());
+        }
+
+        @Test
+        @DisplayName("should reject a generation that is not a number")
+        void shouldRejectGenerationThatIsNotNumber() throws Exception {
+            mockMvc.perform(get("/api/containers").param("since", "abc")).andExpect(status().isBadRequest());
+
+            verifyNoInteractions(containerService);
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /api/containers/stream")
+    class StreamContainers {
+
+        @Test
+        @DisplayName("should open an event stream")
+        void shouldOpenEventStream() throws Exception {
+            when(containerStreamBroadcaster.subscribe()).thenReturn(new SseEmitter());
+
+            mockMvc.perform(get("/api/containers/stream").accept("text/event-stream"))
+                    .andExpect(request().asyncStarted());
+
+            verify(containerStreamBroadcaster).subscribe();
+        }
+    }
+
     @Nested
     @DisplayName("GET /api/containers/{containerId}/version")
     class GetVersion {
@@ -112,7 +223,7 @@ class ContainerControllerTest {
         @DisplayName("should return version info")
         void shouldReturnVersionInfo() throws Exception {
             VersionDTO version = new VersionDTO("1.0.0", "1.1.0", true);
-            when(versionService.getVersionInfo("container-123")).thenReturn(version);
+            when(updateCheckService.getVersionInfo("container-123", null)).thenReturn(version);
 
             mockMvc.perform(get("/api/containers/container-123/version"))
                     .andExpect(status().isOk())
@@ -120,14 +231,27 @@ class ContainerControllerTest {
                     .andExpect(jsonPath("$.latestVersion").value("1.1.0"))
                     .andExpect(jsonPath("$.updateAvailable").value(true));
 
-            verify(versionService).getVersionInfo("container-123");
+            verify(updateCheckService).getVersionInfo("container-123", null);
+        }
+
+        @Test
+        @DisplayName("should look the container up on the requested host")
+        void shouldLookContainerUpOnRequestedHost() throws Exception {
+            when(updateCheckService.getVersionInfo("container-123", "nas"))
+                    .thenReturn(new VersionDTO("1.0.0", "1.0.0", false));
+
+            mockMvc.perform(get("/api/containers/container-123/version").param("host", "nas"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.currentVersion").value("1.0.0"));
+
+            verify(updateCheckService).getVersionInfo("container-123", "nas");
         }
 
         @Test
         @DisplayName("should handle container with no update available")
         void shouldHandleContainerWithNoUpdateAvailable() throws Exception {
             VersionDTO version = new VersionDTO("2.0.0", "2.0.0", false);
-            when(versionService.getVersionInfo("container-456")).thenReturn(version);
+            when(updateCheckService.getVersionInfo("container-456", null)).thenReturn(version);
 
             mockMvc.perform(get("/api/containers/container-456/version"))
                     .andExpect(status().isOk())
@@ -135,6 +259,131 @@ class ContainerControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /api/containers/versions")
+    class GetVersions {
+
+        private static final String BODY = "[{\"id\":\"web\"},{\"id\":\"db\",\"host\":\"nas\"}]";
+
+        @Test
+        @DisplayName("should return the versions keyed by container id")
+        void shouldReturnVersionsKeyedByContainerId() throws Exception {
+            answerVersions();
+
+            mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(BODY))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$.web.latestVersion").value("1.1.0"))
+                    .andExpect(jsonPath("$.db.updateAvailable").value(false));
+
+            verify(updateCheckService)
+                    .getVersionInfo(
+                            eq(List.of(new VersionRequest("web", null, null), new VersionRequest("db", "nas", null))),
+                            any());
+        }
+
+        @Test
+        @DisplayName("should pass the priority hint of each container")
+        void shouldPassPriorityHintOfEachContainer() throws Exception {
+            answerVersions();
+
+            mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[{\"id\":\"web\",\"priority\":\"high\"},{\"id\":\"db\",\"priority\":\"low\"}]"))
+                    .andExpect(status().isOk());
+
+            verify(updateCheckService)
+                    .getVersionInfo(
+                            eq(List.of(
+                                    new VersionRequest("web", null, LookupPriority.HIGH),
+                                    new VersionRequest("db", null, LookupPriority.LOW))),
+                            any());
+        }
+
+        @Test
+        @DisplayName("should stream one line per container when NDJSON is accepted")
+        void shouldStreamOneLinePerContainerWhenNdjsonIsAccepted() throws Exception {
+            answerVersions();
+
+            MvcResult result = mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .content(BODY))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andExpect(content()
+                            .string("{\"id\":\"web\",\"version\":{\"currentVersion\":\"1.0.0\","
+                                    + "\"latestVersion\":\"1.1.0\",\"updateAvailable\":true}}\n"
+                                    + "{\"id\":\"db\",\"version\":{\"currentVersion\":\"2.0.0\","
+                                    + "\"latestVersion\":\"2.0.0\",\"updateAvailable\":false}}\n"));
+        }
+
+        @Test
+        @DisplayName("should answer with JSON when any type is accepted")
+        void shouldAnswerWithJsonWhenAnyTypeIsAccepted() throws Exception {
+            answerVersions();
+
+            mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.ALL)
+                            .content(BODY))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        }
+
+        @Test
+        @DisplayName("should return 400 when the batch is rejected")
+        void shouldReturn400WhenBatchIsRejected() throws Exception {
+            doThrow(new IllegalArgumentException("At most 500 containers can be checked at once"))
+                    .when(versionService)
+                    .validate(anyList());
+
+            mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(BODY))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.detail").value("At most 500 containers can be checked at once"));
+        }
+
+        @Test
+        @DisplayName("should return 400 before streaming when the batch is rejected")
+        void shouldReturn400BeforeStreamingWhenBatchIsRejected() throws Exception {
+            doThrow(new IllegalArgumentException("Container id must not be blank"))
+                    .when(versionService)
+                    .validate(anyList());
+
+            mockMvc.perform(post("/api/containers/versions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .content("[{\"id\":\" \"}]"))
+                    .andExpect(request().asyncNotStarted())
+                    .andExpect(status().isBadRequest());
+
+            verifyNoInteractions(updateCheckService);
+        }
+
+        private void answerVersions() {
+            doAnswer(invocation -> {
+                        BiConsumer<String, VersionDTO> results = invocation.getArgument(1);
+                        results.accept("web", new VersionDTO("1.0.0", "1.1.0", true));
+                        results.accept("db", new VersionDTO("2.0.0", "2.0.0", false));
+                        return null;
+                    })
+                    .when(updateCheckService)
+                    .getVersionInfo(anyList(), any());
+        }
+    }
+
+    private ContainerSnapshot snapshot(List<ContainerDTO> containers) {
+        return new ContainerSnapshot(null, containers);
+    }
+
     private ContainerDTO createContainerDTO(String name) {
         return createContainerDTO(name, Set.of(80));
     }
@@ -149,6 +398,8 @@ class ContainerControllerTest {
                 "https://example.com/nginx.png",
                 "test-project",
                 "running",
-                "Up 1 hour");
+                "Up 1 hour",
+                "local",
+                false);
     }
 }
@@ -0,0 +1,240 @@
+package com.roomelephant.porthole.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.service.ContainerService;
+import com.roomelephant.porthole.domain.service.UpdateCheckService;
+import com.roomelephant.porthole.domain.service.VersionService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContainerStreamBroadcaster")
+class ContainerStreamBroadcasterTest {
+
+    @Mock
+    private ContainerIndex containerIndex;
+
+    private JsonMapper jsonMapper;
+    private ExecutorService dispatcher;
+    private ContainerStreamBroadcaster broadcaster;
+    private ContainerIndex.Listener listener;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        jsonMapper = spy(JsonMapper.builder().build());
+        dispatcher = Executors.newSingleThreadExecutor();
+        // Frames are written right away, on the dispatcher
+        createBroadcaster(Runnable::run);
+    }
+
+    private void createBroadcaster(Executor senders) {
+        broadcaster = new ContainerStreamBroadcaster(containerIndex, jsonMapper, dispatcher, senders, 3);
+
+        ArgumentCaptor<ContainerIndex.Listener> captor = ArgumentCaptor.forClass(ContainerIndex.Listener.class);
+        verify(containerIndex, atLeastOnce()).addListener(captor.capture());
+        listener = captor.getValue();
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new ContainerController(
+                        mock(ContainerService.class),
+                        mock(VersionService.class),
+                        mock(UpdateCheckService.class),
+                        broadcaster,
+                        jsonMapper))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("should send the current snapshot to a new subscriber")
+    void shouldSendCurrentSnapshotToNewSubscriber() throws Exception {
+        when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(dto("web")))));
+
+        MockHttpServletResponse response = subscribe();
+
+        String body = response.getContentAsString();
+        assertTrue(body.contains("id:7\nevent:snapshot\ndata:{\"generation\":7,\"containers\":[{\"id\":\"web\""));
+    }
+
+    @Test
+    @DisplayName("should hold the snapshot back until the index is in sync")
+    void shouldHoldSnapshotBackUntilIndexIsInSync() throws Exception {
+        when(containerIndex.snapshot()).thenReturn(Optional.empty());
+        MockHttpServletResponse response = subscribe();
+
+        assertEquals("", response.getContentAsString());
+
+        ContainerSnapshot snapshot = new ContainerSnapshot(8L, List.of(dto("web")));
+        publish(snapshot, new ContainerDelta(8L, List.of(dto("web")), List.of(), List.of()));
+
+        String body = response.getContentAsString();
+        assertTrue(body.contains("event:snapshot"));
+        assertFalse(body.contains("event:delta"));
+    }
+
+    @Test
+    @DisplayName("should send changes as deltas after the snapshot")
+    void shouldSendChangesAsDeltasAfterSnapshot() throws Exception {
+        when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(dto("web")))));
+        MockHttpServletResponse response = subscribe();
+
+        publish(
+                new ContainerSnapshot(8L, List.of(dto("db"))),
+                new ContainerDelta(8L, List.of(dto("db")), List.of(), List.of("web")));
+
+        String body = response.getContentAsString();
+        assertTrue(body.contains("id:8\nevent:delta\ndata:{\"generation\":8,\"added\":[{\"id\":\"db\""));
+        assertTrue(body.contains("\"updated\":[],\"removed\":[\"web\"]}"));
+    }
+
+    @Test
+    @DisplayName("should not send empty deltas")
+    void shouldNotSendEmptyDeltas() throws Exception {
+        ContainerSnapshot snapshot = new ContainerSnapshot(7L, List.of(dto("web")));
+        when(containerIndex.snapshot()).thenReturn(Optional.of(snapshot));
+        MockHttpServletResponse response = subscribe();
+
+        publish(snapshot, new ContainerDelta(7L, List.of(), List.of(), List.of()));
+
+        assertFalse(response.getContentAsString().contains("event:delta"));
+    }
+
+    @Test
+    @DisplayName("should serialize each event once for all subscribers")
+    void shouldSerializeEachEventOnceForAllSubscribers() throws Exception {
+        ContainerSnapshot snapshot = new ContainerSnapshot(7L, List.of(dto("web")));
+        when(containerIndex.snapshot()).thenReturn(Optional.of(snapshot));
+        MockHttpServletResponse first = subscribe();
+        MockHttpServletResponse second = subscribe();
+
+        ContainerDelta delta = new ContainerDelta(8L, List.of(), List.of(dto("web")), List.of());
+        publish(new ContainerSnapshot(8L, List.of(dto("web"))), delta);
+
+        verify(jsonMapper, times(1)).writeValueAsBytes(snapshot);
+        verify(jsonMapper, times(1)).writeValueAsBytes(delta);
+        assertTrue(first.getContentAsString().contains("event:delta"));
+        assertTrue(second.getContentAsString().contains("event:delta"));
+    }
+
+    @Test
+    @DisplayName("should disconnect a subscriber that falls behind without holding up the others")
+    void shouldDisconnectSubscriberThatFallsBehind() throws Exception {
+        // The first subscriber's sender never gets to run, as if its client stopped reading
+        List<Runnable> stalled = new ArrayList<>();
+        createBroadcaster(task -> {
+            if (stalled.isEmpty()) {
+                stalled.add(task);
+            } else {
+                task.run();
+            }
+        });
+        when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(dto("web")))));
+        MvcResult slow = mockMvc.perform(get("/api/containers/stream")).andReturn();
+        flush();
+        MockHttpServletResponse fast = subscribe();
+
+        for (long generation = 8; generation <= 11; generation++) {
+            publish(
+                    new ContainerSnapshot(generation, List.of(dto("web"))),
+                    new ContainerDelta(generation, List.of(), List.of(dto("web")), List.of()));
+        }
+
+        assertNotNull(((MockAsyncContext) slow.getRequest().getAsyncContext()).getDispatchedPath());
+        assertEquals("", slow.getResponse().getContentAsString());
+        assertTrue(fast.getContentAsString().contains("id:11\nevent:delta"));
+    }
+
+    @Test
+    @DisplayName("should send heartbeats to open streams")
+    void shouldSendHeartbeatsToOpenStreams() throws Exception {
+        when(containerIndex.snapshot()).thenReturn(Optional.empty());
+        MockHttpServletResponse response = subscribe();
+
+        broadcaster.heartbeat();
+        flush();
+
+        assertEquals(":heartbeat\n\n", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("should close open streams on shutdown")
+    void shouldCloseOpenStreamsOnShutdown() throws Exception {
+        when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(7L, Collections.emptyList())));
+        MockHttpServletRequest request =
+                mockMvc.perform(get("/api/containers/stream")).andReturn().getRequest();
+
+        broadcaster.onApplicationEvent(new ContextClosedEvent(new GenericApplicationContext()));
+
+        assertTrue(dispatcher.awaitTermination(1, TimeUnit.SECONDS));
+        assertNotNull(((MockAsyncContext) request.getAsyncContext()).getDispatchedPath());
+    }
+
+    @Test
+    @DisplayName("should close new streams after shutdown")
+    void shouldCloseNewStreamsAfterShutdown() {
+        broadcaster.onApplicationEvent(new ContextClosedEvent(new GenericApplicationContext()));
+
+        SseEmitter emitter = broadcaster.subscribe();
+
+        assertThrows(IllegalStateException.class, () -> emitter.send("late"));
+    }
+
+    private MockHttpServletResponse subscribe() throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get("/api/containers/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+        flush();
+        return response;
+    }
+
+    private void publish(ContainerSnapshot snapshot, ContainerDelta delta) throws Exception {
+        listener.onPublish(snapshot, delta);
+        flush();
+    }
+
+    private void flush() throws Exception {
+        dispatcher.submit(() -> {}).get();
+    }
+
+    private ContainerDTO dto(String id) {
+        return new ContainerDTO(id, id, id, "nginx:latest", Set.of(80), null, null, "running", "Up", "local", false);
+    }
+}
@@ -1,16 +1,23 @@
 package com.roomelephant.porthole.controller;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
 import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.NotFoundException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
 import java.net.URI;
+import java.time.Duration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @DisplayName("GlobalExceptionHandler")
 class GlobalExceptionHandlerTest {
@@ -41,6 +48,33 @@ class GlobalExceptionHandlerTest {
         }
     }
 
+    @Nested
+    @DisplayName("handleCircuitOpen")
+    class HandleCircuitOpen {
+
+        @Test
+        @DisplayName("should return BAD_GATEWAY with the time until the next trial call")
+        void shouldReturnBadGatewayWithTimeUntilNextTrialCall() {
+            CircuitOpenException exception = new CircuitOpenException("local", Duration.ofMillis(12_300));
+
+            ResponseEntity<ProblemDetail> result = exceptionHandler.handleCircuitOpen(exception);
+
+            assertEquals(502, result.getStatusCode().value());
+            assertEquals("13", result.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertEquals("Docker is not reachable", result.getBody().getDetail());
+        }
+
+        @Test
+        @DisplayName("should ask to retry after at least one second")
+        void shouldAskToRetryAfterAtLeastOneSecond() {
+            CircuitOpenException exception = new CircuitOpenException("local", Duration.ZERO);
+
+            ResponseEntity<ProblemDetail> result = exceptionHandler.handleCircuitOpen(exception);
+
+            assertEquals("1", result.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
     @Nested
     @DisplayName("handleNotFound")
     class HandleNotFound {
@@ -106,6 +140,25 @@ class GlobalExceptionHandlerTest {
         }
     }
 
+    @Nested
+    @DisplayName("handleTypeMismatch")
+    class HandleTypeMismatch {
+
+        @Test
+        @DisplayName("should return ProblemDetail with BAD_REQUEST status naming the parameter")
+        void shouldReturnProblemDetailWithBadRequestStatus() {
+            MethodArgumentTypeMismatchException exception = new MethodArgumentTypeMismatchException(
+                    "abc", Long.class, "since", mock(MethodParameter.class), new NumberFormatException());
+
+            ProblemDetail result = exceptionHandler.handleTypeMismatch(exception);
+
+            assertEquals(400, result.getStatus());
+            assertEquals("Invalid value for parameter 'since'", result.getDetail());
+            assertEquals("Bad Request", result.getTitle());
+            assertEquals(URI.create("about:blank"), result.getType());
+        }
+    }
+
     @Nested
     @DisplayName("handleGenericException")
     class HandleGenericException {
@@ -0,0 +1,98 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Bulkhead")
+class BulkheadTest {
+
+    private MeterRegistry meterRegistry;
+    private Bulkhead bulkhead;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkhead = new Bulkhead("registry", 1, Duration.ofMillis(50), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("should run calls while a slot is free")
+    void shouldRunCallsWhileSlotIsFree() {
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+        assertEquals("again", bulkhead.call(() -> "again"));
+        assertEquals(0.0, gauge("porthole.bulkhead.active"));
+    }
+
+    @Test
+    @DisplayName("should reject a call that waited the maximum time for a slot")
+    void shouldRejectCallThatWaitedMaximumTime() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual()
+                .start(() -> bulkhead.call(() -> {
+                    started.countDown();
+                    try {
+                        return release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        BulkheadFullException thrown = assertThrows(BulkheadFullException.class, () -> bulkhead.call(() -> "never"));
+
+        assertEquals("registry", thrown.getDependency());
+        assertEquals(1.0, gauge("porthole.bulkhead.saturation"));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("porthole.bulkhead.rejected")
+                        .tag("dependency", "registry")
+                        .counter()
+                        .count());
+        release.countDown();
+        holder.join(1000);
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+    }
+
+    @Test
+    @DisplayName("should free the slot when the call fails")
+    void shouldFreeSlotWhenCallFails() {
+        assertThrows(
+                IllegalStateException.class,
+                () -> bulkhead.call(() -> {
+                    throw new IllegalStateException("boom");
+                }));
+
+        assertEquals(0.0, gauge("porthole.bulkhead.active"));
+        assertEquals("ok", bulkhead.call(() -> "ok"));
+    }
+
+    @Test
+    @DisplayName("should record the time calls waited for a slot")
+    void shouldRecordTimeCallsWaited() {
+        bulkhead.call(() -> "ok");
+
+        assertEquals(
+                1,
+                meterRegistry
+                        .get("porthole.bulkhead.wait")
+                        .tag("dependency", "registry")
+                        .timer()
+                        .count());
+        assertEquals(0.0, gauge("porthole.bulkhead.waiting"));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("dependency", "registry").gauge().value();
+    }
+}
@@ -0,0 +1,128 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContainerChangeLog")
+class ContainerChangeLogTest {
+
+    @Mock
+    private ContainerIndex containerIndex;
+
+    private ContainerChangeLog changeLog;
+    private ContainerIndex.Listener listener;
+
+    @BeforeEach
+    void setUp() {
+        DockerProperties dockerProperties = DockerPropertiesFixture.builder()
+                .events(new DockerProperties.Events(Duration.ofSeconds(5), 3))
+                .build();
+        changeLog = new ContainerChangeLog(containerIndex, dockerProperties);
+
+        ArgumentCaptor<ContainerIndex.Listener> captor = ArgumentCaptor.forClass(ContainerIndex.Listener.class);
+        verify(containerIndex).addListener(captor.capture());
+        listener = captor.getValue();
+    }
+
+    @Test
+    @DisplayName("should not serve anything before the first publish")
+    void shouldNotServeAnythingBeforeFirstPublish() {
+        assertTrue(changeLog.since(1L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("should return an empty delta when nothing changed")
+    void shouldReturnEmptyDeltaWhenNothingChanged() {
+        record(10L, List.of(dto("a", "running")), List.of(), List.of());
+
+        ContainerDelta delta = changeLog.since(10L).orElseThrow();
+
+        assertEquals(10L, delta.generation());
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    @DisplayName("should merge every change after the generation")
+    void shouldMergeEveryChangeAfterGeneration() {
+        record(10L, List.of(dto("a", "running"), dto("b", "running")), List.of(), List.of());
+        record(11L, List.of(dto("c", "running")), List.of(dto("a", "exited")), List.of());
+        record(12L, List.of(), List.of(dto("a", "running")), List.of("b"));
+
+        ContainerDelta delta = changeLog.since(10L).orElseThrow();
+
+        assertEquals(12L, delta.generation());
+        assertEquals(List.of(dto("c", "running")), delta.added());
+        assertEquals(List.of(dto("a", "running")), delta.updated());
+        assertEquals(List.of("b"), delta.removed());
+    }
+
+    @Test
+    @DisplayName("should drop containers created and removed within the range")
+    void shouldDropContainersCreatedAndRemovedWithinRange() {
+        record(10L, List.of(dto("a", "running")), List.of(), List.of());
+        record(11L, List.of(dto("b", "running")), List.of(), List.of());
+        record(12L, List.of(), List.of(), List.of("b"));
+
+        assertTrue(changeLog.since(10L).orElseThrow().isEmpty());
+    }
+
+    @Test
+    @DisplayName("should report a container removed and created again as updated")
+    void shouldReportContainerRemovedAndCreatedAgainAsUpdated() {
+        record(10L, List.of(dto("a", "running")), List.of(), List.of());
+        record(11L, List.of(), List.of(), List.of("a"));
+        record(12L, List.of(dto("a", "created")), List.of(), List.of());
+
+        ContainerDelta delta = changeLog.since(10L).orElseThrow();
+
+        assertEquals(List.of(dto("a", "created")), delta.updated());
+        assertTrue(delta.added().isEmpty());
+        assertTrue(delta.removed().isEmpty());
+    }
+
+    @Test
+    @DisplayName("should not serve generations older than the retained changes")
+    void shouldNotServeGenerationsOlderThanRetainedChanges() {
+        record(10L, List.of(dto("a", "running")), List.of(), List.of());
+        record(11L, List.of(), List.of(dto("a", "exited")), List.of());
+        record(12L, List.of(), List.of(dto("a", "running")), List.of());
+        record(13L, List.of(), List.of(dto("a", "exited")), List.of());
+
+        assertTrue(changeLog.since(9L).isEmpty());
+        assertTrue(changeLog.since(10L).isPresent());
+    }
+
+    @Test
+    @DisplayName("should not serve generations from the future")
+    void shouldNotServeGenerationsFromFuture() {
+        record(10L, List.of(dto("a", "running")), List.of(), List.of());
+
+        assertTrue(changeLog.since(11L).isEmpty());
+    }
+
+    private void record(long generation, List<ContainerDTO> added, List<ContainerDTO> updated, List<String> removed) {
+        listener.onPublish(
+                new ContainerSnapshot(generation, List.of()), new ContainerDelta(generation, added, updated, removed));
+    }
+
+    private ContainerDTO dto(String id, String state) {
+        return new ContainerDTO(id, id, id, "nginx:latest", Set.of(80), null, null, state, state, "local", false);
+    }
+}
@@ -0,0 +1,596 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
+import com.github.dockerjava.api.command.EventsCmd;
+import com.github.dockerjava.api.command.ListContainersCmd;
+import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventActor;
+import com.github.dockerjava.api.model.EventType;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.domain.mapper.ContainerMapper;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ImageEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContainerIndex")
+class ContainerIndexTest {
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private ContainerMapper containerMapper;
+
+    @Mock
+    private EventsCmd eventsCmd;
+
+    @Mock
+    private ListContainersCmd listContainersCmd;
+
+    private ContainerIndex containerIndex;
+
+    @BeforeEach
+    void setUp() {
+        containerIndex = createContainerIndex(new DockerHosts.Host("local", dockerClient));
+    }
+
+    @Test
+    @DisplayName("should be out of sync before the first resync")
+    void shouldBeOutOfSyncBeforeFirstResync() {
+        assertTrue(containerIndex.snapshot().isEmpty());
+    }
+
+    @Nested
+    @DisplayName("ensureSynced")
+    class EnsureSynced {
+
+        @Test
+        @DisplayName("should load every container newest first")
+        void shouldLoadEveryContainerNewestFirst() {
+            Container older = mockContainer("old", 100L);
+            Container newer = mockContainer("new", 200L);
+            setupEvents();
+            setupList(List.of(older, newer));
+
+            containerIndex.ensureSynced();
+
+            assertEquals(
+                    List.of("new", "old"),
+                    containerIndex.snapshot().orElseThrow().containers().stream()
+                            .map(ContainerDTO::id)
+                            .toList());
+            verify(listContainersCmd).withShowAll(true);
+            verify(eventsCmd).withEventTypeFilter(EventType.CONTAINER, EventType.IMAGE);
+        }
+
+        @Test
+        @DisplayName("should not resync when already in sync")
+        void shouldNotResyncWhenAlreadyInSync() {
+            setupEvents();
+            setupList(Collections.emptyList());
+
+            containerIndex.ensureSynced();
+            containerIndex.ensureSynced();
+
+            verify(dockerClient, times(1)).listContainersCmd();
+        }
+
+        @Test
+        @DisplayName("should stay out of sync when Docker is not reachable")
+        void shouldStayOutOfSyncWhenDockerIsNotReachable() {
+            setupEvents();
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenThrow(new RuntimeException("Connection refused"));
+
+            containerIndex.ensureSynced();
+
+            assertTrue(containerIndex.snapshot().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should apply events that arrive while the containers are listed")
+        void shouldApplyEventsThatArriveWhileListing() {
+            Container listed = mockContainer("c1", 100L);
+            setupEvents();
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenAnswer(_ -> {
+                // Destroyed after Docker built the list, before the list is applied
+                captureCallback().onNext(event("c1", "destroy"));
+                return List.of(listed);
+            });
+
+            containerIndex.ensureSynced();
+
+            assertEquals(List.of(), containerIndex.snapshot().orElseThrow().containers());
+        }
+
+        @Test
+        @DisplayName("should resync when the event stream closes while the containers are listed")
+        void shouldResyncWhenEventStreamClosesWhileListing() {
+            Container listed = mockContainer("c1", 100L);
+            setupEvents();
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec())
+                    .thenAnswer(_ -> {
+                        captureCallback().onError(new RuntimeException("Connection reset"));
+                        return List.of(listed);
+                    })
+                    .thenReturn(List.of(listed));
+
+            containerIndex.ensureSynced();
+
+            assertTrue(containerIndex.snapshot().isEmpty());
+
+            containerIndex.ensureSynced();
+
+            assertEquals(1, containerIndex.snapshot().orElseThrow().containers().size());
+            verify(eventsCmd, times(2)).exec(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("events")
+    class Events {
+
+        private ResultCallback<Event> callback;
+
+        @BeforeEach
+        void sync() {
+            setupEvents();
+            setupList(List.of(mockContainer("c1", 100L)));
+            containerIndex.ensureSynced();
+            callback = captureCallback();
+        }
+
+        @Test
+        @DisplayName("should refresh a container when it changes")
+        void shouldRefreshContainerWhenItChanges() {
+            when(listContainersCmd.withIdFilter(List.of("c2"))).thenReturn(listContainersCmd);
+            Container started = mockContainer("c2", 200L);
+            when(listContainersCmd.exec()).thenReturn(List.of(started));
+
+            callback.onNext(event("c2", "start"));
+
+            assertEquals(
+                    List.of("c2", "c1"),
+                    containerIndex.snapshot().orElseThrow().containers().stream()
+                            .map(ContainerDTO::id)
+                            .toList());
+        }
+
+        @Test
+        @DisplayName("should advance the generation only when containers change")
+        void shouldAdvanceGenerationOnlyWhenContainersChange() {
+            long initial = containerIndex.snapshot().orElseThrow().generation();
+            when(listContainersCmd.withIdFilter(List.of("c1"))).thenReturn(listContainersCmd);
+
+            callback.onNext(event("c1", "health_status: healthy"));
+
+            assertEquals(initial, containerIndex.snapshot().orElseThrow().generation());
+
+            callback.onNext(event("c1", "destroy"));
+
+            assertTrue(containerIndex.snapshot().orElseThrow().generation() > initial);
+        }
+
+        @Test
+        @DisplayName("should pass image events to image listeners without touching containers")
+        void shouldPassImageEventsToImageListeners() {
+            List<ImageEvent> imageEvents = new ArrayList<>();
+            containerIndex.addImageListener(imageEvents::add);
+            long generation = containerIndex.snapshot().orElseThrow().generation();
+
+            callback.onNext(imageEvent("pull", "nginx:latest", Map.of("name", "nginx")));
+            callback.onNext(imageEvent("untag", "sha256:abc", Map.of("name", "sha256:abc")));
+            callback.onNext(imageEvent("tag", "sha256:def", Map.of("name", "nginx:1.25")));
+
+            assertEquals(
+                    List.of(
+                            new ImageEvent("local", "pull", null, "nginx:latest"),
+                            new ImageEvent("local", "untag", "sha256:abc", null),
+                            new ImageEvent("local", "tag", "sha256:def", "nginx:1.25")),
+                    imageEvents);
+            assertEquals(generation, containerIndex.snapshot().orElseThrow().generation());
+            verify(listContainersCmd, never()).withIdFilter(any());
+        }
+
+        @Test
+        @DisplayName("should not lock the index while a container refresh waits on Docker")
+        void shouldNotLockIndexWhileRefreshWaitsOnDocker() throws InterruptedException {
+            CountDownLatch refreshing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            when(listContainersCmd.withIdFilter(List.of("c2"))).thenReturn(listContainersCmd);
+            Container started = mockContainer("c2", 200L);
+            when(listContainersCmd.exec()).thenAnswer(_ -> {
+                refreshing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return List.of(started);
+            });
+            List<Long> published = new ArrayList<>();
+            containerIndex.addListener((snapshot, delta) -> published.add(snapshot.generation()));
+            Thread events = Thread.ofVirtual().start(() -> callback.onNext(event("c2", "start")));
+            assertTrue(refreshing.await(5, TimeUnit.SECONDS));
+
+            assertEquals(
+                    List.of("c1"),
+                    containerIndex.lastKnown("local").stream()
+                            .map(ContainerDTO::id)
+                            .toList());
+            containerIndex.ensureSynced();
+
+            release.countDown();
+            events.join(5000);
+            assertEquals(1, published.size());
+            assertEquals(
+                    List.of("c2", "c1"),
+                    containerIndex.snapshot().orElseThrow().containers().stream()
+                            .map(ContainerDTO::id)
+                            .toList());
+        }
+
+        @Test
+        @DisplayName("should remove a container when it is destroyed")
+        void shouldRemoveContainerWhenItIsDestroyed() {
+            callback.onNext(event("c1", "destroy"));
+
+            assertTrue(containerIndex.snapshot().orElseThrow().containers().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should remove a container that is no longer listed")
+        void shouldRemoveContainerThatIsNoLongerListed() {
+            when(listContainersCmd.withIdFilter(List.of("c1"))).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenReturn(Collections.emptyList());
+
+            callback.onNext(event("c1", "die"));
+
+            assertTrue(containerIndex.snapshot().orElseThrow().containers().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should go out of sync when a refresh fails")
+        void shouldGoOutOfSyncWhenRefreshFails() {
+            when(listContainersCmd.withIdFilter(List.of("c1"))).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenThrow(new RuntimeException("Read timed out"));
+
+            callback.onNext(event("c1", "health_status: healthy"));
+
+            assertTrue(containerIndex.snapshot().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should go out of sync and resync when the event stream drops")
+        void shouldResyncWhenEventStreamDrops() {
+            long generation = containerIndex.snapshot().orElseThrow().generation();
+
+            callback.onError(new RuntimeException("Connection reset"));
+
+            assertTrue(containerIndex.snapshot().isEmpty());
+
+            containerIndex.ensureSynced();
+
+            assertEquals(1, containerIndex.snapshot().orElseThrow().containers().size());
+            assertEquals(generation, containerIndex.snapshot().orElseThrow().generation());
+            verify(eventsCmd, times(2)).exec(any());
+        }
+
+        @Test
+        @DisplayName("should go out of sync when the event stream completes")
+        void shouldGoOutOfSyncWhenEventStreamCompletes() {
+            callback.onComplete();
+
+            assertTrue(containerIndex.snapshot().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should ignore events from a closed subscription")
+        void shouldIgnoreEventsFromClosedSubscription() {
+            containerIndex.close();
+            setupList(List.of(mockContainer("c1", 100L)));
+            containerIndex.ensureSynced();
+
+            callback.onNext(event("c1", "destroy"));
+            callback.onComplete();
+
+            assertEquals(1, containerIndex.snapshot().orElseThrow().containers().size());
+        }
+
+        @Test
+        @DisplayName("should ignore events without a container id")
+        void shouldIgnoreEventsWithoutContainerId() {
+            callback.onNext(new Event().withAction("start"));
+
+            assertEquals(1, containerIndex.snapshot().orElseThrow().containers().size());
+        }
+    }
+
+    @Nested
+    @DisplayName("listeners")
+    class Listeners {
+
+        private final List<ContainerDelta> deltas = new ArrayList<>();
+        private ResultCallback<Event> callback;
+
+        @BeforeEach
+        void sync() {
+            containerIndex.addListener((_, delta) -> deltas.add(delta));
+            setupEvents();
+            setupList(List.of(mockContainer("c1", 100L)));
+            containerIndex.ensureSynced();
+            callback = captureCallback();
+        }
+
+        @Test
+        @DisplayName("should report every container as added on the first sync")
+        void shouldReportEveryContainerAsAddedOnFirstSync() {
+            ContainerDelta delta = deltas.getFirst();
+
+            assertEquals(
+                    List.of("c1"), delta.added().stream().map(ContainerDTO::id).toList());
+            assertEquals(containerIndex.snapshot().orElseThrow().generation(), delta.generation());
+        }
+
+        @Test
+        @DisplayName("should report added and removed containers")
+        void shouldReportAddedAndRemovedContainers() {
+            when(listContainersCmd.withIdFilter(List.of("c2"))).thenReturn(listContainersCmd);
+            Container created = mockContainer("c2", 200L);
+            when(listContainersCmd.exec()).thenReturn(List.of(created));
+
+            callback.onNext(event("c2", "create"));
+            callback.onNext(event("c1", "destroy"));
+
+            assertEquals(
+                    List.of("c2"),
+                    deltas.get(1).added().stream().map(ContainerDTO::id).toList());
+            assertEquals(List.of("c1"), deltas.get(2).removed());
+            assertTrue(deltas.get(2).added().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should report a changed container as updated")
+        void shouldReportChangedContainerAsUpdated() {
+            Container stopped = mock(Container.class);
+            when(stopped.getId()).thenReturn("c1");
+            when(stopped.getCreated()).thenReturn(100L);
+            when(containerMapper.toDTO("local", stopped))
+                    .thenReturn(new ContainerDTO(
+                            "c1",
+                            "c1",
+                            "c1",
+                            "nginx:latest",
+                            Set.of(80),
+                            null,
+                            null,
+                            "exited",
+                            "Exited",
+                            "local",
+                            false));
+            when(listContainersCmd.withIdFilter(List.of("c1"))).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenReturn(List.of(stopped));
+
+            callback.onNext(event("c1", "stop"));
+
+            ContainerDelta delta = deltas.getLast();
+            assertEquals("exited", delta.updated().getFirst().state());
+            assertTrue(delta.added().isEmpty());
+            assertTrue(delta.removed().isEmpty());
+        }
+
+        @Test
+        @DisplayName("should report an empty delta when nothing changed")
+        void shouldReportEmptyDeltaWhenNothingChanged() {
+            when(listContainersCmd.withIdFilter(List.of("c1"))).thenReturn(listContainersCmd);
+
+            callback.onNext(event("c1", "health_status: healthy"));
+
+            assertEquals(2, deltas.size());
+            assertTrue(deltas.getLast().isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("several hosts")
+    class SeveralHosts {
+
+        @Mock
+        private DockerClient remoteClient;
+
+        @Mock
+        private EventsCmd remoteEventsCmd;
+
+        @Mock
+        private ListContainersCmd remoteListCmd;
+
+        @BeforeEach
+        void setUp() {
+            containerIndex = createContainerIndex(
+                    new DockerHosts.Host("local", dockerClient), new DockerHosts.Host("nas", remoteClient));
+            setupEvents();
+            setupList(List.of(mockContainer("c1", 100L)));
+            lenient().when(remoteClient.eventsCmd()).thenReturn(remoteEventsCmd);
+            lenient()
+                    .when(remoteEventsCmd.withEventTypeFilter(EventType.CONTAINER, EventType.IMAGE))
+                    .thenReturn(remoteEventsCmd);
+            lenient().when(remoteEventsCmd.withEventFilter(any(String[].class))).thenReturn(remoteEventsCmd);
+            lenient().when(remoteEventsCmd.exec(any())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(remoteClient.listContainersCmd()).thenReturn(remoteListCmd);
+            when(remoteListCmd.withShowAll(true)).thenReturn(remoteListCmd);
+        }
+
+        @Test
+        @DisplayName("should merge the containers of every host")
+        void shouldMergeContainersOfEveryHost() {
+            Container remote = mockRemoteContainer("r1", 200L);
+            when(remoteListCmd.exec()).thenReturn(List.of(remote));
+
+            containerIndex.ensureSynced();
+
+            List<ContainerDTO> containers =
+                    containerIndex.snapshot().orElseThrow().containers();
+            assertEquals(
+                    List.of("r1", "c1"),
+                    containers.stream().map(ContainerDTO::id).toList());
+            assertEquals("nas", containers.getFirst().host());
+        }
+
+        @Test
+        @DisplayName("should serve the other hosts when one cannot be reached")
+        void shouldServeOtherHostsWhenOneCannotBeReached() {
+            when(remoteListCmd.exec()).thenThrow(new RuntimeException("Connection refused"));
+
+            containerIndex.ensureSynced();
+
+            assertEquals(
+                    List.of("c1"),
+                    containerIndex.snapshot().orElseThrow().containers().stream()
+                            .map(ContainerDTO::id)
+                            .toList());
+        }
+
+        @Test
+        @DisplayName("should mark the containers of a host stale when its event stream drops")
+        void shouldMarkContainersOfHostStaleWhenItsEventStreamDrops() {
+            Container remote = mockRemoteContainer("r1", 200L);
+            when(remoteListCmd.exec()).thenReturn(List.of(remote));
+            containerIndex.ensureSynced();
+            ArgumentCaptor<ResultCallback<Event>> captor = captor();
+            verify(remoteEventsCmd).exec(captor.capture());
+
+            captor.getValue().onError(new RuntimeException("Connection reset"));
+
+            List<ContainerDTO> containers =
+                    containerIndex.snapshot().orElseThrow().containers();
+            assertTrue(containers.getFirst().stale());
+            assertFalse(containers.getLast().stale());
+            assertEquals(
+                    List.of(containers.getFirst()),
+                    containerIndex.lastKnown("nas").stream()
+                            .map(dto -> dto.withStale(true))
+                            .toList());
+        }
+
+        @Test
+        @DisplayName("should add a slow host once it answers")
+        void shouldAddSlowHostOnceItAnswers() throws Exception {
+            CountDownLatch release = new CountDownLatch(1);
+            Container remote = mockRemoteContainer("r1", 200L);
+            when(remoteListCmd.exec()).thenAnswer(_ -> {
+                release.await(5, TimeUnit.SECONDS);
+                return List.of(remote);
+            });
+
+            containerIndex.ensureSynced();
+
+            assertEquals(1, containerIndex.snapshot().orElseThrow().containers().size());
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (containerIndex.snapshot().orElseThrow().containers().size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, containerIndex.snapshot().orElseThrow().containers().size());
+            verify(remoteListCmd, times(1)).exec();
+        }
+
+        private Container mockRemoteContainer(String id, Long created) {
+            Container container = mock(Container.class);
+            when(container.getId()).thenReturn(id);
+            when(container.getCreated()).thenReturn(created);
+            when(containerMapper.toDTO("nas", container))
+                    .thenReturn(new ContainerDTO(
+                            id, id, id, "nginx:latest", Set.of(80), null, null, "running", "Up", "nas", false));
+            return container;
+        }
+
+        @SuppressWarnings("unchecked")
+        private ArgumentCaptor<ResultCallback<Event>> captor() {
+            return ArgumentCaptor.forClass(ResultCallback.class);
+        }
+    }
+
+    private ContainerIndex createContainerIndex(DockerHosts.Host... hosts) {
+        DockerProperties dockerProperties = DockerPropertiesFixture.builder()
+                .hostDeadline(Duration.ofMillis(200))
+                .build();
+        DockerHosts dockerHosts = new DockerHosts(List.of(hosts));
+        return new ContainerIndex(
+                dockerHosts,
+                containerMapper,
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry()),
+                dockerProperties);
+    }
+
+    private void setupEvents() {
+        lenient().when(dockerClient.eventsCmd()).thenReturn(eventsCmd);
+        lenient()
+                .when(eventsCmd.withEventTypeFilter(EventType.CONTAINER, EventType.IMAGE))
+                .thenReturn(eventsCmd);
+        lenient().when(eventsCmd.withEventFilter(any(String[].class))).thenReturn(eventsCmd);
+        lenient().when(eventsCmd.exec(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private void setupList(List<Container> containers) {
+        when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+        when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+        when(listContainersCmd.exec()).thenReturn(containers);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultCallback<Event> captureCallback() {
+        ArgumentCaptor<ResultCallback<Event>> captor = ArgumentCaptor.forClass(ResultCallback.class);
+        verify(eventsCmd, atLeastOnce()).exec(captor.capture());
+        return captor.getValue();
+    }
+
+    private Container mockContainer(String id, Long created) {
+        Container container = mock(Container.class);
+        when(container.getId()).thenReturn(id);
+        when(container.getCreated()).thenReturn(created);
+        lenient()
+                .when(containerMapper.toDTO("local", container))
+                .thenReturn(new ContainerDTO(
+                        id, id, id, "nginx:latest", Set.of(80), null, null, "running", "Up", "local", false));
+        return container;
+    }
+
+    private Event imageEvent(String action, String actorId, Map<String, String> attributes) {
+        return new Event()
+                .withType(EventType.IMAGE)
+                .withAction(action)
+                .withEventActor(new EventActor().withId(actorId).withAttributes(attributes));
+    }
+
+    private Event event(String containerId, String action) {
+        return new Event().withAction(action).withEventActor(new EventActor().withId(containerId));
+    }
+}
@@ -0,0 +1,421 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.exception.NotFoundException;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker.Operation;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker.State;
+import com.roomelephant.porthole.domain.model.exception.BulkheadFullException;
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DockerCircuitBreaker")
+class DockerCircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    @Mock
+    private DockerClient localClient;
+
+    @Mock
+    private DockerClient remoteClient;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DockerCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreaker = createCircuitBreaker(
+                new DockerProperties.Bulkhead(2, Duration.ofMillis(100)), new DockerProperties.CallExecutor(4, 1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        circuitBreaker.close();
+    }
+
+    @Test
+    @DisplayName("should return the result of the call")
+    void shouldReturnResultOfCall() {
+        assertEquals("pong", circuitBreaker.call("local", Operation.PING, () -> "pong"));
+        assertEquals(Map.of("local", State.CLOSED, "nas", State.CLOSED), circuitBreaker.states());
+    }
+
+    @Test
+    @DisplayName("should open after consecutive failures and fail fast")
+    void shouldOpenAfterConsecutiveFailuresAndFailFast() {
+        fail("local");
+        fail("local");
+
+        CircuitOpenException thrown = assertThrows(CircuitOpenException.class, () -> succeed("local"));
+
+        assertEquals(OPEN_DURATION, thrown.getRetryAfter());
+        assertEquals(2, calls.get());
+        assertEquals(State.OPEN, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should keep a breaker per host")
+    void shouldKeepBreakerPerHost() {
+        fail("local");
+        fail("local");
+
+        assertEquals("ok", succeed("nas"));
+        assertEquals(State.CLOSED, circuitBreaker.states().get("nas"));
+    }
+
+    @Test
+    @DisplayName("should reset the failure count after a success")
+    void shouldResetFailureCountAfterSuccess() {
+        fail("local");
+        succeed("local");
+        fail("local");
+
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should close again when the trial call succeeds")
+    void shouldCloseAgainWhenTrialCallSucceeds() {
+        fail("local");
+        fail("local");
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        assertEquals("ok", succeed("local"));
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should open again when the trial call fails")
+    void shouldOpenAgainWhenTrialCallFails() {
+        fail("local");
+        fail("local");
+        clock.addAndGet(OPEN_DURATION.toNanos());
+
+        fail("local");
+
+        assertEquals(State.OPEN, circuitBreaker.states().get("local"));
+        assertThrows(CircuitOpenException.class, () -> succeed("local"));
+    }
+
+    @Test
+    @DisplayName("should let only one trial call through while half-open")
+    void shouldLetOnlyOneTrialCallThroughWhileHalfOpen() throws Exception {
+        fail("local");
+        fail("local");
+        clock.addAndGet(OPEN_DURATION.toNanos());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread trial = Thread.ofVirtual()
+                .start(() -> circuitBreaker.call("local", Operation.LIST, () -> {
+                    started.countDown();
+                    await(release);
+                    return "ok";
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(State.HALF_OPEN, circuitBreaker.states().get("local"));
+        assertThrows(CircuitOpenException.class, () -> succeed("local"));
+
+        release.countDown();
+        trial.join();
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should count calls that exceed the operation timeout as failures")
+    void shouldCountCallsThatExceedOperationTimeoutAsFailures() {
+        CountDownLatch never = new CountDownLatch(1);
+
+        for (int i = 0; i < 2; i++) {
+            DockerUnavailableException thrown = assertThrows(
+                    DockerUnavailableException.class,
+                    () -> circuitBreaker.call("local", Operation.PING, () -> await(never)));
+            assertFalse(thrown instanceof CircuitOpenException);
+        }
+
+        assertEquals(State.OPEN, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should not count errors reported by Docker as failures")
+    void shouldNotCountErrorsReportedByDockerAsFailures() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(
+                    NotFoundException.class,
+                    () -> circuitBreaker.call("local", Operation.INSPECT, () -> {
+                        throw new NotFoundException("No such container");
+                    }));
+        }
+
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+    }
+
+    @Test
+    @DisplayName("should reject calls beyond the host's bulkhead without opening the breaker")
+    void shouldRejectCallsBeyondBulkheadWithoutOpeningBreaker() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> holders = List.of(hold("local", started, release), hold("local", started, release));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        DockerUnavailableException thrown = assertThrows(DockerUnavailableException.class, () -> succeed("local"));
+
+        assertInstanceOf(BulkheadFullException.class, thrown.getCause());
+        assertEquals("ok", succeed("nas"));
+        assertEquals(1, calls.get());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get("porthole.bulkhead.rejected")
+                        .tag("dependency", "docker/local")
+                        .counter()
+                        .count());
+        release.countDown();
+        for (Thread holder : holders) {
+            holder.join();
+        }
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+        assertEquals("ok", succeed("local"));
+    }
+
+    @Test
+    @DisplayName("should fail fast while the breaker is open even when hung calls hold every slot")
+    void shouldFailFastWhileOpenEvenWhenHungCallsHoldEverySlot() {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(
+                    DockerUnavailableException.class,
+                    () -> circuitBreaker.call("local", Operation.PING, () -> {
+                        awaitUninterruptibly(release);
+                        return "late";
+                    }));
+        }
+        assertEquals(2.0, activeCalls("local"));
+
+        assertThrows(CircuitOpenException.class, () -> succeed("local"));
+
+        assertEquals(
+                0,
+                meterRegistry
+                        .get("porthole.bulkhead.rejected")
+                        .tag("dependency", "docker/local")
+                        .counter()
+                        .count());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("should keep the slot of a timed out call until the call ends")
+    void shouldKeepSlotOfTimedOutCallUntilCallEnds() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ended = new CountDownLatch(1);
+
+        assertThrows(
+                DockerUnavailableException.class,
+                () -> circuitBreaker.call("local", Operation.PING, () -> {
+                    awaitUninterruptibly(release);
+                    ended.countDown();
+                    return "late";
+                }));
+
+        assertEquals(1.0, activeCalls("local"));
+        release.countDown();
+        assertTrue(ended.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (activeCalls("local") > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0.0, activeCalls("local"));
+    }
+
+    @Test
+    @DisplayName("should run calls on platform threads of the host")
+    void shouldRunCallsOnPlatformThreadsOfHost() {
+        Thread caller = circuitBreaker.call("local", Operation.PING, Thread::currentThread);
+
+        assertFalse(caller.isVirtual());
+        assertTrue(caller.getName().startsWith("docker-call-local-"));
+    }
+
+    @Test
+    @DisplayName("should keep calls to other hosts running while one host holds all of its threads")
+    void shouldKeepOtherHostsRunningWhileOneHostHoldsAllItsThreads() throws Exception {
+        recreate(new DockerProperties.Bulkhead(2, Duration.ofMillis(100)), new DockerProperties.CallExecutor(1, 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread running = hold("local", started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals("ok", succeed("nas"));
+
+        release.countDown();
+        running.join();
+    }
+
+    @Test
+    @DisplayName("should not count time spent waiting for a thread as a failure")
+    void shouldNotCountTimeWaitingForThreadAsFailure() throws Exception {
+        recreate(new DockerProperties.Bulkhead(3, Duration.ofMillis(100)), new DockerProperties.CallExecutor(1, 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread running = hold("local", started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 2; i++) {
+            DockerUnavailableException thrown = assertThrows(
+                    DockerUnavailableException.class,
+                    () -> circuitBreaker.call("local", Operation.PING, () -> {
+                        calls.incrementAndGet();
+                        return "never";
+                    }));
+            assertInstanceOf(TimeoutException.class, thrown.getCause());
+        }
+
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+        release.countDown();
+        running.join();
+        assertEquals("ok", succeed("local"));
+        assertEquals(1, calls.get());
+        assertEquals(0.0, activeCalls("local"));
+    }
+
+    @Test
+    @DisplayName("should reject calls when the host's call queue is full")
+    void shouldRejectCallsWhenCallQueueIsFull() throws Exception {
+        recreate(new DockerProperties.Bulkhead(3, Duration.ofMillis(100)), new DockerProperties.CallExecutor(1, 1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread running = hold("local", started, release);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread queued = hold("local", new CountDownLatch(1), release);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queuedCalls("local") < 1 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+
+        DockerUnavailableException thrown = assertThrows(DockerUnavailableException.class, () -> succeed("local"));
+
+        assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+        assertEquals(0, calls.get());
+        release.countDown();
+        running.join();
+        queued.join();
+        assertEquals(State.CLOSED, circuitBreaker.states().get("local"));
+        assertEquals("ok", succeed("local"));
+    }
+
+    @Test
+    @DisplayName("should reject unknown hosts")
+    void shouldRejectUnknownHosts() {
+        assertThrows(IllegalArgumentException.class, () -> succeed("unknown"));
+    }
+
+    private String succeed(String host) {
+        return circuitBreaker.call(host, Operation.LIST, () -> {
+            calls.incrementAndGet();
+            return "ok";
+        });
+    }
+
+    private void fail(String host) {
+        assertThrows(
+                RuntimeException.class,
+                () -> circuitBreaker.call(host, Operation.LIST, () -> {
+                    calls.incrementAndGet();
+                    throw new RuntimeException(new SocketException("Connection refused"));
+                }));
+    }
+
+    private void recreate(DockerProperties.Bulkhead bulkhead, DockerProperties.CallExecutor callExecutor) {
+        circuitBreaker.close();
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreaker = createCircuitBreaker(bulkhead, callExecutor);
+    }
+
+    private DockerCircuitBreaker createCircuitBreaker(
+            DockerProperties.Bulkhead bulkhead, DockerProperties.CallExecutor callExecutor) {
+        DockerProperties dockerProperties = DockerPropertiesFixture.builder()
+                .circuitBreaker(new DockerProperties.CircuitBreaker(
+                        2, OPEN_DURATION, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(100)))
+                .bulkhead(bulkhead)
+                .callExecutor(callExecutor)
+                .build();
+        DockerHosts dockerHosts = new DockerHosts(
+                List.of(new DockerHosts.Host("local", localClient), new DockerHosts.Host("nas", remoteClient)));
+        return new DockerCircuitBreaker(dockerHosts, dockerProperties, meterRegistry, clock::get);
+    }
+
+    private Thread hold(String host, CountDownLatch started, CountDownLatch release) {
+        return Thread.ofVirtual()
+                .start(() -> circuitBreaker.call(host, Operation.LIST, () -> {
+                    started.countDown();
+                    return await(release);
+                }));
+    }
+
+    private double queuedCalls(String host) {
+        return meterRegistry
+                .get("porthole.executor.queued")
+                .tag("name", "docker/" + host)
+                .gauge()
+                .value();
+    }
+
+    private double activeCalls(String host) {
+        return meterRegistry
+                .get("porthole.bulkhead.active")
+                .tag("dependency", "docker/" + host)
+                .gauge()
+                .value();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException _) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "ok";
+    }
+}
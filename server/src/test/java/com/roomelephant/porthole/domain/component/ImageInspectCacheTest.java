@@ -0,0 +1,163 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.command.InspectImageCmd;
+import com.github.dockerjava.api.command.InspectImageResponse;
+import com.github.dockerjava.api.command.ListImagesCmd;
+import com.github.dockerjava.api.model.Image;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageInspectCache")
+class ImageInspectCacheTest {
+
+    @Mock
+    private DockerClient dockerClient;
+
+    @Mock
+    private InspectImageCmd inspectImageCmd;
+
+    @Mock
+    private InspectImageResponse inspectImageResponse;
+
+    @Mock
+    private ListImagesCmd listImagesCmd;
+
+    private DockerHosts.Host host;
+    private ImageInspectCache imageInspectCache;
+
+    @BeforeEach
+    void setUp() {
+        DockerProperties dockerProperties = DockerPropertiesFixture.defaults();
+        host = new DockerHosts.Host("local", dockerClient);
+        DockerHosts dockerHosts = new DockerHosts(List.of(host));
+        imageInspectCache = new ImageInspectCache(
+                dockerHosts,
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry()),
+                dockerProperties);
+    }
+
+    @Test
+    @DisplayName("should inspect an image only once")
+    void shouldInspectImageOnlyOnce() {
+        mockInspect("sha256:abc", List.of("nginx@sha256:local"));
+
+        assertEquals(List.of("nginx@sha256:local"), imageInspectCache.repoDigests(host, "sha256:abc"));
+        assertEquals(List.of("nginx@sha256:local"), imageInspectCache.repoDigests(host, "sha256:abc"));
+        verify(dockerClient, times(1)).inspectImageCmd("sha256:abc");
+    }
+
+    @Test
+    @DisplayName("should inspect an image again once it was invalidated")
+    void shouldInspectImageAgainOnceInvalidated() {
+        mockInspect("sha256:abc", List.of("nginx@sha256:local"));
+        imageInspectCache.repoDigests(host, "sha256:abc");
+
+        imageInspectCache.invalidate("other", "sha256:abc");
+        imageInspectCache.repoDigests(host, "sha256:abc");
+        imageInspectCache.invalidate(host.name(), "sha256:abc");
+        imageInspectCache.repoDigests(host, "sha256:abc");
+
+        verify(dockerClient, times(2)).inspectImageCmd("sha256:abc");
+    }
+
+    @Test
+    @DisplayName("should return no repo digests for a local image")
+    void shouldReturnNoRepoDigestsForLocalImage() {
+        mockInspect("sha256:abc", null);
+
+        assertEquals(List.of(), imageInspectCache.repoDigests(host, "sha256:abc"));
+    }
+
+    @Test
+    @DisplayName("should not keep a failed inspect")
+    void shouldNotKeepFailedInspect() {
+        when(dockerClient.inspectImageCmd("sha256:abc")).thenReturn(inspectImageCmd);
+        when(inspectImageCmd.exec()).thenThrow(new RuntimeException("boom")).thenReturn(inspectImageResponse);
+        when(inspectImageResponse.getRepoDigests()).thenReturn(List.of("nginx@sha256:local"));
+
+        assertThrows(RuntimeException.class, () -> imageInspectCache.repoDigests(host, "sha256:abc"));
+        assertEquals(List.of("nginx@sha256:local"), imageInspectCache.repoDigests(host, "sha256:abc"));
+    }
+
+    @Test
+    @DisplayName("should drop images no longer listed on reconcile")
+    void shouldDropImagesNoLongerListedOnReconcile() {
+        mockInspect("sha256:abc", List.of("nginx@sha256:local"));
+        imageInspectCache.repoDigests(host, "sha256:abc");
+        mockImageList();
+
+        imageInspectCache.reconcile();
+        imageInspectCache.repoDigests(host, "sha256:abc");
+
+        verify(dockerClient, times(2)).inspectImageCmd("sha256:abc");
+    }
+
+    @Test
+    @DisplayName("should keep images still listed on reconcile")
+    void shouldKeepImagesStillListedOnReconcile() {
+        mockInspect("sha256:abc", List.of("nginx@sha256:local"));
+        imageInspectCache.repoDigests(host, "sha256:abc");
+        mockImageList("sha256:abc");
+
+        imageInspectCache.reconcile();
+        imageInspectCache.repoDigests(host, "sha256:abc");
+
+        verify(dockerClient, times(1)).inspectImageCmd("sha256:abc");
+    }
+
+    @Test
+    @DisplayName("should keep cached inspects when the image list fails")
+    void shouldKeepCachedInspectsWhenImageListFails() {
+        mockInspect("sha256:abc", List.of("nginx@sha256:local"));
+        imageInspectCache.repoDigests(host, "sha256:abc");
+        when(dockerClient.listImagesCmd()).thenReturn(listImagesCmd);
+        when(listImagesCmd.withShowAll(true)).thenReturn(listImagesCmd);
+        when(listImagesCmd.exec()).thenThrow(new RuntimeException("boom"));
+
+        imageInspectCache.reconcile();
+        imageInspectCache.repoDigests(host, "sha256:abc");
+
+        verify(dockerClient, times(1)).inspectImageCmd("sha256:abc");
+    }
+
+    @Test
+    @DisplayName("should not list images while nothing is cached")
+    void shouldNotListImagesWhileNothingIsCached() {
+        imageInspectCache.reconcile();
+
+        verifyNoInteractions(dockerClient);
+    }
+
+    private void mockInspect(String imageId, List<String> repoDigests) {
+        when(dockerClient.inspectImageCmd(imageId)).thenReturn(inspectImageCmd);
+        when(inspectImageCmd.exec()).thenReturn(inspectImageResponse);
+        when(inspectImageResponse.getRepoDigests()).thenReturn(repoDigests);
+    }
+
+    private void mockImageList(String... imageIds) {
+        List<Image> images = new ArrayList<>();
+        for (String imageId : imageIds) {
+            Image image = mock(Image.class);
+            when(image.getId()).thenReturn(imageId);
+            images.add(image);
+        }
+        when(dockerClient.listImagesCmd()).thenReturn(listImagesCmd);
+        when(listImagesCmd.withShowAll(true)).thenReturn(listImagesCmd);
+        when(listImagesCmd.exec()).thenReturn(images);
+    }
+}
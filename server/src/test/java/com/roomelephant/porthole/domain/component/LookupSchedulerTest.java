@@ -0,0 +1,170 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("LookupScheduler")
+class LookupSchedulerTest {
+
+    private LookupScheduler scheduler;
+    private CountDownLatch busy;
+    private Thread holder;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        scheduler = new LookupScheduler(1);
+        busy = new CountDownLatch(1);
+        CountDownLatch holding = new CountDownLatch(1);
+        holder = Thread.ofVirtual()
+                .start(() -> scheduler.run(LookupPriority.HIGH, deadline(), () -> {
+                    holding.countDown();
+                    try {
+                        return busy.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+        assertTrue(holding.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("should hand a freed slot to the most urgent waiting lookup")
+    void shouldHandFreedSlotToMostUrgentWaitingLookup() throws InterruptedException {
+        List<LookupPriority> order = new CopyOnWriteArrayList<>();
+        List<Thread> waiters = List.of(
+                enqueue(LookupPriority.BACKGROUND, order, 1),
+                enqueue(LookupPriority.LOW, order, 2),
+                enqueue(LookupPriority.HIGH, order, 3));
+
+        busy.countDown();
+        for (Thread waiter : waiters) {
+            waiter.join(1000);
+        }
+
+        assertEquals(List.of(LookupPriority.HIGH, LookupPriority.LOW, LookupPriority.BACKGROUND), order);
+    }
+
+    @Test
+    @DisplayName("should serve equally urgent lookups in arrival order")
+    void shouldServeEquallyUrgentLookupsInArrivalOrder() throws InterruptedException {
+        List<String> order = new CopyOnWriteArrayList<>();
+        Thread first =
+                Thread.ofVirtual().start(() -> scheduler.run(LookupPriority.LOW, deadline(), () -> order.add("first")));
+        await(() -> scheduler.waiting() == 1);
+        Thread second = Thread.ofVirtual()
+                .start(() -> scheduler.run(LookupPriority.LOW, deadline(), () -> order.add("second")));
+        await(() -> scheduler.waiting() == 2);
+
+        busy.countDown();
+        first.join(1000);
+        second.join(1000);
+
+        assertEquals(List.of("first", "second"), order);
+    }
+
+    @Test
+    @DisplayName("should give up its place when the waiting lookup is interrupted")
+    void shouldGiveUpPlaceWhenInterrupted() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            try {
+                scheduler.run(LookupPriority.LOW, deadline(), () -> "never");
+            } catch (UnexpectedException e) {
+                failure.set(e);
+            }
+        });
+        await(() -> scheduler.waiting() == 1);
+
+        waiter.interrupt();
+        waiter.join(1000);
+        busy.countDown();
+        holder.join(1000);
+
+        assertInstanceOf(UnexpectedException.class, failure.get());
+        assertEquals(0, scheduler.waiting());
+        assertEquals("next", scheduler.run(LookupPriority.BACKGROUND, deadline(), () -> "next"));
+    }
+
+    @Test
+    @DisplayName("should stop waiting for a slot at the deadline")
+    void shouldStopWaitingForSlotAtDeadline() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+
+        DockerUnavailableException e = assertThrows(
+                DockerUnavailableException.class, () -> scheduler.run(LookupPriority.HIGH, deadline, () -> "never"));
+
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(0, scheduler.waiting());
+    }
+
+    @Test
+    @DisplayName("should move a waiting lookup ahead when its priority is raised")
+    void shouldMoveWaitingLookupAheadWhenPriorityIsRaised() throws InterruptedException {
+        List<String> order = new CopyOnWriteArrayList<>();
+        LookupScheduler.Ticket shared = scheduler.ticket(LookupPriority.BACKGROUND);
+        Thread sharedWaiter =
+                Thread.ofVirtual().start(() -> scheduler.run(shared, deadline(), () -> order.add("shared")));
+        await(() -> scheduler.waiting() == 1);
+        Thread lowWaiter =
+                Thread.ofVirtual().start(() -> scheduler.run(LookupPriority.LOW, deadline(), () -> order.add("low")));
+        await(() -> scheduler.waiting() == 2);
+
+        scheduler.raise(shared, LookupPriority.HIGH);
+        busy.countDown();
+        sharedWaiter.join(1000);
+        lowWaiter.join(1000);
+
+        assertEquals(List.of("shared", "low"), order);
+    }
+
+    @Test
+    @DisplayName("should not lower the priority of a waiting lookup")
+    void shouldNotLowerPriorityOfWaitingLookup() throws InterruptedException {
+        List<String> order = new CopyOnWriteArrayList<>();
+        LookupScheduler.Ticket shared = scheduler.ticket(LookupPriority.HIGH);
+        Thread sharedWaiter =
+                Thread.ofVirtual().start(() -> scheduler.run(shared, deadline(), () -> order.add("shared")));
+        await(() -> scheduler.waiting() == 1);
+        Thread lowWaiter =
+                Thread.ofVirtual().start(() -> scheduler.run(LookupPriority.LOW, deadline(), () -> order.add("low")));
+        await(() -> scheduler.waiting() == 2);
+
+        scheduler.raise(shared, LookupPriority.BACKGROUND);
+        busy.countDown();
+        sharedWaiter.join(1000);
+        lowWaiter.join(1000);
+
+        assertEquals(List.of("shared", "low"), order);
+    }
+
+    private Thread enqueue(LookupPriority priority, List<LookupPriority> order, int queued) {
+        Thread waiter = Thread.ofVirtual().start(() -> scheduler.run(priority, deadline(), () -> order.add(priority)));
+        await(() -> scheduler.waiting() == queued);
+        return waiter;
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+}
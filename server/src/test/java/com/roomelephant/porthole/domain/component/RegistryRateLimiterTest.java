@@ -0,0 +1,190 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.RegistryRateLimiter.Priority;
+import com.roomelephant.porthole.domain.model.exception.RegistryRateLimitedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+@DisplayName("RegistryRateLimiter")
+class RegistryRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private RegistryRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = createRateLimiter(3, Duration.ofSeconds(1), Duration.ZERO);
+    }
+
+    @Nested
+    @DisplayName("token bucket")
+    class TokenBucket {
+
+        @Test
+        @DisplayName("should allow a burst up to the bucket size")
+        void shouldAllowBurstUpToBucketSize() {
+            rateLimiter.acquire(Priority.INTERACTIVE);
+            rateLimiter.acquire(Priority.INTERACTIVE);
+            rateLimiter.acquire(Priority.BACKGROUND);
+
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.INTERACTIVE));
+        }
+
+        @Test
+        @DisplayName("should refill one token per interval")
+        void shouldRefillOneTokenPerInterval() {
+            drain();
+
+            clock.addAndGet(Duration.ofSeconds(1).toNanos());
+
+            rateLimiter.acquire(Priority.BACKGROUND);
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.BACKGROUND));
+        }
+
+        @Test
+        @DisplayName("should let interactive requests wait for a token")
+        void shouldLetInteractiveRequestsWaitForToken() {
+            rateLimiter = new RegistryRateLimiter(
+                    properties(1, Duration.ofMillis(20), Duration.ofSeconds(1)), meterRegistry, System::nanoTime);
+            rateLimiter.acquire(Priority.INTERACTIVE);
+
+            assertDoesNotThrow(() -> rateLimiter.acquire(Priority.INTERACTIVE));
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.BACKGROUND));
+        }
+    }
+
+    @Nested
+    @DisplayName("registry budget")
+    class RegistryBudget {
+
+        @Test
+        @DisplayName("should defer background requests once the reserve is reached")
+        void shouldDeferBackgroundRequestsOnceReserveIsReached() {
+            rateLimiter = createRateLimiter(100, Duration.ofSeconds(1), Duration.ZERO);
+            rateLimiter.update(rateLimitHeaders(100, 2));
+
+            RegistryRateLimitedException e =
+                    assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.BACKGROUND));
+            assertEquals(Duration.ofHours(6), e.getRetryAfter());
+            rateLimiter.acquire(Priority.INTERACTIVE);
+            rateLimiter.acquire(Priority.INTERACTIVE);
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.INTERACTIVE));
+        }
+
+        @Test
+        @DisplayName("should allow requests again once the window has passed")
+        void shouldAllowRequestsAgainOnceWindowHasPassed() {
+            rateLimiter.update(rateLimitHeaders(100, 0));
+
+            clock.addAndGet(Duration.ofHours(6).toNanos());
+
+            assertDoesNotThrow(() -> rateLimiter.acquire(Priority.BACKGROUND));
+        }
+
+        @Test
+        @DisplayName("should pause all requests after a 429 until Retry-After has passed")
+        void shouldPauseAllRequestsAfter429() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.RETRY_AFTER, "30");
+
+            rateLimiter.throttled(headers);
+
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.INTERACTIVE));
+            clock.addAndGet(Duration.ofSeconds(30).toNanos());
+            assertDoesNotThrow(() -> rateLimiter.acquire(Priority.INTERACTIVE));
+        }
+
+        @Test
+        @DisplayName("should ignore responses without rate limit headers")
+        void shouldIgnoreResponsesWithoutRateLimitHeaders() {
+            rateLimiter.update(new HttpHeaders());
+
+            assertTrue(Double.isNaN(remainingGauge()));
+            assertDoesNotThrow(() -> rateLimiter.acquire(Priority.BACKGROUND));
+        }
+    }
+
+    @Nested
+    @DisplayName("metrics")
+    class Metrics {
+
+        @Test
+        @DisplayName("should expose the remaining budget")
+        void shouldExposeRemainingBudget() {
+            rateLimiter.update(rateLimitHeaders(100, 76));
+            rateLimiter.acquire(Priority.INTERACTIVE);
+
+            assertEquals(75, remainingGauge());
+            assertEquals(
+                    100,
+                    meterRegistry
+                            .get("porthole.registry.rate_limit.limit")
+                            .gauge()
+                            .value());
+        }
+
+        @Test
+        @DisplayName("should count deferred requests by priority")
+        void shouldCountDeferredRequestsByPriority() {
+            drain();
+
+            assertThrows(RegistryRateLimitedException.class, () -> rateLimiter.acquire(Priority.BACKGROUND));
+
+            assertEquals(
+                    1,
+                    meterRegistry
+                            .get("porthole.registry.requests.deferred")
+                            .tag("priority", "background")
+                            .counter()
+                            .count());
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire(Priority.INTERACTIVE);
+        }
+    }
+
+    private double remainingGauge() {
+        return meterRegistry
+                .get("porthole.registry.rate_limit.remaining")
+                .gauge()
+                .value();
+    }
+
+    private RegistryRateLimiter createRateLimiter(int burst, Duration refillInterval, Duration maxWait) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new RegistryRateLimiter(properties(burst, refillInterval, maxWait), meterRegistry, clock::get);
+    }
+
+    private static RegistryProperties properties(int burst, Duration refillInterval, Duration maxWait) {
+        return new RegistryProperties(
+                new RegistryProperties.Timeout(Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(15)),
+                new RegistryProperties.Cache(Duration.ofHours(1), 100, 100, 100, 100, Duration.ofHours(1)),
+                new RegistryProperties.Urls("https://registry", "https://auth", "https://hub"),
+                new RegistryProperties.Batch(3, 2),
+                new RegistryProperties.RateLimit(burst, refillInterval, 2, maxWait),
+                new RegistryProperties.Tags(100, 10),
+                new RegistryProperties.Persistence(false, "registry.jsonl", Duration.ofHours(1)),
+                new RegistryProperties.Bulkhead(16, Duration.ofSeconds(5)));
+    }
+
+    private static HttpHeaders rateLimitHeaders(int limit, int remaining) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(RegistryRateLimiter.RATE_LIMIT_LIMIT, limit + ";w=21600");
+        headers.add(RegistryRateLimiter.RATE_LIMIT_REMAINING, remaining + ";w=21600");
+        return headers;
+    }
+}
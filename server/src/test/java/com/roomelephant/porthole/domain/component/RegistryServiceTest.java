@@ -1,11 +1,30 @@
 package com.roomelephant.porthole.domain.component;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.RegistryRateLimiter.Priority;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.exception.RegistryRateLimitedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -13,7 +32,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestClient;
 
@@ -21,6 +43,8 @@ import org.springframework.web.client.RestClient;
 @DisplayName("RegistryService")
 class RegistryServiceTest {
 
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
     @Mock
     private RestClient restClient;
 
@@ -42,16 +66,41 @@ class RegistryServiceTest {
     @Mock
     private RegistryProperties.Urls urls;
 
+    @Mock
+    private RegistryProperties.Tags tags;
+
+    @Mock
+    private RegistryRateLimiter rateLimiter;
+
+    @Mock
+    private RegistryStore store;
+
+    private final AtomicLong ticker = new AtomicLong();
+    private final List<HttpHeaders> conditionalHeaders = new CopyOnWriteArrayList<>();
     private RegistryService registryService;
 
     @BeforeEach
     void setUp() {
         when(registryProperties.cache()).thenReturn(cache);
-        when(cache.ttl()).thenReturn(Duration.ofMinutes(5));
+        lenient().when(cache.ttl()).thenReturn(Duration.ofMinutes(5));
         when(cache.versionMaxSize()).thenReturn(100);
-        when(registryProperties.urls()).thenReturn(urls);
-
-        registryService = new RegistryService(restClient, registryProperties);
+        when(cache.tokenMaxSize()).thenReturn(100);
+        when(cache.digestMaxSize()).thenReturn(100);
+        lenient().when(cache.staleWhileRevalidate()).thenReturn(Duration.ofMinutes(10));
+        lenient().when(registryProperties.urls()).thenReturn(urls);
+        lenient().when(registryProperties.tags()).thenReturn(tags);
+        lenient().when(tags.pageSize()).thenReturn(100);
+        lenient().when(tags.maxPages()).thenReturn(3);
+        when(registryProperties.bulkhead()).thenReturn(new RegistryProperties.Bulkhead(16, Duration.ofSeconds(5)));
+
+        registryService = new RegistryService(
+                restClient,
+                registryProperties,
+                rateLimiter,
+                store,
+                new SimpleMeterRegistry(),
+                ticker::get,
+                Clock.fixed(NOW, ZoneOffset.UTC));
     }
 
     @Nested
@@ -69,7 +118,7 @@ class RegistryServiceTest {
             setupGetRequest();
             when(responseSpec.body(String.class)).thenReturn(null);
 
-            String result = registryService.getDigest("nginx", "latest");
+            String result = registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -88,6 +137,7 @@ class RegistryServiceTest {
             when(restClient.head()).thenReturn(headSpec);
             when(headSpec.uri(anyString())).thenReturn(headHeadersSpec);
             when(headHeadersSpec.header(anyString(), anyString())).thenReturn(headHeadersSpec);
+            recordConditionalHeaders(headHeadersSpec);
             when(headHeadersSpec.retrieve()).thenReturn(headResponseSpec);
 
             HttpHeaders headers = new HttpHeaders();
@@ -95,7 +145,7 @@ class RegistryServiceTest {
             ResponseEntity<Void> entity = ResponseEntity.ok().headers(headers).build();
             when(headResponseSpec.toBodilessEntity()).thenReturn(entity);
 
-            String result = registryService.getDigest("nginx", "latest");
+            String result = registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
 
             assertEquals("sha256:abc123", result);
         }
@@ -106,7 +156,7 @@ class RegistryServiceTest {
             setupGetRequest();
             when(responseSpec.body(String.class)).thenThrow(new RuntimeException("Network error"));
 
-            String result = registryService.getDigest("nginx", "latest");
+            String result = registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -117,12 +167,327 @@ class RegistryServiceTest {
             setupGetRequest();
             when(responseSpec.body(String.class)).thenReturn(null);
 
-            String result = registryService.getDigest("bitnami/redis", "7");
+            String result = registryService.getDigest("bitnami/redis", "7", LookupPriority.HIGH);
 
             assertNull(result);
         }
     }
 
+    @Nested
+    @DisplayName("auth tokens")
+    class AuthTokens {
+
+        @BeforeEach
+        void setUpRequests() {
+            when(urls.auth()).thenReturn("https://auth/");
+            when(urls.registry()).thenReturn("https://registry/v2/");
+            setupGetRequest();
+            setupHeadRequest();
+        }
+
+        @Test
+        @DisplayName("should reuse the token of a repository")
+        void shouldReuseTokenOfRepository() {
+            when(responseSpec.body(String.class)).thenReturn(token(300, null));
+
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "1.25", LookupPriority.HIGH));
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "1.26", LookupPriority.HIGH));
+
+            verify(restClient, times(1)).get();
+        }
+
+        @Test
+        @DisplayName("should keep the tokens of several repositories")
+        void shouldKeepTokensOfSeveralRepositories() {
+            when(responseSpec.body(String.class)).thenReturn(token(300, null));
+
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            registryService.getDigest("redis", "latest", LookupPriority.HIGH);
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+
+            verify(restClient, times(2)).get();
+        }
+
+        @Test
+        @DisplayName("should fetch a new token once the token expired")
+        void shouldFetchNewTokenOnceTokenExpired() {
+            when(responseSpec.body(String.class)).thenReturn(token(300, null));
+
+            registryService.getDigest("nginx", "1.25", LookupPriority.HIGH);
+            advance(Duration.ofSeconds(301));
+            registryService.getDigest("nginx", "1.26", LookupPriority.HIGH);
+
+            verify(restClient, times(2)).get();
+        }
+
+        @Test
+        @DisplayName("should count the lifetime from the issue time")
+        void shouldCountLifetimeFromIssueTime() {
+            when(responseSpec.body(String.class)).thenReturn(token(300, NOW.minusSeconds(290)));
+
+            registryService.getDigest("nginx", "1.25", LookupPriority.HIGH);
+            advance(Duration.ofSeconds(20));
+            registryService.getDigest("nginx", "1.26", LookupPriority.HIGH);
+
+            verify(restClient, times(2)).get();
+        }
+
+        @Test
+        @DisplayName("should renew a token in the background ahead of expiry")
+        void shouldRenewTokenInBackgroundAheadOfExpiry() {
+            when(responseSpec.body(String.class)).thenReturn(token(300, null));
+
+            registryService.getDigest("nginx", "1.25", LookupPriority.HIGH);
+            advance(Duration.ofSeconds(250));
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "1.26", LookupPriority.HIGH));
+
+            verify(restClient, timeout(1000).times(2)).get();
+        }
+
+        private String token(long expiresIn, Instant issuedAt) {
+            return issuedAt == null
+                    ? "{\"token\": \"test-token\", \"expires_in\": " + expiresIn + "}"
+                    : "{\"token\": \"test-token\", \"expires_in\": " + expiresIn + ", \"issued_at\": \"" + issuedAt
+                            + "\"}";
+        }
+    }
+
+    @Nested
+    @DisplayName("digest cache")
+    class DigestCache {
+
+        private RestClient.ResponseSpec manifest;
+
+        @BeforeEach
+        void setUpRequests() {
+            when(urls.auth()).thenReturn("https://auth/");
+            when(urls.registry()).thenReturn("https://registry/v2/");
+            setupGetRequest();
+            when(responseSpec.body(String.class)).thenReturn("{\"token\": \"test-token\", \"expires_in\": 3600}");
+            manifest = setupHeadRequest();
+        }
+
+        @Test
+        @DisplayName("should serve a cached digest without asking the registry")
+        void shouldServeCachedDigestWithoutAskingRegistry() {
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+
+            verify(restClient, times(1)).head();
+        }
+
+        @Test
+        @DisplayName("should ask the registry again once the repository was invalidated")
+        void shouldAskRegistryAgainOnceRepositoryWasInvalidated() {
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+
+            registryService.invalidate("library/redis");
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            verify(restClient, times(1)).head();
+
+            registryService.invalidate("library/nginx");
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            verify(restClient, times(2)).head();
+            verify(store, times(2)).remove(eq(RegistryStore.Kind.DIGEST), any());
+        }
+
+        @Test
+        @DisplayName("should serve a stale digest while refreshing it in the background")
+        void shouldServeStaleDigestWhileRefreshingInBackground() {
+            when(manifest.toBodilessEntity()).thenReturn(digest("sha256:old"), digest("sha256:new"));
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            assertEquals("sha256:old", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+
+            verify(restClient, timeout(1000).times(2)).head();
+            await(() -> "sha256:new".equals(registryService.getDigest("nginx", "latest", LookupPriority.HIGH)));
+        }
+
+        @Test
+        @DisplayName("should fetch the digest again once the stale window passed")
+        void shouldFetchDigestAgainOnceStaleWindowPassed() {
+            when(manifest.toBodilessEntity()).thenReturn(digest("sha256:old"), digest("sha256:new"));
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(20));
+
+            assertEquals("sha256:new", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should not cache a failed lookup")
+        void shouldNotCacheFailedLookup() {
+            when(manifest.toBodilessEntity())
+                    .thenThrow(new RuntimeException("Network error"))
+                    .thenReturn(digest("sha256:abc123"));
+
+            assertNull(registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+        }
+    }
+
+    @Nested
+    @DisplayName("conditional requests")
+    class ConditionalRequests {
+
+        @Test
+        @DisplayName("should revalidate a digest with its ETag and keep it on 304")
+        void shouldRevalidateDigestWithItsETag() {
+            when(urls.auth()).thenReturn("https://auth/");
+            when(urls.registry()).thenReturn("https://registry/v2/");
+            setupGetRequest();
+            when(responseSpec.body(String.class)).thenReturn("{\"token\": \"test-token\", \"expires_in\": 3600}");
+            RestClient.ResponseSpec manifest = setupHeadRequest();
+            ResponseEntity<Void> tagged = ResponseEntity.ok()
+                    .eTag("\"sha256:abc123\"")
+                    .header("Docker-Content-Digest", "sha256:abc123")
+                    .build();
+            when(manifest.toBodilessEntity())
+                    .thenReturn(
+                            tagged,
+                            ResponseEntity.status(HttpStatus.NOT_MODIFIED).build());
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+
+            await(() -> conditionalHeaders.size() == 2);
+            assertTrue(conditionalHeaders.get(0).isEmpty());
+            assertEquals(List.of("\"sha256:abc123\""), conditionalHeaders.get(1).getIfNoneMatch());
+            verify(restClient, after(200).times(2)).head();
+            assertEquals("sha256:abc123", registryService.getDigest("nginx", "latest", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should keep the latest version when the tag listing was not modified")
+        void shouldKeepLatestVersionWhenTagListingWasNotModified() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest(
+                    ResponseEntity.ok()
+                            .eTag("\"v1\"")
+                            .lastModified(Instant.parse("2024-01-01T00:00:00Z"))
+                            .body("{\"results\": [{\"name\": \"1.0.0\"}]}"),
+                    HttpStatus.NOT_MODIFIED);
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            await(() -> conditionalHeaders.size() == 2);
+            HttpHeaders revalidation = conditionalHeaders.get(1);
+            assertEquals(List.of("\"v1\""), revalidation.getIfNoneMatch());
+            assertEquals(Instant.parse("2024-01-01T00:00:00Z").toEpochMilli(), revalidation.getIfModifiedSince());
+            verify(restClient, after(200).times(2)).get();
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should not send validators the response did not carry")
+        void shouldNotSendValidatorsResponseDidNotCarry() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest("{\"results\": [{\"name\": \"1.0.0\"}]}");
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            await(() -> conditionalHeaders.size() == 2);
+            assertTrue(conditionalHeaders.get(1).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("persistence")
+    class Persistence {
+
+        @Test
+        @DisplayName("should serve a stored version without asking Hub")
+        void shouldServeStoredVersionWithoutAskingHub() {
+            when(store.get(RegistryStore.Kind.VERSION, "nginx"))
+                    .thenReturn(new RegistryStore.Entry(
+                            RegistryStore.Kind.VERSION, "nginx", "1.25.1", null, null, null, NOW.toEpochMilli()));
+
+            assertEquals("1.25.1", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            verifyNoInteractions(restClient);
+        }
+
+        @Test
+        @DisplayName("should revalidate a stored version that is due for refresh")
+        void shouldRevalidateStoredVersionDueForRefresh() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            when(store.get(RegistryStore.Kind.VERSION, "nginx"))
+                    .thenReturn(new RegistryStore.Entry(
+                            RegistryStore.Kind.VERSION,
+                            "nginx",
+                            "1.25.1",
+                            null,
+                            "\"v1\"",
+                            null,
+                            NOW.minus(Duration.ofMinutes(8)).toEpochMilli()));
+            setupTagsRequest(HttpStatus.NOT_MODIFIED);
+            List<RegistryStore.Entry> stored = new CopyOnWriteArrayList<>();
+            doAnswer(invocation -> stored.add(invocation.getArgument(0)))
+                    .when(store)
+                    .put(any());
+
+            assertEquals("1.25.1", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+
+            await(() -> !stored.isEmpty());
+            assertEquals(List.of("\"v1\""), conditionalHeaders.get(0).getIfNoneMatch());
+            assertEquals("1.25.1", stored.get(0).value());
+            assertEquals("\"v1\"", stored.get(0).etag());
+        }
+
+        @Test
+        @DisplayName("should fetch an answer whose stored copy has expired")
+        void shouldFetchAnswerWhoseStoredCopyHasExpired() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            when(store.get(RegistryStore.Kind.VERSION, "nginx"))
+                    .thenReturn(new RegistryStore.Entry(
+                            RegistryStore.Kind.VERSION,
+                            "nginx",
+                            "1.25.1",
+                            null,
+                            null,
+                            null,
+                            NOW.minus(Duration.ofMinutes(15)).toEpochMilli()));
+            setupTagsRequest("{\"results\": [{\"name\": \"1.26.0\"}]}");
+
+            assertEquals("1.26.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should store fetched answers")
+        void shouldStoreFetchedAnswers() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest(ResponseEntity.ok()
+                    .eTag("\"v1\"")
+                    .body("{\"results\": [{\"name\": \"1.0.0\", \"last_updated\": \"2024-01-01T00:00:00Z\"}]}"));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            verify(store)
+                    .put(argThat(entry -> entry.kind() == RegistryStore.Kind.VERSION
+                            && entry.key().equals("nginx")
+                            && "1.0.0".equals(entry.value())
+                            && Long.valueOf(Instant.parse("2024-01-01T00:00:00Z")
+                                            .toEpochMilli())
+                                    .equals(entry.tagsUpdatedAt())
+                            && "\"v1\"".equals(entry.etag())));
+        }
+
+        @Test
+        @DisplayName("should not store failed lookups")
+        void shouldNotStoreFailedLookups() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest(new RuntimeException("Network error"));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            verify(store, never()).put(any());
+        }
+    }
+
     @Nested
     @DisplayName("getLatestVersion")
     class GetLatestVersion {
@@ -135,16 +500,9 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should return null when hub returns 404")
         void shouldReturnNullWhenHubReturns404() {
-            setupGetRequest();
-            when(responseSpec.body(String.class))
-                    .thenThrow(org.springframework.web.client.HttpClientErrorException.create(
-                            org.springframework.http.HttpStatus.NOT_FOUND,
-                            "Not Found",
-                            org.springframework.http.HttpHeaders.EMPTY,
-                            null,
-                            null));
+            setupTagsRequest(HttpStatus.NOT_FOUND);
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -152,21 +510,19 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should return null when hub request fails")
         void shouldReturnNullWhenHubRequestFails() {
-            setupGetRequest();
-            when(responseSpec.body(String.class)).thenThrow(new RuntimeException("Network error"));
+            setupTagsRequest(new RuntimeException("Network error"));
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertNull(result);
         }
 
         @Test
-        @DisplayName("should return null when response body is null")
-        void shouldReturnNullWhenResponseBodyIsNull() {
-            setupGetRequest();
-            when(responseSpec.body(String.class)).thenReturn(null);
+        @DisplayName("should return null when response body is empty")
+        void shouldReturnNullWhenResponseBodyIsEmpty() {
+            setupTagsRequest("");
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -174,10 +530,9 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should return null when no results in response")
         void shouldReturnNullWhenNoResultsInResponse() {
-            setupGetRequest();
-            when(responseSpec.body(String.class)).thenReturn("{\"count\": 0}");
+            setupTagsRequest("{\"count\": 0}");
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -185,7 +540,6 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should return latest semver version from tags")
         void shouldReturnLatestSemverVersionFromTags() {
-            setupGetRequest();
             String tagsResponse = """
                     {
                         "results": [
@@ -197,9 +551,9 @@ class RegistryServiceTest {
                         ]
                     }
                     """;
-            when(responseSpec.body(String.class)).thenReturn(tagsResponse);
+            setupTagsRequest(tagsResponse);
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertEquals("1.25.1", result);
         }
@@ -207,7 +561,6 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should return null when no semver tags found")
         void shouldReturnNullWhenNoSemverTagsFound() {
-            setupGetRequest();
             String tagsResponse = """
                     {
                         "results": [
@@ -217,9 +570,9 @@ class RegistryServiceTest {
                         ]
                     }
                     """;
-            when(responseSpec.body(String.class)).thenReturn(tagsResponse);
+            setupTagsRequest(tagsResponse);
 
-            String result = registryService.getLatestVersion("nginx");
+            String result = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertNull(result);
         }
@@ -227,7 +580,6 @@ class RegistryServiceTest {
         @Test
         @DisplayName("should cache version results")
         void shouldCacheVersionResults() {
-            setupGetRequest();
             String tagsResponse = """
                     {
                         "results": [
@@ -235,19 +587,380 @@ class RegistryServiceTest {
                         ]
                     }
                     """;
-            when(responseSpec.body(String.class)).thenReturn(tagsResponse);
+            setupTagsRequest(tagsResponse);
 
-            String result1 = registryService.getLatestVersion("nginx");
-            String result2 = registryService.getLatestVersion("nginx");
+            String result1 = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            String result2 = registryService.getLatestVersion("nginx", LookupPriority.HIGH);
 
             assertEquals("1.0", result1);
             assertEquals("1.0", result2);
 
             verify(restClient, times(1)).get();
         }
+
+        @Test
+        @DisplayName("should ask Hub again once the repository was invalidated")
+        void shouldAskHubAgainOnceRepositoryWasInvalidated() {
+            setupTagsRequest(tags("1.0.0"), tags("1.1.0"));
+            registryService.getLatestVersion("nginx:1.0.0", LookupPriority.HIGH);
+
+            registryService.invalidate("library/nginx");
+
+            assertEquals("1.1.0", registryService.getLatestVersion("nginx:1.0.0", LookupPriority.HIGH));
+            verify(store).remove(eq(RegistryStore.Kind.VERSION), any());
+        }
+
+        @Test
+        @DisplayName("should serve the cached version while refreshing it in the background")
+        void shouldServeCachedVersionWhileRefreshingInBackground() {
+            setupTagsRequest(tags("1.0.0"), tags("1.1.0"));
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+
+            await(() -> "1.1.0".equals(registryService.getLatestVersion("nginx", LookupPriority.HIGH)));
+        }
+
+        @Test
+        @DisplayName("should keep the cached version when a refresh fails")
+        void shouldKeepCachedVersionWhenRefreshFails() {
+            setupTagsRequest(tags("1.0.0"), new RuntimeException("Network error"));
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            verify(restClient, timeout(1000).times(2)).get();
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should not cache a failed request")
+        void shouldNotCacheFailedRequest() {
+            setupTagsRequest(new RuntimeException("Network error"), tags("1.0.0"));
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should skip parts of the listing it does not need")
+        void shouldSkipPartsOfListingItDoesNotNeed() {
+            String tagsResponse = """
+                    {
+                        "count": 3,
+                        "next": null,
+                        "results": [
+                            {"images": [{"digest": "sha256:a", "name": "9.9.9"}], "name": "1.2.0"},
+                            null,
+                            {"name": 7},
+                            {"full_size": 1, "name": "1.10.0", "tag_status": "active"}
+                        ],
+                        "trailing": {"results": [{"name": "99.0.0"}]}
+                    }
+                    """;
+            setupTagsRequest(tagsResponse);
+
+            assertEquals("1.10.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should not cache a server error")
+        void shouldNotCacheServerError() {
+            setupTagsRequest(HttpStatus.BAD_GATEWAY, tags("1.0.0"));
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should follow the next page until a page holds a semver tag")
+        void shouldFollowNextPageUntilPageHoldsSemverTag() {
+            setupTagsRequest(
+                    page("https://repositories/library/nginx/tags?page=2", tag("latest", null)),
+                    page("https://repositories/library/nginx/tags?page=3", tag("1.25.1", null), tag("1.24.0", null)),
+                    page(null, tag("2.0.0", null)));
+
+            assertEquals("1.25.1", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            verify(restClient, times(2)).get();
+        }
+
+        @Test
+        @DisplayName("should stop after the configured number of pages")
+        void shouldStopAfterConfiguredNumberOfPages() {
+            setupTagsRequest(page("https://repositories/library/nginx/tags?page=2", tag("edge", null)));
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            verify(restClient, times(3)).get();
+        }
+
+        @Test
+        @DisplayName("should not follow a next page outside the repositories URL")
+        void shouldNotFollowNextPageOutsideRepositoriesUrl() {
+            setupTagsRequest(page("https://elsewhere/tags?page=2", tag("edge", null)), tags("1.0.0"));
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            verify(restClient, times(1)).get();
+        }
+
+        @Test
+        @DisplayName("should only read tags pushed since the last lookup on refresh")
+        void shouldOnlyReadTagsPushedSinceLastLookupOnRefresh() {
+            setupTagsRequest(
+                    page(null, tag("1.0.0", "2024-01-01T00:00:00Z")),
+                    page(
+                            "https://repositories/library/nginx/tags?page=2",
+                            tag("edge", "2024-02-01T00:00:00.123456Z"),
+                            tag("1.0.0", "2024-01-01T00:00:00Z")),
+                    page(null, tag("9.0.0", "2023-01-01T00:00:00Z")));
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            verify(restClient, after(500).times(2)).get();
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+        }
+
+        @Test
+        @DisplayName("should pick up a newer version pushed since the last lookup")
+        void shouldPickUpNewerVersionPushedSinceLastLookup() {
+            setupTagsRequest(
+                    page(null, tag("1.0.0", "2024-01-01T00:00:00Z")),
+                    page(null, tag("1.1.0", "2024-02-01T00:00:00Z"), tag("1.0.0", "2024-01-01T00:00:00Z")));
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            await(() -> "1.1.0".equals(registryService.getLatestVersion("nginx", LookupPriority.HIGH)));
+        }
+
+        private String tags(String name) {
+            return "{\"results\": [{\"name\": \"" + name + "\"}]}";
+        }
+
+        private String page(String next, String... tags) {
+            return "{\"next\": " + (next != null ? "\"" + next + "\"" : "null") + ", \"results\": ["
+                    + String.join(", ", tags) + "]}";
+        }
+
+        private String tag(String name, String lastUpdated) {
+            return "{\"name\": \"" + name + "\""
+                    + (lastUpdated != null ? ", \"last_updated\": \"" + lastUpdated + "\"" : "") + "}";
+        }
+    }
+
+    @Nested
+    @DisplayName("rate limit")
+    class RateLimit {
+
+        @Test
+        @DisplayName("should pass the rate limit headers of manifest responses to the limiter")
+        void shouldPassRateLimitHeadersOfManifestResponsesToLimiter() {
+            when(urls.auth()).thenReturn("https://auth/");
+            when(urls.registry()).thenReturn("https://registry/v2/");
+            setupGetRequest();
+            when(responseSpec.body(String.class)).thenReturn("{\"token\": \"test-token\"}");
+            setupHeadRequest();
+
+            registryService.getDigest("nginx", "latest", LookupPriority.HIGH);
+
+            verify(rateLimiter, times(2)).acquire(Priority.INTERACTIVE);
+            verify(rateLimiter).update(argThat(headers -> headers.containsHeader("Docker-Content-Digest")));
+        }
+
+        @Test
+        @DisplayName("should pause registry requests after a 429")
+        void shouldPauseRegistryRequestsAfter429() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.RETRY_AFTER, "30");
+            setupTagsRequest(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .headers(headers)
+                    .build());
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+
+            verify(rateLimiter).throttled(headers);
+        }
+
+        @Test
+        @DisplayName("should not send a request the budget cannot afford")
+        void shouldNotSendRequestBudgetCannotAfford() {
+            doThrow(new RegistryRateLimitedException(Duration.ofSeconds(30)))
+                    .when(rateLimiter)
+                    .acquire(Priority.INTERACTIVE);
+
+            assertNull(registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+
+            verifyNoInteractions(restClient);
+        }
+
+        @Test
+        @DisplayName("should not spend budget on a request the bulkhead turns away")
+        void shouldNotSpendBudgetOnRequestBulkheadTurnsAway() throws InterruptedException {
+            when(registryProperties.bulkhead()).thenReturn(new RegistryProperties.Bulkhead(1, Duration.ofMillis(10)));
+            registryService = new RegistryService(
+                    restClient,
+                    registryProperties,
+                    rateLimiter,
+                    store,
+                    new SimpleMeterRegistry(),
+                    ticker::get,
+                    Clock.fixed(NOW, ZoneOffset.UTC));
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest("{\"results\": [{\"name\": \"1.0.0\"}]}");
+            CountDownLatch holding = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger acquired = new AtomicInteger();
+            doAnswer(_ -> {
+                        if (acquired.getAndIncrement() == 0) {
+                            holding.countDown();
+                            release.await();
+                        }
+                        return null;
+                    })
+                    .when(rateLimiter)
+                    .acquire(Priority.INTERACTIVE);
+            Thread first =
+                    Thread.ofVirtual().start(() -> registryService.getLatestVersion("nginx", LookupPriority.HIGH));
+            holding.await();
+
+            assertNull(registryService.getLatestVersion("redis", LookupPriority.HIGH));
+
+            release.countDown();
+            first.join();
+            assertEquals(1, acquired.get());
+        }
+
+        @Test
+        @DisplayName("should refresh cached answers with background priority")
+        void shouldRefreshCachedAnswersWithBackgroundPriority() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest("{\"results\": [{\"name\": \"1.0.0\"}]}");
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+            advance(Duration.ofMinutes(6));
+
+            registryService.getLatestVersion("nginx", LookupPriority.HIGH);
+
+            verify(rateLimiter, timeout(1000)).acquire(Priority.BACKGROUND);
+        }
+
+        @Test
+        @DisplayName("should load answers for a background check with background priority")
+        void shouldLoadAnswersForBackgroundCheckWithBackgroundPriority() {
+            when(urls.repositories()).thenReturn("https://repositories/");
+            setupTagsRequest("{\"results\": [{\"name\": \"1.0.0\"}]}");
+
+            assertEquals("1.0.0", registryService.getLatestVersion("nginx", LookupPriority.BACKGROUND));
+
+            verify(rateLimiter).acquire(Priority.BACKGROUND);
+            verify(rateLimiter, never()).acquire(Priority.INTERACTIVE);
+        }
+
+        @Test
+        @DisplayName("should fetch the token for a background digest check with background priority")
+        void shouldFetchTokenForBackgroundDigestCheckWithBackgroundPriority() {
+            when(urls.auth()).thenReturn("https://auth/");
+            when(urls.registry()).thenReturn("https://registry/v2/");
+            setupGetRequest();
+            when(responseSpec.body(String.class)).thenReturn("{\"token\": \"test-token\"}");
+            setupHeadRequest();
+
+            registryService.getDigest("nginx", "latest", LookupPriority.BACKGROUND);
+
+            verify(rateLimiter, times(2)).acquire(Priority.BACKGROUND);
+            verify(rateLimiter, never()).acquire(Priority.INTERACTIVE);
+        }
     }
 
     @SuppressWarnings("unchecked")
+    private RestClient.ResponseSpec setupHeadRequest() {
+        RestClient.RequestHeadersUriSpec headSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        RestClient.RequestHeadersSpec headHeadersSpec = mock(RestClient.RequestHeadersSpec.class);
+        RestClient.ResponseSpec headResponseSpec = mock(RestClient.ResponseSpec.class);
+        when(restClient.head()).thenReturn(headSpec);
+        when(headSpec.uri(anyString())).thenReturn(headHeadersSpec);
+        when(headHeadersSpec.header(anyString(), anyString())).thenReturn(headHeadersSpec);
+        recordConditionalHeaders(headHeadersSpec);
+        when(headHeadersSpec.retrieve()).thenReturn(headResponseSpec);
+        when(headResponseSpec.toBodilessEntity()).thenReturn(digest("sha256:abc123"));
+        return headResponseSpec;
+    }
+
+    private static ResponseEntity<Void> digest(String digest) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Docker-Content-Digest", digest);
+        return ResponseEntity.ok().headers(headers).build();
+    }
+
+    private void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    private void advance(Duration duration) {
+        ticker.addAndGet(duration.toNanos());
+    }
+
+    /**
+     * Answers tag listing requests in turn with a body, a status, a full response or a thrown exception;
+     * the last answer repeats.
+     */
+    private void setupTagsRequest(Object... answers) {
+        RestClient.RequestHeadersUriSpec getSpec = mock(RestClient.RequestHeadersUriSpec.class);
+        when(restClient.get()).thenReturn(getSpec);
+        when(getSpec.uri(anyString())).thenReturn(requestHeadersSpec);
+        recordConditionalHeaders(requestHeadersSpec);
+        AtomicInteger calls = new AtomicInteger();
+        when(requestHeadersSpec.exchange(any(RestClient.RequestHeadersSpec.ExchangeFunction.class)))
+                .thenAnswer(invocation -> {
+                    Object answer = answers[Math.min(calls.getAndIncrement(), answers.length - 1)];
+                    if (answer instanceof RuntimeException e) {
+                        throw e;
+                    }
+                    RestClient.RequestHeadersSpec.ExchangeFunction<?> exchange = invocation.getArgument(0);
+                    return exchange.exchange(mock(HttpRequest.class), response(answer));
+                });
+    }
+
+    private static RestClient.RequestHeadersSpec.ConvertibleClientHttpResponse response(Object answer)
+            throws IOException {
+        ResponseEntity<?> entity =
+                switch (answer) {
+                    case String body -> ResponseEntity.ok(body);
+                    case HttpStatus status -> ResponseEntity.status(status).build();
+                    case ResponseEntity<?> response -> response;
+                    default -> throw new IllegalArgumentException("Unsupported answer: " + answer);
+                };
+        byte[] body =
+                entity.getBody() != null ? entity.getBody().toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        RestClient.RequestHeadersSpec.ConvertibleClientHttpResponse response = mock(
+                RestClient.RequestHeadersSpec.ConvertibleClientHttpResponse.class,
+                withSettings().strictness(Strictness.LENIENT));
+        when(response.getStatusCode()).thenReturn(entity.getStatusCode());
+        when(response.getStatusText()).thenReturn(entity.getStatusCode().toString());
+        when(response.getHeaders()).thenReturn(entity.getHeaders());
+        when(response.getBody()).thenReturn(new ByteArrayInputStream(body));
+        return response;
+    }
+
+    /** Keeps the conditional headers each request sent. */
+    private void recordConditionalHeaders(RestClient.RequestHeadersSpec spec) {
+        when(spec.headers(any())).thenAnswer(invocation -> {
+            Consumer<HttpHeaders> headers = invocation.getArgument(0);
+            HttpHeaders sent = new HttpHeaders();
+            headers.accept(sent);
+            conditionalHeaders.add(sent);
+            return spec;
+        });
+    }
+
     private void setupGetRequest() {
         RestClient.RequestHeadersUriSpec getSpec = mock(RestClient.RequestHeadersUriSpec.class);
         when(restClient.get()).thenReturn(getSpec);
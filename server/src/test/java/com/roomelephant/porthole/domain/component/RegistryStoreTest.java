@@ -0,0 +1,192 @@
+package com.roomelephant.porthole.domain.component;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.RegistryStore.Entry;
+import com.roomelephant.porthole.domain.component.RegistryStore.Kind;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("RegistryStore")
+class RegistryStoreTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    @TempDir
+    private Path directory;
+
+    private Path file;
+    private RegistryStore store;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("cache").resolve("registry.jsonl");
+        store = createStore(true, NOW);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    @DisplayName("should restore answers stored before a restart")
+    void shouldRestoreAnswersStoredBeforeRestart() {
+        Entry entry = new Entry(Kind.VERSION, "nginx", "1.25.1", 1L, "\"v1\"", null, NOW.toEpochMilli());
+        store.put(entry);
+        store.close();
+
+        RegistryStore restarted = createStore(true, NOW.plusSeconds(60));
+
+        assertEquals(entry, restarted.get(Kind.VERSION, "nginx"));
+        assertNull(restarted.get(Kind.DIGEST, "nginx"));
+    }
+
+    @Test
+    @DisplayName("should keep the last answer stored for a key")
+    void shouldKeepLastAnswerStoredForKey() {
+        store.put(digest("sha256:old", NOW));
+        store.put(digest("sha256:new", NOW));
+        store.close();
+
+        RegistryStore restarted = createStore(true, NOW);
+
+        assertEquals(
+                "sha256:new", restarted.get(Kind.DIGEST, "library/nginx:latest").value());
+    }
+
+    @Test
+    @DisplayName("should skip lines it cannot read")
+    void shouldSkipLinesItCannotRead() throws IOException {
+        store.put(digest("sha256:abc", NOW));
+        store.close();
+        Files.writeString(file, "{\"kind\": \"DIGEST\", \"ke", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        RegistryStore restarted = createStore(true, NOW);
+
+        assertEquals(
+                "sha256:abc", restarted.get(Kind.DIGEST, "library/nginx:latest").value());
+    }
+
+    @Test
+    @DisplayName("should forget removed answers and drop them on compaction")
+    void shouldForgetRemovedAnswersAndDropThemOnCompaction() throws IOException {
+        store.put(digest("sha256:abc", NOW));
+        store.put(new Entry(Kind.DIGEST, "library/redis:7", "sha256:def", null, null, null, NOW.toEpochMilli()));
+
+        store.remove(Kind.DIGEST, key -> key.startsWith("library/nginx:"));
+        store.compact();
+
+        assertNull(store.get(Kind.DIGEST, "library/nginx:latest"));
+        assertEquals("sha256:def", store.get(Kind.DIGEST, "library/redis:7").value());
+        assertEquals(1, Files.readAllLines(file).size());
+    }
+
+    @Test
+    @DisplayName("should not restore removed answers after a restart")
+    void shouldNotRestoreRemovedAnswersAfterRestart() {
+        store.put(digest("sha256:abc", NOW));
+        store.put(new Entry(Kind.DIGEST, "library/redis:7", "sha256:def", null, null, null, NOW.toEpochMilli()));
+        store.remove(Kind.DIGEST, key -> key.startsWith("library/nginx:"));
+        store.close();
+
+        RegistryStore restarted = createStore(true, NOW);
+
+        assertNull(restarted.get(Kind.DIGEST, "library/nginx:latest"));
+        assertEquals("sha256:def", restarted.get(Kind.DIGEST, "library/redis:7").value());
+    }
+
+    @Test
+    @DisplayName("should restore an answer stored again after its removal")
+    void shouldRestoreAnswerStoredAgainAfterRemoval() throws IOException {
+        store.put(digest("sha256:old", NOW));
+        store.remove(Kind.DIGEST, _ -> true);
+        store.put(digest("sha256:new", NOW));
+        store.close();
+
+        RegistryStore restarted = createStore(true, NOW);
+
+        assertEquals(
+                "sha256:new", restarted.get(Kind.DIGEST, "library/nginx:latest").value());
+        restarted.compact();
+        assertEquals(1, Files.readAllLines(file).size());
+        restarted.close();
+    }
+
+    @Test
+    @DisplayName("should not serve answers older than ttl and stale window")
+    void shouldNotServeExpiredAnswers() {
+        store.put(digest("sha256:abc", NOW));
+        store.close();
+
+        RegistryStore restarted = createStore(true, NOW.plus(Duration.ofHours(2)));
+
+        assertNull(restarted.get(Kind.DIGEST, "library/nginx:latest"));
+    }
+
+    @Test
+    @DisplayName("should drop superseded and expired lines on compaction")
+    void shouldDropSupersededAndExpiredLinesOnCompaction() throws IOException {
+        store.put(digest("sha256:old", NOW));
+        store.put(digest("sha256:new", NOW));
+        store.put(new Entry(
+                Kind.VERSION,
+                "nginx",
+                "1.0.0",
+                null,
+                null,
+                null,
+                NOW.minus(Duration.ofHours(3)).toEpochMilli()));
+
+        store.compact();
+
+        assertEquals(1, Files.readAllLines(file).size());
+        store.put(new Entry(Kind.VERSION, "redis", "7.2.0", null, null, null, NOW.toEpochMilli()));
+        assertEquals(2, Files.readAllLines(file).size());
+        assertEquals(
+                "sha256:new",
+                createStore(true, NOW).get(Kind.DIGEST, "library/nginx:latest").value());
+    }
+
+    @Test
+    @DisplayName("should not touch the disk when disabled")
+    void shouldNotTouchDiskWhenDisabled() {
+        RegistryStore disabled = createStore(false, NOW);
+
+        disabled.put(digest("sha256:abc", NOW));
+        disabled.compact();
+
+        assertNull(disabled.get(Kind.DIGEST, "library/nginx:latest"));
+        assertFalse(Files.exists(file));
+    }
+
+    private RegistryStore createStore(boolean enabled, Instant now) {
+        RegistryProperties properties = new RegistryProperties(
+                new RegistryProperties.Timeout(Duration.ofSeconds(5), Duration.ofSeconds(10), Duration.ofSeconds(15)),
+                new RegistryProperties.Cache(Duration.ofHours(1), 100, 100, 100, 100, Duration.ofMinutes(30)),
+                new RegistryProperties.Urls("https://registry", "https://auth", "https://hub"),
+                new RegistryProperties.Batch(3, 2),
+                new RegistryProperties.RateLimit(50, Duration.ofMillis(100), 10, Duration.ofSeconds(2)),
+                new RegistryProperties.Tags(100, 10),
+                new RegistryProperties.Persistence(enabled, file.toString(), Duration.ofHours(1)),
+                new RegistryProperties.Bulkhead(16, Duration.ofSeconds(5)));
+        return new RegistryStore(properties, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static Entry digest(String digest, Instant storedAt) {
+        return new Entry(Kind.DIGEST, "library/nginx:latest", digest, null, null, null, storedAt.toEpochMilli());
+    }
+}
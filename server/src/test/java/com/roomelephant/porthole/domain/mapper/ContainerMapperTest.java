@@ -49,7 +49,7 @@ class ContainerMapperTest {
                     "Up 2 hours");
             when(iconComponent.resolveIcon("nginx")).thenReturn("https://example.com/nginx.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("abc123", dto.id());
             assertEquals("my-container", dto.name());
@@ -61,6 +61,8 @@ class ContainerMapperTest {
             assertEquals("my-project", dto.project());
             assertEquals("running", dto.state());
             assertEquals("Up 2 hours", dto.status());
+            assertEquals("local", dto.host());
+            assertFalse(dto.stale());
         }
 
         @Test
@@ -70,7 +72,7 @@ class ContainerMapperTest {
                     "abc123", "/my-container", "redis:7", new Integer[] {}, null, "running", "Up 1 hour");
             when(iconComponent.resolveIcon("redis")).thenReturn("https://example.com/redis.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertTrue(dto.exposedPorts().isEmpty());
             assertFalse(dto.hasPublicPorts());
@@ -95,7 +97,7 @@ class ContainerMapperTest {
 
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals(1, dto.exposedPorts().size());
             assertTrue(dto.exposedPorts().contains(80));
@@ -114,7 +116,7 @@ class ContainerMapperTest {
                     "Up 1 hour");
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals(2, dto.exposedPorts().size());
         }
@@ -132,7 +134,7 @@ class ContainerMapperTest {
                     "Up 1 hour");
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("my-project-web", dto.name());
             assertEquals("web", dto.displayName());
@@ -151,7 +153,7 @@ class ContainerMapperTest {
                     "Up 1 hour");
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("other-web", dto.name());
             assertEquals("other-web", dto.displayName());
@@ -164,7 +166,7 @@ class ContainerMapperTest {
                     "abc123", "/standalone-app", "myapp:latest", new Integer[] {8080}, null, "running", "Up 1 hour");
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("standalone-app", dto.name());
             assertEquals("standalone-app", dto.displayName());
@@ -183,7 +185,7 @@ class ContainerMapperTest {
             when(container.getPorts()).thenReturn(new ContainerPort[] {});
             when(iconComponent.resolveIcon(anyString())).thenReturn("https://example.com/icon.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("Unknown", dto.name());
         }
@@ -201,7 +203,7 @@ class ContainerMapperTest {
                     "Up 1 hour");
             when(iconComponent.resolveIcon("postgresql")).thenReturn("https://example.com/postgresql.png");
 
-            ContainerDTO dto = containerMapper.toDTO(container);
+            ContainerDTO dto = containerMapper.toDTO("local", container);
 
             assertEquals("https://example.com/postgresql.png", dto.iconUrl());
         }
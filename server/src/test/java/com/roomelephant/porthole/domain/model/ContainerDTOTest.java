@@ -22,7 +22,9 @@ class ContainerDTOTest {
                 "https://example.com/nginx.png",
                 "my-project",
                 "running",
-                "Up 2 hours");
+                "Up 2 hours",
+                "local",
+                false);
 
         assertTrue(dto.hasPublicPorts());
     }
@@ -39,7 +41,9 @@ class ContainerDTOTest {
                 "https://example.com/nginx.png",
                 "my-project",
                 "running",
-                "Up 2 hours");
+                "Up 2 hours",
+                "local",
+                false);
 
         assertFalse(dto.hasPublicPorts());
     }
@@ -56,7 +60,9 @@ class ContainerDTOTest {
                 "https://example.com/nginx.png",
                 "my-project",
                 "running",
-                "Up 2 hours");
+                "Up 2 hours",
+                "local",
+                false);
 
         assertFalse(dto.hasPublicPorts());
     }
@@ -73,7 +79,9 @@ class ContainerDTOTest {
                 "https://example.com/redis.png",
                 "test-project",
                 "running",
-                "Up 1 hour");
+                "Up 1 hour",
+                "local",
+                false);
 
         assertEquals("abc123", dto.id());
         assertEquals("test-container", dto.name());
@@ -85,4 +93,26 @@ class ContainerDTOTest {
         assertEquals("running", dto.state());
         assertEquals("Up 1 hour", dto.status());
     }
+
+    @Test
+    @DisplayName("should copy every field when marking stale")
+    void shouldCopyEveryFieldWhenMarkingStale() {
+        var dto = new ContainerDTO(
+                "container-id",
+                "my-container",
+                "my-container",
+                "nginx:latest",
+                Set.of(80),
+                "https://example.com/nginx.png",
+                "my-project",
+                "running",
+                "Up 2 hours",
+                "nas",
+                false);
+
+        var stale = dto.withStale(true);
+
+        assertTrue(stale.stale());
+        assertEquals(dto, stale.withStale(false));
+    }
 }
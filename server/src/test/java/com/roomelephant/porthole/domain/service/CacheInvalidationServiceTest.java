@@ -0,0 +1,92 @@
+package com.roomelephant.porthole.domain.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.component.ImageInspectCache;
+import com.roomelephant.porthole.domain.component.RegistryService;
+import com.roomelephant.porthole.domain.component.VersionStore;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.ImageEvent;
+import com.roomelephant.porthole.domain.model.VersionDTO;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CacheInvalidationService")
+class CacheInvalidationServiceTest {
+
+    private static final VersionDTO OUTDATED = new VersionDTO("1.0.0", "1.1.0", true);
+
+    @Mock
+    private ContainerIndex containerIndex;
+
+    @Mock
+    private RegistryService registryService;
+
+    @Mock
+    private VersionService versionService;
+
+    @Mock
+    private ImageInspectCache imageInspectCache;
+
+    private VersionStore versionStore;
+    private ContainerIndex.Listener listener;
+    private ContainerIndex.ImageListener imageListener;
+
+    @BeforeEach
+    void setUp() {
+        versionStore = new VersionStore();
+        new CacheInvalidationService(
+                containerIndex, registryService, versionService, imageInspectCache, versionStore, Runnable::run);
+
+        ArgumentCaptor<ContainerIndex.Listener> listenerCaptor = ArgumentCaptor.forClass(ContainerIndex.Listener.class);
+        verify(containerIndex).addListener(listenerCaptor.capture());
+        listener = listenerCaptor.getValue();
+        ArgumentCaptor<ContainerIndex.ImageListener> imageListenerCaptor =
+                ArgumentCaptor.forClass(ContainerIndex.ImageListener.class);
+        verify(containerIndex).addImageListener(imageListenerCaptor.capture());
+        imageListener = imageListenerCaptor.getValue();
+    }
+
+    @Test
+    @DisplayName("should invalidate the repository of a pulled image")
+    void shouldInvalidateRepositoryOfPulledImage() {
+        imageListener.onImageEvent(new ImageEvent("local", "pull", null, "nginx:latest"));
+
+        verify(registryService).invalidate("library/nginx");
+        verify(versionService).invalidateRepository("library/nginx");
+        verifyNoInteractions(imageInspectCache);
+    }
+
+    @Test
+    @DisplayName("should invalidate the inspect result and image checks of a retagged image")
+    void shouldInvalidateInspectAndImageChecksOfRetaggedImage() {
+        imageListener.onImageEvent(new ImageEvent("nas", "tag", "sha256:abc", "nginx:1.25"));
+
+        verify(imageInspectCache).invalidate("nas", "sha256:abc");
+        verify(versionService).invalidateImage("sha256:abc");
+        verifyNoInteractions(registryService);
+    }
+
+    @Test
+    @DisplayName("should drop the stored versions of removed containers")
+    void shouldDropStoredVersionsOfRemovedContainers() {
+        versionStore.put("local", "gone", OUTDATED);
+        versionStore.put("local", "web", OUTDATED);
+
+        listener.onPublish(
+                new ContainerSnapshot(2L, List.of()), new ContainerDelta(2L, List.of(), List.of(), List.of("gone")));
+
+        assertNull(versionStore.get("local", "gone"));
+        assertEquals(OUTDATED, versionStore.get("local", "web"));
+    }
+}
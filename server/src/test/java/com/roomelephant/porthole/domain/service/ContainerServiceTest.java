@@ -6,14 +6,31 @@ import static org.mockito.Mockito.*;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.ListContainersCmd;
 import com.github.dockerjava.api.model.Container;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.domain.component.ContainerChangeLog;
+import com.roomelephant.porthole.domain.component.ContainerIndex;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
 import com.roomelephant.porthole.domain.mapper.ContainerMapper;
+import com.roomelephant.porthole.domain.model.ContainerChanges;
 import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerDelta;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
 import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.net.SocketException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -35,11 +52,17 @@ class ContainerServiceTest {
     @Mock
     private ListContainersCmd listContainersCmd;
 
+    @Mock
+    private ContainerIndex containerIndex;
+
+    @Mock
+    private ContainerChangeLog containerChangeLog;
+
     private ContainerService containerService;
 
     @BeforeEach
     void setUp() {
-        containerService = new ContainerService(dockerClient, containerMapper);
+        containerService = createContainerService(Duration.ZERO);
     }
 
     @Nested
@@ -47,25 +70,26 @@ class ContainerServiceTest {
     class GetContainers {
 
         @Test
-        @DisplayName("should get containers with showAll=false")
-        void shouldGetContainersWithShowAllFalse() {
+        @DisplayName("should always list all containers and filter stopped ones per caller")
+        void shouldAlwaysListAllContainersAndFilterStoppedOnesPerCaller() {
             Container container1 = createMockContainer();
             Container container2 = createMockContainer();
             ContainerDTO dto1 = createContainerDTO("container1", Set.of(8080));
-            ContainerDTO dto2 = createContainerDTO("container2", Set.of(9090));
+            ContainerDTO dto2 = createContainerDTO("container2", Set.of(9090), "exited");
 
             when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
-            when(listContainersCmd.withShowAll(false)).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
             when(listContainersCmd.exec()).thenReturn(List.of(container1, container2));
-            when(containerMapper.toDTO(container1)).thenReturn(dto1);
-            when(containerMapper.toDTO(container2)).thenReturn(dto2);
+            when(containerMapper.toDTO("local", container1)).thenReturn(dto1);
+            when(containerMapper.toDTO("local", container2)).thenReturn(dto2);
 
-            List<ContainerDTO> result = containerService.getContainers(true, false);
+            List<ContainerDTO> result =
+                    containerService.getContainers(true, false).containers();
 
-            assertEquals(2, result.size());
-            verify(listContainersCmd).withShowAll(false);
-            verify(containerMapper).toDTO(container1);
-            verify(containerMapper).toDTO(container2);
+            assertEquals(List.of(dto1), result);
+            verify(listContainersCmd).withShowAll(true);
+            verify(containerMapper).toDTO("local", container1);
+            verify(containerMapper).toDTO("local", container2);
         }
 
         @Test
@@ -91,10 +115,11 @@ class ContainerServiceTest {
             when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
             when(listContainersCmd.withShowAll(anyBoolean())).thenReturn(listContainersCmd);
             when(listContainersCmd.exec()).thenReturn(List.of(container1, container2));
-            when(containerMapper.toDTO(container1)).thenReturn(dtoWithPorts);
-            when(containerMapper.toDTO(container2)).thenReturn(dtoNoPorts);
+            when(containerMapper.toDTO("local", container1)).thenReturn(dtoWithPorts);
+            when(containerMapper.toDTO("local", container2)).thenReturn(dtoNoPorts);
 
-            List<ContainerDTO> result = containerService.getContainers(false, false);
+            List<ContainerDTO> result =
+                    containerService.getContainers(false, false).containers();
 
             assertEquals(1, result.size());
             assertEquals(dtoWithPorts, result.get(0));
@@ -110,7 +135,9 @@ class ContainerServiceTest {
             when(listContainersCmd.withShowAll(anyBoolean())).thenReturn(listContainersCmd);
             when(listContainersCmd.exec()).thenThrow(dockerException);
 
-            assertThrows(DockerUnavailableException.class, () -> containerService.getContainers(true, false));
+            assertThrows(
+                    DockerUnavailableException.class,
+                    () -> containerService.getContainers(true, false).containers());
         }
 
         @Test
@@ -122,11 +149,25 @@ class ContainerServiceTest {
             when(listContainersCmd.withShowAll(anyBoolean())).thenReturn(listContainersCmd);
             when(listContainersCmd.exec()).thenThrow(otherException);
 
-            UnexpectedException thrown =
-                    assertThrows(UnexpectedException.class, () -> containerService.getContainers(true, false));
+            UnexpectedException thrown = assertThrows(
+                    UnexpectedException.class,
+                    () -> containerService.getContainers(true, false).containers());
             assertEquals("Some other error", thrown.getCause().getMessage());
         }
 
+        @Test
+        @DisplayName("should wrap an error that is not a RuntimeException")
+        void shouldWrapErrorThatIsNotRuntimeException() {
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(anyBoolean())).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenThrow(new LinkageError("Missing codec"));
+
+            IllegalStateException thrown = assertThrows(
+                    IllegalStateException.class,
+                    () -> containerService.getContainers(true, false).containers());
+            assertEquals("Missing codec", thrown.getCause().getMessage());
+        }
+
         @Test
         @DisplayName("should return empty list when no containers exist")
         void shouldReturnEmptyListWhenNoContainersExist() {
@@ -134,17 +175,325 @@ class ContainerServiceTest {
             when(listContainersCmd.withShowAll(anyBoolean())).thenReturn(listContainersCmd);
             when(listContainersCmd.exec()).thenReturn(Collections.emptyList());
 
-            List<ContainerDTO> result = containerService.getContainers(true, true);
+            List<ContainerDTO> result =
+                    containerService.getContainers(true, true).containers();
 
             assertTrue(result.isEmpty());
         }
     }
 
+    @Nested
+    @DisplayName("getContainers coalescing")
+    class GetContainersCoalescing {
+
+        @Test
+        @DisplayName("should share one in-flight Docker call between concurrent callers")
+        void shouldShareOneInFlightDockerCallBetweenConcurrentCallers() throws Exception {
+            CountDownLatch listing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ContainerDTO stopped = createContainerDTO("c1", Set.of(8080), "exited");
+            Container container = createMockContainer();
+
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenAnswer(_ -> {
+                listing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return List.of(container);
+            });
+            when(containerMapper.toDTO("local", container)).thenReturn(stopped);
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                Future<List<ContainerDTO>> leader = executor.submit(
+                        () -> containerService.getContainers(true, true).containers());
+                assertTrue(listing.await(5, TimeUnit.SECONDS));
+                Future<List<ContainerDTO>> follower = executor.submit(
+                        () -> containerService.getContainers(true, false).containers());
+                Thread.sleep(100);
+                release.countDown();
+
+                assertEquals(List.of(stopped), leader.get(5, TimeUnit.SECONDS));
+                assertEquals(List.of(), follower.get(5, TimeUnit.SECONDS));
+            }
+            verify(listContainersCmd, times(1)).exec();
+        }
+
+        @Test
+        @DisplayName("should reuse a result within the freshness window")
+        void shouldReuseResultWithinFreshnessWindow() {
+            containerService = createContainerService(Duration.ofMinutes(1));
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenReturn(Collections.emptyList());
+
+            containerService.getContainers(true, true);
+            containerService.getContainers(false, false);
+
+            verify(listContainersCmd, times(1)).exec();
+        }
+
+        @Test
+        @DisplayName("should fetch again once the freshness window has passed")
+        void shouldFetchAgainOnceFreshnessWindowHasPassed() {
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenReturn(Collections.emptyList());
+
+            containerService.getContainers(true, true);
+            containerService.getContainers(true, true);
+
+            verify(listContainersCmd, times(2)).exec();
+        }
+
+        @Test
+        @DisplayName("should not reuse a failed fetch")
+        void shouldNotReuseFailedFetch() {
+            containerService = createContainerService(Duration.ofMinutes(1));
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec())
+                    .thenThrow(new RuntimeException("Some other error"))
+                    .thenReturn(Collections.emptyList());
+
+            assertThrows(
+                    UnexpectedException.class,
+                    () -> containerService.getContainers(true, true).containers());
+            assertTrue(containerService.getContainers(true, true).containers().isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("getContainers from several hosts")
+    class GetContainersFromSeveralHosts {
+
+        @Mock
+        private DockerClient remoteClient;
+
+        @Mock
+        private ListContainersCmd remoteListCmd;
+
+        @BeforeEach
+        void setUp() {
+            containerService = createContainerService(
+                    Duration.ZERO,
+                    new DockerHosts.Host("local", dockerClient),
+                    new DockerHosts.Host("nas", remoteClient));
+            Container container = createMockContainer();
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            lenient().when(listContainersCmd.exec()).thenReturn(List.of(container));
+            lenient()
+                    .when(containerMapper.toDTO("local", container))
+                    .thenReturn(createContainerDTO("c1", Set.of(8080)));
+            when(remoteClient.listContainersCmd()).thenReturn(remoteListCmd);
+            when(remoteListCmd.withShowAll(true)).thenReturn(remoteListCmd);
+        }
+
+        @Test
+        @DisplayName("should merge the containers of every host")
+        void shouldMergeContainersOfEveryHost() {
+            Container remote = createMockContainer();
+            ContainerDTO remoteDTO = createContainerDTO("c2", Set.of(9090), "running", "nas");
+            when(remoteListCmd.exec()).thenReturn(List.of(remote));
+            when(containerMapper.toDTO("nas", remote)).thenReturn(remoteDTO);
+
+            List<ContainerDTO> result =
+                    containerService.getContainers(true, true).containers();
+
+            assertEquals(List.of(createContainerDTO("c1", Set.of(8080)), remoteDTO), result);
+        }
+
+        @Test
+        @DisplayName("should return the last known containers of a failed host as stale")
+        void shouldReturnLastKnownContainersOfFailedHostAsStale() {
+            ContainerDTO known = createContainerDTO("c2", Set.of(9090), "running", "nas");
+            when(remoteListCmd.exec()).thenThrow(new RuntimeException("Connection reset"));
+            when(containerIndex.lastKnown("nas")).thenReturn(List.of(known));
+
+            List<ContainerDTO> result =
+                    containerService.getContainers(true, true).containers();
+
+            assertEquals(List.of(createContainerDTO("c1", Set.of(8080)), known.withStale(true)), result);
+        }
+
+        @Test
+        @DisplayName("should not wait for a slow host beyond the deadline")
+        void shouldNotWaitForSlowHostBeyondDeadline() {
+            CountDownLatch release = new CountDownLatch(1);
+            when(remoteListCmd.exec()).thenAnswer(_ -> {
+                release.await(5, TimeUnit.SECONDS);
+                return List.of();
+            });
+
+            long start = System.nanoTime();
+            List<ContainerDTO> result =
+                    containerService.getContainers(true, true).containers();
+            release.countDown();
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+            assertEquals(List.of(createContainerDTO("c1", Set.of(8080))), result);
+            verify(containerIndex).lastKnown("nas");
+        }
+
+        @Test
+        @DisplayName("should fail when no host answers")
+        void shouldFailWhenNoHostAnswers() {
+            when(listContainersCmd.exec())
+                    .thenThrow(new RuntimeException("Connection failed", new SocketException("Connection refused")));
+            when(remoteListCmd.exec()).thenThrow(new RuntimeException("Connection reset"));
+
+            assertThrows(DockerUnavailableException.class, () -> containerService.getContainers(true, true));
+        }
+    }
+
+    @Nested
+    @DisplayName("getContainers from index")
+    class GetContainersFromIndex {
+
+        @Test
+        @DisplayName("should serve containers from the index without calling Docker")
+        void shouldServeContainersFromIndexWithoutCallingDocker() {
+            ContainerDTO running = createContainerDTO("c1", Set.of(8080));
+            when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(running))));
+
+            ContainerSnapshot result = containerService.getContainers(false, false);
+
+            assertEquals(new ContainerSnapshot(7L, List.of(running)), result);
+            verifyNoInteractions(dockerClient, containerMapper);
+        }
+
+        @Test
+        @DisplayName("should filter stopped containers unless includeStopped is true")
+        void shouldFilterStoppedContainersUnlessIncludeStoppedIsTrue() {
+            ContainerDTO running = createContainerDTO("c1", Set.of(8080));
+            ContainerDTO paused = createContainerDTO("c2", Set.of(8081), "paused");
+            ContainerDTO exited = createContainerDTO("c3", Set.of(8082), "exited");
+            when(containerIndex.snapshot())
+                    .thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(running, paused, exited))));
+
+            assertEquals(
+                    List.of(running, paused),
+                    containerService.getContainers(true, false).containers());
+            assertEquals(
+                    List.of(running, paused, exited),
+                    containerService.getContainers(true, true).containers());
+        }
+
+        @Test
+        @DisplayName("should filter containers without public ports unless includeWithoutPorts is true")
+        void shouldFilterContainersWithoutPublicPortsUnlessIncludeWithoutPortsIsTrue() {
+            ContainerDTO withPorts = createContainerDTO("c1", Set.of(8080));
+            ContainerDTO noPorts = createContainerDTO("c2", Set.of());
+            when(containerIndex.snapshot())
+                    .thenReturn(Optional.of(new ContainerSnapshot(7L, List.of(withPorts, noPorts))));
+
+            assertEquals(
+                    List.of(withPorts),
+                    containerService.getContainers(false, true).containers());
+            assertEquals(
+                    List.of(withPorts, noPorts),
+                    containerService.getContainers(true, true).containers());
+        }
+    }
+
+    @Nested
+    @DisplayName("getChanges")
+    class GetChanges {
+
+        @Test
+        @DisplayName("should return the changes since the given generation")
+        void shouldReturnChangesSinceGeneration() {
+            ContainerDTO added = createContainerDTO("c2", Set.of(8080));
+            ContainerDTO updated = createContainerDTO("c1", Set.of(8081));
+            when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(9L, List.of(added, updated))));
+            when(containerChangeLog.since(7L))
+                    .thenReturn(
+                            Optional.of(new ContainerDelta(9L, List.of(added), List.of(updated), List.of("c3-id"))));
+
+            ContainerChanges result = containerService.getChanges(7L, false, false);
+
+            assertEquals(new ContainerChanges(9L, false, List.of(added), List.of(updated), List.of("c3-id")), result);
+            verifyNoInteractions(dockerClient);
+        }
+
+        @Test
+        @DisplayName("should report containers that no longer match the filters as removed")
+        void shouldReportContainersThatNoLongerMatchFiltersAsRemoved() {
+            ContainerDTO exited = createContainerDTO("c1", Set.of(8080), "exited");
+            ContainerDTO noPorts = createContainerDTO("c2", Set.of());
+            when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(9L, List.of())));
+            when(containerChangeLog.since(7L))
+                    .thenReturn(Optional.of(new ContainerDelta(9L, List.of(noPorts), List.of(exited), List.of())));
+
+            ContainerChanges result = containerService.getChanges(7L, false, false);
+
+            assertTrue(result.added().isEmpty());
+            assertTrue(result.updated().isEmpty());
+            assertEquals(List.of("c1-id"), result.removed());
+        }
+
+        @Test
+        @DisplayName("should fall back to every container when the generation is too old")
+        void shouldFallBackToEveryContainerWhenGenerationIsTooOld() {
+            ContainerDTO running = createContainerDTO("c1", Set.of(8080));
+            when(containerIndex.snapshot()).thenReturn(Optional.of(new ContainerSnapshot(9L, List.of(running))));
+            when(containerChangeLog.since(1L)).thenReturn(Optional.empty());
+
+            ContainerChanges result = containerService.getChanges(1L, false, false);
+
+            assertEquals(new ContainerChanges(9L, true, List.of(running), List.of(), List.of()), result);
+        }
+
+        @Test
+        @DisplayName("should fall back to Docker when the index is out of sync")
+        void shouldFallBackToDockerWhenIndexIsOutOfSync() {
+            Container container = createMockContainer();
+            ContainerDTO dto = createContainerDTO("c1", Set.of(8080));
+            when(containerIndex.snapshot()).thenReturn(Optional.empty());
+            when(dockerClient.listContainersCmd()).thenReturn(listContainersCmd);
+            when(listContainersCmd.withShowAll(true)).thenReturn(listContainersCmd);
+            when(listContainersCmd.exec()).thenReturn(List.of(container));
+            when(containerMapper.toDTO("local", container)).thenReturn(dto);
+
+            ContainerChanges result = containerService.getChanges(7L, false, false);
+
+            assertEquals(new ContainerChanges(null, true, List.of(dto), List.of(), List.of()), result);
+            verifyNoInteractions(containerChangeLog);
+        }
+    }
+
+    private ContainerService createContainerService(Duration listFreshness) {
+        return createContainerService(listFreshness, new DockerHosts.Host("local", dockerClient));
+    }
+
+    private ContainerService createContainerService(Duration listFreshness, DockerHosts.Host... hosts) {
+        DockerProperties dockerProperties = DockerPropertiesFixture.builder()
+                .hostDeadline(Duration.ofMillis(200))
+                .listFreshness(listFreshness)
+                .build();
+        DockerHosts dockerHosts = new DockerHosts(List.of(hosts));
+        return new ContainerService(
+                dockerHosts,
+                containerMapper,
+                containerIndex,
+                containerChangeLog,
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry()),
+                dockerProperties);
+    }
+
     private Container createMockContainer() {
         return mock(Container.class);
     }
 
     private ContainerDTO createContainerDTO(String name, Set<Integer> ports) {
+        return createContainerDTO(name, ports, "running");
+    }
+
+    private ContainerDTO createContainerDTO(String name, Set<Integer> ports, String state) {
+        return createContainerDTO(name, ports, state, "local");
+    }
+
+    private ContainerDTO createContainerDTO(String name, Set<Integer> ports, String state, String host) {
         return new ContainerDTO(
                 name + "-id",
                 name,
@@ -153,7 +502,9 @@ class ContainerServiceTest {
                 ports,
                 "https://example.com/nginx.png",
                 null,
-                "running",
-                "Up 2 hours");
+                state,
+                "Up 2 hours",
+                host,
+                false);
     }
 }
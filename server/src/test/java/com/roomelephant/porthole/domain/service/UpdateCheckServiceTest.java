@@ -0,0 +1,374 @@
+package com.roomelephant.porthole.domain.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.github.dockerjava.api.DockerClient;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.UpdateCheckProperties;
+import com.roomelephant.porthole.domain.component.VersionStore;
+import com.roomelephant.porthole.domain.model.ContainerDTO;
+import com.roomelephant.porthole.domain.model.ContainerSnapshot;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.VersionCheck;
+import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UpdateCheckService")
+class UpdateCheckServiceTest {
+
+    private static final VersionDTO UP_TO_DATE = new VersionDTO("1.0.0", "1.0.0", false);
+    private static final VersionDTO OUTDATED = new VersionDTO("1.0.0", "1.1.0", true);
+
+    @Mock
+    private ContainerService containerService;
+
+    @Mock
+    private VersionService versionService;
+
+    @Mock
+    private DockerClient dockerClient;
+
+    private VersionStore versionStore;
+    private DockerHosts dockerHosts;
+
+    @BeforeEach
+    void setUp() {
+        versionStore = new VersionStore();
+        dockerHosts = new DockerHosts(List.of(new DockerHosts.Host("local", dockerClient)));
+    }
+
+    @Nested
+    @DisplayName("getVersionInfo")
+    class GetVersionInfo {
+
+        @Test
+        @DisplayName("should serve a stored version without checking the container")
+        void shouldServeStoredVersionWithoutCheckingContainer() {
+            versionStore.put("local", "web", OUTDATED);
+
+            assertEquals(OUTDATED, createService(true).getVersionInfo("web", null));
+            verifyNoInteractions(versionService);
+        }
+
+        @Test
+        @DisplayName("should check and store a container not checked yet")
+        void shouldCheckAndStoreContainerNotCheckedYet() {
+            when(versionService.check("web", "nas", LookupPriority.HIGH)).thenReturn(settled(OUTDATED));
+
+            assertEquals(OUTDATED, createService(true).getVersionInfo("web", "nas"));
+            assertEquals(OUTDATED, versionStore.get("nas", "web"));
+            assertNull(versionStore.get("local", "web"));
+        }
+
+        @Test
+        @DisplayName("should not store a check the registry did not settle")
+        void shouldNotStoreUnsettledCheck() {
+            VersionDTO unknown = new VersionDTO("1.0.0", null, false);
+            when(versionService.check("web", null, LookupPriority.HIGH)).thenReturn(new VersionCheck(unknown, false));
+
+            assertEquals(unknown, createService(true).getVersionInfo("web", null));
+            assertNull(versionStore.get("local", "web"));
+        }
+
+        @Test
+        @DisplayName("should check every time when background checks are disabled")
+        void shouldCheckEveryTimeWhenDisabled() {
+            versionStore.put("local", "web", UP_TO_DATE);
+            when(versionService.getVersionInfo("web", null)).thenReturn(OUTDATED);
+
+            assertEquals(OUTDATED, createService(false).getVersionInfo("web", null));
+        }
+    }
+
+    @Nested
+    @DisplayName("getVersionInfo for a batch")
+    class GetVersionInfoBatch {
+
+        @Test
+        @DisplayName("should serve stored versions and check only the containers not checked yet")
+        void shouldServeStoredVersionsAndCheckOnlyUnchecked() {
+            versionStore.put("local", "web", OUTDATED);
+            answerChecks(Map.of("db", settled(UP_TO_DATE)));
+
+            Map<String, VersionDTO> versions = checkBatch(
+                    createService(true), new VersionRequest("web", null, null), new VersionRequest("db", "nas", null));
+
+            assertEquals(Map.of("web", OUTDATED, "db", UP_TO_DATE), versions);
+            verify(versionService).check(eq(List.of(new VersionRequest("db", "nas", null))), any());
+            assertEquals(UP_TO_DATE, versionStore.get("nas", "db"));
+        }
+
+        @Test
+        @DisplayName("should not check anything when every version is stored")
+        void shouldNotCheckAnythingWhenEveryVersionIsStored() {
+            versionStore.put("local", "web", OUTDATED);
+
+            Map<String, VersionDTO> versions = checkBatch(createService(true), new VersionRequest("web", null, null));
+
+            assertEquals(Map.of("web", OUTDATED), versions);
+            verify(versionService, never()).check(anyList(), any());
+        }
+
+        @Test
+        @DisplayName("should not store a check the registry did not settle")
+        void shouldNotStoreUnsettledCheck() {
+            VersionDTO unknown = new VersionDTO("1.0.0", null, false);
+            answerChecks(Map.of("web", new VersionCheck(unknown, false)));
+
+            Map<String, VersionDTO> versions = checkBatch(createService(true), new VersionRequest("web", null, null));
+
+            assertEquals(Map.of("web", unknown), versions);
+            assertNull(versionStore.get("local", "web"));
+        }
+
+        @Test
+        @DisplayName("should answer the stored versions when Docker cannot be reached for the others")
+        void shouldAnswerStoredVersionsWhenDockerCannotBeReached() {
+            versionStore.put("local", "web", OUTDATED);
+            doThrow(new DockerUnavailableException(new RuntimeException("down")))
+                    .when(versionService)
+                    .check(anyList(), any());
+
+            Map<String, VersionDTO> versions = checkBatch(
+                    createService(true), new VersionRequest("web", null, null), new VersionRequest("db", null, null));
+
+            assertEquals(Map.of("web", OUTDATED), versions);
+        }
+
+        @Test
+        @DisplayName("should throw when nothing is stored and Docker cannot be reached")
+        void shouldThrowWhenNothingIsStoredAndDockerCannotBeReached() {
+            doThrow(new DockerUnavailableException(new RuntimeException("down")))
+                    .when(versionService)
+                    .check(anyList(), any());
+            UpdateCheckService service = createService(true);
+
+            assertThrows(
+                    DockerUnavailableException.class, () -> checkBatch(service, new VersionRequest("web", null, null)));
+        }
+
+        @Test
+        @DisplayName("should check a container requested twice once, at the most urgent priority")
+        void shouldCheckContainerRequestedTwiceOnceAtMostUrgentPriority() {
+            answerChecks(Map.of("web", settled(UP_TO_DATE)));
+
+            Map<String, VersionDTO> versions = checkBatch(
+                    createService(true),
+                    new VersionRequest("web", null, LookupPriority.LOW),
+                    new VersionRequest("web", null, LookupPriority.HIGH));
+
+            assertEquals(Map.of("web", UP_TO_DATE), versions);
+            verify(versionService).check(eq(List.of(new VersionRequest("web", null, LookupPriority.HIGH))), any());
+        }
+
+        @Test
+        @DisplayName("should check every container when background checks are disabled")
+        void shouldCheckEveryContainerWhenDisabled() {
+            versionStore.put("local", "web", UP_TO_DATE);
+            List<VersionRequest> requests = List.of(new VersionRequest("web", null, null));
+
+            checkBatch(createService(false), requests.getFirst());
+
+            verify(versionService).getVersionInfo(eq(requests), any());
+        }
+
+        private Map<String, VersionDTO> checkBatch(UpdateCheckService service, VersionRequest... requests) {
+            Map<String, VersionDTO> versions = new HashMap<>();
+            service.getVersionInfo(List.of(requests), versions::put);
+            return versions;
+        }
+
+        private void answerChecks(Map<String, VersionCheck> checks) {
+            doAnswer(invocation -> {
+                        List<VersionRequest> requests = invocation.getArgument(0);
+                        BiConsumer<VersionRequest, VersionCheck> results = invocation.getArgument(1);
+                        requests.forEach(request -> results.accept(request, checks.get(request.id())));
+                        return null;
+                    })
+                    .when(versionService)
+                    .check(anyList(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("checkAll")
+    class CheckAll {
+
+        @Test
+        @DisplayName("should store the version of every container")
+        void shouldStoreVersionOfEveryContainer() {
+            mockContainers(container("web", "local"), container("db", "nas"));
+            when(versionService.check("web", "local", LookupPriority.BACKGROUND))
+                    .thenReturn(settled(OUTDATED));
+            when(versionService.check("db", "nas", LookupPriority.BACKGROUND)).thenReturn(settled(UP_TO_DATE));
+
+            createService(true).checkAll();
+
+            assertEquals(OUTDATED, versionStore.get("local", "web"));
+            assertEquals(UP_TO_DATE, versionStore.get("nas", "db"));
+        }
+
+        @Test
+        @DisplayName("should keep the previous version when a check fails")
+        void shouldKeepPreviousVersionWhenCheckFails() {
+            versionStore.put("local", "web", UP_TO_DATE);
+            mockContainers(container("web", "local"));
+            when(versionService.check("web", "local", LookupPriority.BACKGROUND))
+                    .thenThrow(new RuntimeException("boom"));
+
+            createService(true).checkAll();
+
+            assertEquals(UP_TO_DATE, versionStore.get("local", "web"));
+        }
+
+        @Test
+        @DisplayName("should keep the previous version when the registry does not answer")
+        void shouldKeepPreviousVersionWhenRegistryDoesNotAnswer() {
+            versionStore.put("local", "web", OUTDATED);
+            mockContainers(container("web", "local"));
+            when(versionService.check("web", "local", LookupPriority.BACKGROUND))
+                    .thenReturn(new VersionCheck(new VersionDTO("1.0.0", null, false), false));
+
+            createService(true).checkAll();
+
+            assertEquals(OUTDATED, versionStore.get("local", "web"));
+        }
+
+        @Test
+        @DisplayName("should drop containers that no longer exist")
+        void shouldDropContainersThatNoLongerExist() {
+            versionStore.put("local", "gone", UP_TO_DATE);
+            mockContainers(container("web", "local"));
+            when(versionService.check("web", "local", LookupPriority.BACKGROUND))
+                    .thenReturn(settled(OUTDATED));
+
+            createService(true).checkAll();
+
+            assertNull(versionStore.get("local", "gone"));
+        }
+
+        @Test
+        @DisplayName("should keep stored versions when containers cannot be listed")
+        void shouldKeepStoredVersionsWhenContainersCannotBeListed() {
+            versionStore.put("local", "web", UP_TO_DATE);
+            when(containerService.getContainers(true, true))
+                    .thenThrow(new DockerUnavailableException(new RuntimeException("down")));
+
+            createService(true).checkAll();
+
+            assertEquals(UP_TO_DATE, versionStore.get("local", "web"));
+            verifyNoInteractions(versionService);
+        }
+
+        @Test
+        @DisplayName("should check at most the configured number of containers at a time")
+        void shouldCheckAtMostConfiguredNumberAtATime() {
+            mockContainers(
+                    container("a", "local"),
+                    container("b", "local"),
+                    container("c", "local"),
+                    container("d", "local"),
+                    container("e", "local"));
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger mostRunning = new AtomicInteger();
+            when(versionService.check(anyString(), eq("local"), eq(LookupPriority.BACKGROUND)))
+                    .thenAnswer(_ -> {
+                        mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(50);
+                        running.decrementAndGet();
+                        return settled(UP_TO_DATE);
+                    });
+
+            createService(true).checkAll();
+
+            assertTrue(mostRunning.get() <= 2, "at most 2 checks should run at a time");
+            assertEquals(UP_TO_DATE, versionStore.get("local", "e"));
+        }
+    }
+
+    @Nested
+    @DisplayName("scheduleCheck")
+    class ScheduleCheck {
+
+        @Test
+        @DisplayName("should not check during quiet hours")
+        void shouldNotCheckDuringQuietHours() {
+            createService(true, LocalTime.of(23, 0), LocalTime.of(6, 0), "2024-06-01T02:30:00Z")
+                    .scheduleCheck();
+
+            verifyNoInteractions(containerService);
+        }
+
+        @Test
+        @DisplayName("should check outside quiet hours")
+        void shouldCheckOutsideQuietHours() {
+            mockContainers();
+
+            createService(true, LocalTime.of(23, 0), LocalTime.of(6, 0), "2024-06-01T12:00:00Z")
+                    .scheduleCheck();
+
+            verify(containerService, timeout(1000)).getContainers(true, true);
+        }
+
+        @Test
+        @DisplayName("should not check when disabled")
+        void shouldNotCheckWhenDisabled() {
+            createService(false).scheduleCheck();
+
+            verifyNoInteractions(containerService);
+        }
+    }
+
+    private UpdateCheckService createService(boolean enabled) {
+        return createService(enabled, null, null, "2024-06-01T12:00:00Z");
+    }
+
+    private UpdateCheckService createService(boolean enabled, LocalTime quietStart, LocalTime quietEnd, String now) {
+        UpdateCheckProperties properties =
+                new UpdateCheckProperties(enabled, Duration.ofMinutes(30), 2, quietStart, quietEnd);
+        return new UpdateCheckService(
+                containerService,
+                versionService,
+                versionStore,
+                dockerHosts,
+                properties,
+                Clock.fixed(Instant.parse(now), ZoneOffset.UTC));
+    }
+
+    private void mockContainers(ContainerDTO... containers) {
+        when(containerService.getContainers(true, true))
+                .thenReturn(new ContainerSnapshot(1L, Arrays.asList(containers)));
+    }
+
+    private static VersionCheck settled(VersionDTO version) {
+        return new VersionCheck(version, true);
+    }
+
+    private static ContainerDTO container(String id, String host) {
+        return new ContainerDTO(id, id, id, "nginx:1.0.0", Set.of(), null, null, "running", "Up", host, false);
+    }
+}
@@ -9,13 +9,33 @@ import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.command.InspectImageCmd;
 import com.github.dockerjava.api.command.InspectImageResponse;
 import com.github.dockerjava.api.model.ContainerConfig;
+import com.roomelephant.porthole.config.DockerHosts;
+import com.roomelephant.porthole.config.properties.DockerProperties;
+import com.roomelephant.porthole.config.properties.DockerPropertiesFixture;
+import com.roomelephant.porthole.config.properties.RegistryProperties;
+import com.roomelephant.porthole.domain.component.DockerCircuitBreaker;
+import com.roomelephant.porthole.domain.component.ImageInspectCache;
+import com.roomelephant.porthole.domain.component.LookupScheduler;
 import com.roomelephant.porthole.domain.component.RegistryService;
+import com.roomelephant.porthole.domain.model.LookupPriority;
+import com.roomelephant.porthole.domain.model.VersionCheck;
 import com.roomelephant.porthole.domain.model.VersionDTO;
+import com.roomelephant.porthole.domain.model.VersionRequest;
+import com.roomelephant.porthole.domain.model.exception.CircuitOpenException;
+import com.roomelephant.porthole.domain.model.exception.DockerUnavailableException;
 import com.roomelephant.porthole.domain.model.exception.NotFoundException;
 import com.roomelephant.porthole.domain.model.exception.UnexpectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.SocketException;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -50,10 +70,11 @@ class VersionServiceTest {
     private ContainerConfig containerConfig;
 
     private VersionService versionService;
+    private LookupScheduler lookupScheduler;
 
     @BeforeEach
     void setUp() {
-        versionService = new VersionService(dockerClient, registryService);
+        versionService = createVersionService(new DockerHosts.Host("local", dockerClient));
     }
 
     @Nested
@@ -73,6 +94,28 @@ class VersionServiceTest {
             assertEquals("unknown", exception.getContainerId());
         }
 
+        @Test
+        @DisplayName("should inspect the container on the requested host")
+        void shouldInspectContainerOnRequestedHost() {
+            DockerClient remote = mock(DockerClient.class);
+            versionService = createVersionService(
+                    new DockerHosts.Host("local", dockerClient), new DockerHosts.Host("nas", remote));
+            when(remote.inspectContainerCmd("container1")).thenReturn(inspectContainerCmd);
+            when(inspectContainerCmd.exec()).thenReturn(inspectContainerResponse);
+
+            versionService.getVersionInfo("container1", "nas");
+
+            verifyNoInteractions(dockerClient);
+        }
+
+        @Test
+        @DisplayName("should throw NotFoundException when the host is unknown")
+        void shouldThrowNotFoundExceptionWhenHostIsUnknown() {
+            assertThrows(NotFoundException.class, () -> versionService.getVersionInfo("container1", "nas"));
+
+            verifyNoInteractions(dockerClient);
+        }
+
         @Test
         @DisplayName("should throw UnexpectedException when docker fails")
         void shouldThrowUnexpectedExceptionWhenDockerFails() {
@@ -82,6 +125,20 @@ class VersionServiceTest {
             assertThrows(UnexpectedException.class, () -> versionService.getVersionInfo("container1"));
         }
 
+        @Test
+        @DisplayName("should fail fast without calling Docker while the circuit breaker is open")
+        void shouldFailFastWhileCircuitBreakerIsOpen() {
+            when(dockerClient.inspectContainerCmd("container1")).thenReturn(inspectContainerCmd);
+            when(inspectContainerCmd.exec()).thenThrow(new RuntimeException(new SocketException("Connection refused")));
+            for (int i = 0; i < 3; i++) {
+                assertThrows(DockerUnavailableException.class, () -> versionService.getVersionInfo("container1"));
+            }
+
+            assertThrows(CircuitOpenException.class, () -> versionService.getVersionInfo("container1"));
+
+            verify(inspectContainerCmd, times(3)).exec();
+        }
+
         @Test
         @DisplayName("should return empty VersionDTO when container config is null")
         void shouldReturnEmptyVersionDTOWhenContainerConfigIsNull() {
@@ -136,8 +193,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(Map.of("org.opencontainers.image.version", "1.25.0"));
-            when(registryService.getLatestVersion("nginx:latest")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:latest", "latest")).thenReturn("sha256:remote");
+            when(registryService.getLatestVersion(eq("nginx:latest"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:remote");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -152,8 +210,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(Map.of("version", "2.0.0"));
-            when(registryService.getLatestVersion("myapp:latest")).thenReturn("2.1.0");
-            when(registryService.getDigest("myapp:latest", "latest")).thenReturn("sha256:remote");
+            when(registryService.getLatestVersion(eq("myapp:latest"), any())).thenReturn("2.1.0");
+            when(registryService.getDigest(eq("myapp:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:remote");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -166,8 +225,9 @@ class VersionServiceTest {
             setupContainerWithImage("nginx:latest");
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(new String[] {"NGINX_VERSION=1.25.0"});
-            when(registryService.getLatestVersion("nginx:latest")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:latest", "latest")).thenReturn("sha256:remote");
+            when(registryService.getLatestVersion(eq("nginx:latest"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:remote");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -180,8 +240,9 @@ class VersionServiceTest {
             setupContainerWithImage("myapp:latest");
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(new String[] {"VERSION=3.0.0"});
-            when(registryService.getLatestVersion("myapp:latest")).thenReturn("3.1.0");
-            when(registryService.getDigest("myapp:latest", "latest")).thenReturn("sha256:remote");
+            when(registryService.getLatestVersion(eq("myapp:latest"), any())).thenReturn("3.1.0");
+            when(registryService.getDigest(eq("myapp:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:remote");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -195,8 +256,8 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn("1.26");
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenReturn("sha256:different");
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn("1.26");
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any())).thenReturn("sha256:different");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -210,8 +271,8 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn("1.25");
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenReturn("sha256:local");
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn("1.25");
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any())).thenReturn("sha256:local");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -225,8 +286,8 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(Map.of("org.opencontainers.image.version", "1.25.0"));
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenReturn("sha256:local");
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any())).thenReturn("sha256:local");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -240,8 +301,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn(null);
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenThrow(new RuntimeException("Network error"));
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn(null);
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any()))
+                    .thenThrow(new RuntimeException("Network error"));
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -289,8 +351,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(new String[] {"NGINX_VERSION=", "VERSION="});
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:latest")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:latest", "latest")).thenReturn("sha256:remote");
+            when(registryService.getLatestVersion(eq("nginx:latest"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:remote");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -304,8 +367,8 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn("1.25");
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenReturn(null);
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn("1.25");
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any())).thenReturn(null);
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -319,8 +382,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:latest")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:latest", "latest")).thenReturn("sha256:local");
+            when(registryService.getLatestVersion(eq("nginx:latest"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:local");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -334,8 +398,8 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(null);
             when(containerConfig.getLabels()).thenReturn(Map.of("org.opencontainers.image.version", "1.26.0"));
-            when(registryService.getLatestVersion("nginx:1.25")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:1.25", "1.25")).thenReturn("sha256:local");
+            when(registryService.getLatestVersion(eq("nginx:1.25"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:1.25"), eq("1.25"), any())).thenReturn("sha256:local");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -349,8 +413,9 @@ class VersionServiceTest {
             setupRemoteImage();
             when(containerConfig.getEnv()).thenReturn(new String[] {"OTHER_VAR=value", "PATH=/bin"});
             when(containerConfig.getLabels()).thenReturn(null);
-            when(registryService.getLatestVersion("nginx:latest")).thenReturn("1.26.0");
-            when(registryService.getDigest("nginx:latest", "latest")).thenReturn("sha256:local");
+            when(registryService.getLatestVersion(eq("nginx:latest"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:latest"), eq("latest"), any()))
+                    .thenReturn("sha256:local");
 
             VersionDTO result = versionService.getVersionInfo("container1");
 
@@ -358,6 +423,384 @@ class VersionServiceTest {
         }
     }
 
+    @Nested
+    @DisplayName("registry lookups")
+    class RegistryLookups {
+
+        @Test
+        @DisplayName("should look up the latest version and the digest concurrently")
+        void shouldLookUpLatestVersionAndDigestConcurrently() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            CountDownLatch digestRequested = new CountDownLatch(1);
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenAnswer(_ -> {
+                        digestRequested.countDown();
+                        return "sha256:local";
+                    });
+            // Only answers once the digest lookup has started alongside it
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any()))
+                    .thenAnswer(_ -> digestRequested.await(5, TimeUnit.SECONDS) ? "1.26.0" : null);
+
+            VersionDTO result = versionService.getVersionInfo("container1");
+
+            assertEquals("1.26.0", result.latestVersion());
+            assertTrue(result.updateAvailable());
+        }
+
+        @Test
+        @DisplayName("should answer with what is known when the registry misses the deadline")
+        void shouldAnswerWithWhatIsKnownWhenRegistryMissesDeadline() {
+            versionService = createVersionService(Duration.ofMillis(200), new DockerHosts.Host("local", dockerClient));
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            CountDownLatch interrupted = new CountDownLatch(1);
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenAnswer(_ -> {
+                try {
+                    Thread.sleep(Duration.ofSeconds(5));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return "1.26.0";
+            });
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            long start = System.nanoTime();
+            VersionDTO result = versionService.getVersionInfo("container1");
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+            assertEquals("1.25.0", result.currentVersion());
+            assertNull(result.latestVersion());
+            assertFalse(result.updateAvailable());
+            assertDoesNotThrow(() -> assertTrue(interrupted.await(5, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Nested
+    @DisplayName("image results")
+    class ImageResults {
+
+        @Test
+        @DisplayName("should reuse the result of an image across calls")
+        void shouldReuseResultOfImageAcrossCalls() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            VersionDTO first = versionService.getVersionInfo("container1");
+            VersionDTO second = versionService.getVersionInfo("container1");
+
+            assertEquals(new VersionDTO("1.25.0", "1.26.0", true), first);
+            assertEquals(first, second);
+            verify(dockerClient, times(1)).inspectImageCmd("sha256:abc123");
+            verify(registryService, times(1)).getLatestVersion(eq("nginx:1.25.0"), any());
+            verify(registryService, times(1)).getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any());
+        }
+
+        @Test
+        @DisplayName("should ask the registry at the priority of the check")
+        void shouldAskRegistryAtPriorityOfCheck() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getLatestVersion("nginx:1.25.0", LookupPriority.BACKGROUND))
+                    .thenReturn("1.26.0");
+            when(registryService.getDigest("nginx:1.25.0", "1.25.0", LookupPriority.BACKGROUND))
+                    .thenReturn("sha256:local");
+
+            VersionCheck check = versionService.check("container1", null, LookupPriority.BACKGROUND);
+
+            assertEquals(new VersionDTO("1.25.0", "1.26.0", true), check.version());
+        }
+
+        @Test
+        @DisplayName("should check again when the image id changes")
+        void shouldCheckAgainWhenImageIdChanges() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(inspectContainerResponse.getImageId()).thenReturn("sha256:abc123", "sha256:def456");
+            when(dockerClient.inspectImageCmd("sha256:def456")).thenReturn(inspectImageCmd);
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.25.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            versionService.getVersionInfo("container1");
+            versionService.getVersionInfo("container1");
+
+            verify(dockerClient, times(1)).inspectImageCmd("sha256:abc123");
+            verify(dockerClient, times(1)).inspectImageCmd("sha256:def456");
+            verify(registryService, times(2)).getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any());
+        }
+
+        @Test
+        @DisplayName("should check again once the repository was invalidated")
+        void shouldCheckAgainOnceRepositoryWasInvalidated() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.26.0", "1.25.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            versionService.getVersionInfo("container1");
+            versionService.invalidateRepository("library/redis");
+            versionService.getVersionInfo("container1");
+            versionService.invalidateRepository("library/nginx");
+            VersionDTO afterPull = versionService.getVersionInfo("container1");
+
+            assertFalse(afterPull.updateAvailable());
+            verify(registryService, times(2)).getLatestVersion(eq("nginx:1.25.0"), any());
+        }
+
+        @Test
+        @DisplayName("should check again once the image was invalidated")
+        void shouldCheckAgainOnceImageWasInvalidated() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.25.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            versionService.getVersionInfo("container1");
+            versionService.invalidateImage("sha256:other");
+            versionService.getVersionInfo("container1");
+            versionService.invalidateImage("sha256:abc123");
+            versionService.getVersionInfo("container1");
+
+            verify(registryService, times(2)).getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any());
+        }
+
+        @Test
+        @DisplayName("should not keep a result the registry could not answer")
+        void shouldNotKeepResultRegistryCouldNotAnswer() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn(null, "sha256:remote");
+
+            VersionDTO first = versionService.getVersionInfo("container1");
+            VersionDTO second = versionService.getVersionInfo("container1");
+
+            assertFalse(first.updateAvailable());
+            assertTrue(second.updateAvailable());
+        }
+
+        @Test
+        @DisplayName("should tell whether the registry settled the check")
+        void shouldTellWhetherRegistrySettledCheck() {
+            setupContainerWithImage("nginx:1.25.0");
+            setupRemoteImage();
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn(null, "sha256:local");
+
+            VersionCheck unsettled = versionService.check("container1", null, LookupPriority.BACKGROUND);
+            VersionCheck settled = versionService.check("container1", null, LookupPriority.BACKGROUND);
+
+            assertFalse(unsettled.complete());
+            assertTrue(settled.complete());
+            assertEquals(new VersionDTO("1.25.0", "1.26.0", true), settled.version());
+        }
+    }
+
+    @Nested
+    @DisplayName("getVersionInfo for a batch")
+    class GetVersionInfoBatch {
+
+        @Test
+        @DisplayName("should share one registry lookup between containers running the same image")
+        void shouldShareOneRegistryLookupBetweenContainersRunningSameImage() {
+            mockContainer("web-1", "nginx:1.25.0", "sha256:nginx");
+            mockContainer("web-2", "nginx:1.25.0", "sha256:nginx");
+            mockImage("sha256:nginx", "nginx:1.25.0");
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.26.0");
+            when(registryService.getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any()))
+                    .thenReturn("sha256:local");
+
+            Map<String, VersionDTO> versions =
+                    checkBatch(new VersionRequest("web-1", null, null), new VersionRequest("web-2", null, null));
+
+            assertEquals(
+                    Map.of(
+                            "web-1", new VersionDTO("1.25.0", "1.26.0", true),
+                            "web-2", new VersionDTO("1.25.0", "1.26.0", true)),
+                    versions);
+            verify(registryService, times(1)).getLatestVersion(eq("nginx:1.25.0"), any());
+            verify(registryService, times(1)).getDigest(eq("nginx:1.25.0"), eq("1.25.0"), any());
+            verify(dockerClient, times(1)).inspectImageCmd("sha256:nginx");
+        }
+
+        @Test
+        @DisplayName("should leave out containers that cannot be found")
+        void shouldLeaveOutContainersThatCannotBeFound() {
+            mockContainer("web", "nginx:1.25.0");
+            when(registryService.getLatestVersion(eq("nginx:1.25.0"), any())).thenReturn("1.25.0");
+            InspectContainerCmd missing = mock(InspectContainerCmd.class);
+            when(dockerClient.inspectContainerCmd("gone")).thenReturn(missing);
+            when(missing.exec()).thenThrow(new com.github.dockerjava.api.exception.NotFoundException("Not found"));
+
+            Map<String, VersionDTO> versions =
+                    checkBatch(new VersionRequest("web", null, null), new VersionRequest("gone", null, null));
+
+            assertEquals(Set.of("web"), versions.keySet());
+        }
+
+        @Test
+        @DisplayName("should throw DockerUnavailableException when Docker cannot be reached for any container")
+        void shouldThrowDockerUnavailableExceptionWhenDockerCannotBeReached() {
+            when(dockerClient.inspectContainerCmd(anyString())).thenReturn(inspectContainerCmd);
+            when(inspectContainerCmd.exec()).thenThrow(new RuntimeException(new SocketException("Connection refused")));
+
+            assertThrows(
+                    DockerUnavailableException.class,
+                    () -> checkBatch(new VersionRequest("web", null, null), new VersionRequest("db", null, null)));
+        }
+
+        @Test
+        @DisplayName("should run at most the configured number of lookups at once")
+        void shouldRunAtMostConfiguredNumberOfLookupsAtOnce() {
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            for (String image : List.of("nginx:1.25.0", "redis:7.0.0", "mongo:7.0.0")) {
+                mockContainer(image.substring(0, image.indexOf(':')), image);
+                when(registryService.getLatestVersion(eq(image), any())).thenAnswer(_ -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    running.decrementAndGet();
+                    return null;
+                });
+            }
+
+            Map<String, VersionDTO> versions = checkBatch(
+                    new VersionRequest("nginx", null, null),
+                    new VersionRequest("redis", null, null),
+                    new VersionRequest("mongo", null, null));
+
+            assertEquals(3, versions.size());
+            assertTrue(peak.get() <= 2);
+        }
+
+        @Test
+        @DisplayName("should stop its lookups once the batch has returned")
+        void shouldStopLookupsOnceBatchHasReturned() {
+            versionService = createVersionService(Duration.ofMillis(200), new DockerHosts.Host("local", dockerClient));
+            when(dockerClient.inspectContainerCmd(anyString())).thenReturn(inspectContainerCmd);
+            when(inspectContainerCmd.exec()).thenAnswer(_ -> {
+                Thread.sleep(Duration.ofSeconds(5));
+                return inspectContainerResponse;
+            });
+
+            long start = System.nanoTime();
+            Map<String, VersionDTO> versions = checkBatch(
+                    new VersionRequest("a", null, LookupPriority.LOW),
+                    new VersionRequest("b", null, LookupPriority.LOW));
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+            assertTrue(versions.isEmpty());
+            // Both lookups hold a slot while Docker hangs; stopping them hands the slots back
+            assertEquals(
+                    "next",
+                    lookupScheduler.run(
+                            LookupPriority.BACKGROUND, System.nanoTime() + TimeUnit.SECONDS.toNanos(1), () -> "next"));
+        }
+
+        @Test
+        @DisplayName("should reject batches above the configured size")
+        void shouldRejectBatchesAboveConfiguredSize() {
+            List<VersionRequest> requests = List.of(
+                    new VersionRequest("a", null, null),
+                    new VersionRequest("b", null, null),
+                    new VersionRequest("c", null, null),
+                    new VersionRequest("d", null, null));
+
+            assertThrows(IllegalArgumentException.class, () -> versionService.validate(requests));
+        }
+
+        @Test
+        @DisplayName("should reject batches naming a container without an id")
+        void shouldRejectBatchesNamingContainerWithoutId() {
+            List<VersionRequest> requests =
+                    List.of(new VersionRequest("a", null, null), new VersionRequest(" ", null, null));
+
+            assertThrows(IllegalArgumentException.class, () -> versionService.validate(requests));
+        }
+
+        @Test
+        @DisplayName("should check a container requested twice once, at the most urgent priority")
+        void shouldCheckContainerRequestedTwiceOnceAtMostUrgentPriority() {
+            mockContainer("web", "nginx:1.25.0");
+            when(registryService.getLatestVersion("nginx:1.25.0", LookupPriority.HIGH))
+                    .thenReturn("1.26.0");
+            when(registryService.getDigest("nginx:1.25.0", "1.25.0", LookupPriority.HIGH))
+                    .thenReturn("sha256:local");
+
+            Map<String, VersionDTO> versions = checkBatch(
+                    new VersionRequest("web", null, LookupPriority.BACKGROUND),
+                    new VersionRequest("web", null, LookupPriority.HIGH));
+
+            assertEquals(Map.of("web", new VersionDTO("1.25.0", "1.26.0", true)), versions);
+            verify(dockerClient, times(1)).inspectContainerCmd("web");
+        }
+
+        private Map<String, VersionDTO> checkBatch(VersionRequest... requests) {
+            Map<String, VersionDTO> versions = new HashMap<>();
+            versionService.getVersionInfo(List.of(requests), versions::put);
+            return versions;
+        }
+
+        private void mockContainer(String containerId, String image) {
+            mockContainer(containerId, image, "sha256:" + containerId);
+            mockImage("sha256:" + containerId, image);
+        }
+
+        private void mockContainer(String containerId, String image, String imageId) {
+            InspectContainerCmd containerCmd = mock(InspectContainerCmd.class);
+            InspectContainerResponse container = mock(InspectContainerResponse.class);
+            ContainerConfig config = mock(ContainerConfig.class);
+            when(dockerClient.inspectContainerCmd(containerId)).thenReturn(containerCmd);
+            when(containerCmd.exec()).thenReturn(container);
+            when(container.getConfig()).thenReturn(config);
+            when(config.getImage()).thenReturn(image);
+            when(container.getImageId()).thenReturn(imageId);
+        }
+
+        private void mockImage(String imageId, String image) {
+            InspectImageCmd imageCmd = mock(InspectImageCmd.class);
+            InspectImageResponse imageResponse = mock(InspectImageResponse.class);
+            when(dockerClient.inspectImageCmd(imageId)).thenReturn(imageCmd);
+            when(imageCmd.exec()).thenReturn(imageResponse);
+            when(imageResponse.getRepoDigests()).thenReturn(List.of(image + "@sha256:local"));
+        }
+    }
+
+    private VersionService createVersionService(DockerHosts.Host... hosts) {
+        return createVersionService(Duration.ofSeconds(15), hosts);
+    }
+
+    private VersionService createVersionService(Duration deadline, DockerHosts.Host... hosts) {
+        DockerProperties dockerProperties = DockerPropertiesFixture.defaults();
+        DockerHosts dockerHosts = new DockerHosts(List.of(hosts));
+        RegistryProperties registryProperties = new RegistryProperties(
+                new RegistryProperties.Timeout(Duration.ofSeconds(5), Duration.ofSeconds(10), deadline),
+                new RegistryProperties.Cache(Duration.ofHours(1), 100, 100, 100, 100, Duration.ofHours(1)),
+                new RegistryProperties.Urls("https://registry", "https://auth", "https://hub"),
+                new RegistryProperties.Batch(3, 2),
+                new RegistryProperties.RateLimit(50, Duration.ofMillis(100), 10, Duration.ofSeconds(2)),
+                new RegistryProperties.Tags(100, 10),
+                new RegistryProperties.Persistence(false, "registry.jsonl", Duration.ofHours(1)),
+                new RegistryProperties.Bulkhead(16, Duration.ofSeconds(5)));
+        DockerCircuitBreaker circuitBreaker =
+                new DockerCircuitBreaker(dockerHosts, dockerProperties, new SimpleMeterRegistry());
+        return new VersionService(
+                dockerHosts,
+                registryService,
+                circuitBreaker,
+                new ImageInspectCache(dockerHosts, circuitBreaker, dockerProperties),
+                lookupScheduler = new LookupScheduler(registryProperties),
+                registryProperties);
+    }
+
     private void setupContainerWithImage(String image) {
         when(dockerClient.inspectContainerCmd("container1")).thenReturn(inspectContainerCmd);
         when(inspectContainerCmd.exec()).thenReturn(inspectContainerResponse);